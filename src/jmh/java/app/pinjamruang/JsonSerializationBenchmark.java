@@ -0,0 +1,105 @@
+package app.pinjamruang;
+
+import app.pinjamruang.json.PinjamruangJsonModule;
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes entities and reads request DTOs with an {@link ObjectMapper} configured the way Spring Boot
+ * configures the one used by the controllers, with Jackson's reflective bean (de)serializers or with
+ * {@link PinjamruangJsonModule}. Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    private static final byte[] RESERVATION_DTO = ("{\"startDate\":\"2019-06-12 10:00\",\"endDate\":\"2019-06-12 12:00\","
+            + "\"attendees\":8,\"agenda\":\"Benchmark\",\"roomId\":1}").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] ROOM_DTO = ("{\"name\":\"Room 1\",\"capacity\":10,\"openTime\":\"09:00\","
+            + "\"closeTime\":\"18:00\"}").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"reflective", "module"})
+    private String mapper;
+
+    private ObjectMapper objectMapper;
+
+    private Room room;
+
+    private Reservation reservation;
+
+    private List<Reservation> page;
+
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        if ("module".equals(this.mapper)) {
+            builder.modulesToInstall(new ParameterNamesModule(), new PinjamruangJsonModule());
+        } else {
+            builder.modulesToInstall(new ParameterNamesModule());
+        }
+
+        this.objectMapper = builder.build();
+
+        this.room = new Room("Room 1", 10, LocalTime.parse("09:00"), LocalTime.parse("18:00"));
+        ReflectionTestUtils.setField(this.room, "id", 1L);
+
+        this.page = new ArrayList<>();
+        LocalDateTime startDate = LocalDateTime.of(2019, 6, 12, 10, 0);
+
+        for (int i = 0; i < 100; i++) {
+            Reservation pageItem = new Reservation(startDate.plusDays(i), startDate.plusDays(i).plusHours(2), 8, "Benchmark", this.room);
+            ReflectionTestUtils.setField(pageItem, "id", (long) i + 1);
+            this.page.add(pageItem);
+        }
+
+        this.reservation = this.page.get(0);
+    }
+
+    @Benchmark
+    public byte[] serializeRoom() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.room);
+    }
+
+    @Benchmark
+    public byte[] serializeReservation() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.reservation);
+    }
+
+    @Benchmark
+    public byte[] serializeReservationPage() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.page);
+    }
+
+    @Benchmark
+    public CreateReservationDto deserializeReservationDto() throws IOException {
+        return this.objectMapper.readValue(RESERVATION_DTO, CreateReservationDto.class);
+    }
+
+    @Benchmark
+    public CreateRoomDto deserializeRoomDto() throws IOException {
+        return this.objectMapper.readValue(ROOM_DTO, CreateRoomDto.class);
+    }
+}
@@ -0,0 +1,58 @@
+package app.pinjamruang.json;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and prints the API's date formats with {@link DateTimeFormatter} and with {@link FixedFormatDates}.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+    private final String dateTimeText = "2019-06-12 10:00";
+
+    private final String timeText = "09:00";
+
+    private final LocalDateTime dateTime = LocalDateTime.of(2019, 6, 12, 10, 0);
+
+    private final char[] buffer = new char[FixedFormatDates.MAX_DATE_TIME_LENGTH];
+
+    @Benchmark
+    public LocalDateTime parseDateTimeWithFormatter() {
+        return LocalDateTime.parse(this.dateTimeText, FixedFormatDates.DATE_TIME);
+    }
+
+    @Benchmark
+    public LocalDateTime parseDateTimeFixedFormat() {
+        return FixedFormatDates.parseDateTime(this.dateTimeText);
+    }
+
+    @Benchmark
+    public LocalTime parseTimeWithFormatter() {
+        return LocalTime.parse(this.timeText, FixedFormatDates.TIME);
+    }
+
+    @Benchmark
+    public LocalTime parseTimeFixedFormat() {
+        return FixedFormatDates.parseTime(this.timeText);
+    }
+
+    @Benchmark
+    public String printDateTimeWithFormatter() {
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(this.dateTime);
+    }
+
+    @Benchmark
+    public int printDateTimeFixedFormat() {
+        return FixedFormatDates.printDateTime(this.dateTime, this.buffer);
+    }
+}
@@ -0,0 +1,111 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.exception.RoomNotAvailableException;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.service.RoomService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reservation write-path checks without a database. The room holds {@code reservationsPerRoom}
+ * one-hour reservations, one per day, and every probe targets the day in the middle of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationServiceBenchmark {
+    private static final LocalDateTime FIRST_DAY = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    @Param({"1", "100", "10000"})
+    private int reservationsPerRoom;
+
+    private ReservationService service;
+
+    private ReservationIndex reservationIndex;
+
+    private OccupancyGrid occupancyGrid;
+
+    private Reservation freeReservation;
+
+    private Reservation conflictingReservation;
+
+    private CreateReservationDto reservationDto;
+
+    @Setup
+    public void setUp() {
+        Room room = new Room("Room 1", 10, LocalTime.parse("08:00"), LocalTime.parse("20:00"));
+        ReflectionTestUtils.setField(room, "id", 1L);
+
+        this.reservationIndex = new ReservationIndex();
+        this.occupancyGrid = new OccupancyGrid();
+        ReflectionTestUtils.setField(this.occupancyGrid, "reservationIndex", this.reservationIndex);
+
+        for (int i = 0; i < this.reservationsPerRoom; i++) {
+            LocalDateTime startDate = FIRST_DAY.plusDays(i).withHour(10);
+            this.reservationIndex.put((long) i + 1, 1L, startDate, startDate.plusHours(1));
+        }
+
+        this.service = new ReservationService();
+        ReflectionTestUtils.setField(this.service, "reservationIndex", this.reservationIndex);
+        ReflectionTestUtils.setField(this.service, "occupancyGrid", this.occupancyGrid);
+        ReflectionTestUtils.setField(this.service, "bookingMetrics", new BookingMetrics());
+        ReflectionTestUtils.setField(this.service, "roomService", new RoomService() {
+            @Override
+            public Room getRoomById(Long id) {
+                return room;
+            }
+        });
+
+        LocalDateTime probeDay = FIRST_DAY.plusDays(this.reservationsPerRoom / 2);
+        this.freeReservation = new Reservation(probeDay.withHour(12), probeDay.withHour(13), 8, "Benchmark", room);
+        this.conflictingReservation = new Reservation(probeDay.withHour(10).withMinute(30), probeDay.withHour(11).withMinute(30), 8, "Benchmark", room);
+        this.reservationDto = new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 8, "Benchmark", 1L);
+    }
+
+    @Benchmark
+    public Reservation validateReservation_free() {
+        this.service.validateReservation(this.freeReservation);
+
+        return this.freeReservation;
+    }
+
+    @Benchmark
+    public boolean validateReservation_conflict() {
+        try {
+            this.service.validateReservation(this.conflictingReservation);
+            return false;
+        } catch (RoomNotAvailableException e) {
+            return true;
+        }
+    }
+
+    @Benchmark
+    public boolean reservationIndex_hasOverlap_free() {
+        return this.reservationIndex.hasOverlap(1L, this.freeReservation.getStartDate(), this.freeReservation.getEndDate(), null);
+    }
+
+    @Benchmark
+    public boolean reservationIndex_hasOverlap_conflict() {
+        return this.reservationIndex.hasOverlap(1L, this.conflictingReservation.getStartDate(), this.conflictingReservation.getEndDate(), null);
+    }
+
+    @Benchmark
+    public boolean occupancyGrid_isFree() {
+        return this.occupancyGrid.isFree(1L, this.freeReservation.getStartDate(), this.freeReservation.getEndDate(), null);
+    }
+
+    @Benchmark
+    public Reservation convertDtoToReservation() {
+        return this.service.convertDtoToReservation(this.reservationDto);
+    }
+}
@@ -0,0 +1,30 @@
+package app.pinjamruang.room.service;
+
+import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.model.Room;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomServiceBenchmark {
+    private RoomService service;
+
+    private CreateRoomDto roomDto;
+
+    @Setup
+    public void setUp() {
+        this.service = new RoomService();
+        this.roomDto = new CreateRoomDto("Room 1", 10, "09:00", "18:00");
+    }
+
+    @Benchmark
+    public Room createRoomFromDto() {
+        return this.service.createRoomFromDto(this.roomDto);
+    }
+}
@@ -0,0 +1,370 @@
+package app.pinjamruang.loadtest;
+
+import app.pinjamruang.PinjamruangApplication;
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Boots the application on the embedded H2 database of the test classpath and drives its REST API from many
+ * threads with a configurable mix of create, update, delete and list requests.
+ *
+ * Every scenario books one-hour slots on its own rooms and then counts overlapping reservation pairs
+ * straight from the database, so any double booking that got past the write path shows up in the report.
+ * Options are passed as {@code --name=value}: threads, duration (seconds), rooms, days, scenarios
+ * (comma-separated, {@code mixed} and {@code hot-room}), mix (e.g. {@code create=50,update=15,delete=10,list=25}),
+ * hotRoomShare (percent of writes going to the hot room) and report (path of the JSON report).
+ */
+public class LoadTestHarness {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2019, 6, 3);
+
+    private static final String[] OPERATIONS = {"create", "update", "delete", "list"};
+
+    private final Map<String, String> options;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private RestTemplate restTemplate;
+
+    private ReservationRepository reservationRepository;
+
+    private String baseUrl;
+
+    private LoadTestHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        int doubleBookings = new LoadTestHarness(options).run();
+
+        System.exit(doubleBookings == 0 ? 0 : 1);
+    }
+
+    private int run() throws Exception {
+        // Devtools would relaunch main in a restart class loader, which a one-shot harness does not need.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        ConfigurableApplicationContext context = SpringApplication.run(
+                PinjamruangApplication.class,
+                "--server.port=0",
+                "--logging.level.root=WARN"
+        );
+
+        try {
+            this.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            this.reservationRepository = context.getBean(ReservationRepository.class);
+            this.restTemplate = new RestTemplate();
+            this.restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+                @Override
+                public boolean hasError(ClientHttpResponse response) {
+                    // Status codes are counted per operation instead of being thrown.
+                    return false;
+                }
+            });
+
+            List<Map<String, Object>> scenarios = new ArrayList<>();
+            int doubleBookings = 0;
+
+            for (String scenario : option("scenarios", "mixed,hot-room").split(",")) {
+                Map<String, Object> result = runScenario(scenario.trim());
+                doubleBookings += (Integer) result.get("doubleBookings");
+                scenarios.add(result);
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("options", new TreeMap<>(this.options));
+            report.put("scenarios", scenarios);
+            report.put("doubleBookings", doubleBookings);
+
+            File reportFile = new File(option("report", "target/loadtest-report.json"));
+            reportFile.getAbsoluteFile().getParentFile().mkdirs();
+            this.objectMapper.writeValue(reportFile, report);
+            System.out.println(this.objectMapper.writeValueAsString(report));
+            System.out.println("Load test report written to " + reportFile.getAbsolutePath());
+
+            return doubleBookings;
+        } finally {
+            context.close();
+        }
+    }
+
+    private Map<String, Object> runScenario(String scenario) throws Exception {
+        int threads = Integer.parseInt(option("threads", "32"));
+        int durationSeconds = Integer.parseInt(option("duration", "20"));
+        int roomCount = Integer.parseInt(option("rooms", "20"));
+        int days = Integer.parseInt(option("days", "20"));
+        int hotRoomShare = "hot-room".equals(scenario) ? Integer.parseInt(option("hotRoomShare", "90")) : 0;
+        int[] mix = parseMix(option("mix", "create=50,update=15,delete=10,list=25"));
+
+        List<Long> rooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(createRoom(scenario + " " + i));
+        }
+
+        Map<String, OperationStats> stats = new LinkedHashMap<>();
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new OperationStats());
+        }
+
+        ReservationPool pool = new ReservationPool();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                while (System.nanoTime() < deadline) {
+                    Long roomId = random.nextInt(100) < hotRoomShare ? rooms.get(0) : rooms.get(random.nextInt(rooms.size()));
+                    String operation = pickOperation(mix, random.nextInt(mix[mix.length - 1]));
+
+                    perform(operation, roomId, days, random, pool, stats.get(operation));
+                }
+
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        long totalCount = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Map.Entry<String, OperationStats> entry : stats.entrySet()) {
+            totalCount += entry.getValue().count();
+            operations.put(entry.getKey(), entry.getValue().toReport(elapsedSeconds));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scenario", scenario);
+        result.put("threads", threads);
+        result.put("rooms", roomCount);
+        result.put("hotRoomSharePercent", hotRoomShare);
+        result.put("elapsedSeconds", elapsedSeconds);
+        result.put("requests", totalCount);
+        result.put("throughputPerSecond", totalCount / elapsedSeconds);
+        result.put("operations", operations);
+        result.put("doubleBookings", countDoubleBookings(new HashSet<>(rooms)));
+
+        return result;
+    }
+
+    private void perform(String operation, Long roomId, int days, ThreadLocalRandom random, ReservationPool pool, OperationStats stats) {
+        long startedAt = System.nanoTime();
+        ResponseEntity<JsonNode> response;
+
+        switch (operation) {
+            case "create":
+                response = exchange(HttpMethod.POST, "/reservations/", randomSlot(roomId, days, random));
+                stats.record(startedAt, response.getStatusCodeValue());
+
+                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                    pool.add(response.getBody().get("id").asLong(), roomId);
+                }
+                return;
+            case "update": {
+                long[] reservation = pool.random(random);
+
+                if (reservation == null) {
+                    return;
+                }
+
+                response = exchange(HttpMethod.PUT, "/reservations/" + reservation[0], randomSlot(reservation[1], days, random));
+                stats.record(startedAt, response.getStatusCodeValue());
+                return;
+            }
+            case "delete": {
+                long[] reservation = pool.take(random);
+
+                if (reservation == null) {
+                    return;
+                }
+
+                response = exchange(HttpMethod.DELETE, "/reservations/" + reservation[0], null);
+                stats.record(startedAt, response.getStatusCodeValue());
+                return;
+            }
+            default:
+                response = exchange(HttpMethod.GET, "/reservations/?limit=100&roomId=" + roomId, null);
+                stats.record(startedAt, response.getStatusCodeValue());
+        }
+    }
+
+    private ResponseEntity<JsonNode> exchange(HttpMethod method, String path, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        return this.restTemplate.exchange(this.baseUrl + path, method, new HttpEntity<>(body, headers), JsonNode.class);
+    }
+
+    private Long createRoom(String name) {
+        Map<String, Object> room = new HashMap<>();
+        room.put("name", name);
+        room.put("capacity", 20);
+        room.put("openTime", "07:00");
+        room.put("closeTime", "21:00");
+
+        ResponseEntity<JsonNode> response = exchange(HttpMethod.POST, "/rooms/", room);
+
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new IllegalStateException("Could not create room: " + response.getStatusCode());
+        }
+
+        return response.getBody().get("id").asLong();
+    }
+
+    private Map<String, Object> randomSlot(Long roomId, int days, ThreadLocalRandom random) {
+        String date = FIRST_DAY.plusDays(random.nextInt(days)).format(DATE_FORMATTER);
+        int hour = 8 + random.nextInt(12);
+
+        Map<String, Object> reservation = new HashMap<>();
+        reservation.put("startDate", String.format("%s %02d:00", date, hour));
+        reservation.put("endDate", String.format("%s %02d:00", date, hour + 1));
+        reservation.put("attendees", 1 + random.nextInt(20));
+        reservation.put("agenda", "Load test");
+        reservation.put("roomId", roomId);
+
+        return reservation;
+    }
+
+    /**
+     * Counts pairs of overlapping reservations in the given rooms, sweeping each room's intervals in start
+     * order while remembering the ends of the intervals still open.
+     */
+    private int countDoubleBookings(Set<Long> roomIds) {
+        Map<Long, List<ReservationIntervalDto>> byRoom = new HashMap<>();
+
+        for (ReservationIntervalDto interval : this.reservationRepository.findAllIntervals()) {
+            if (roomIds.contains(interval.getRoomId())) {
+                byRoom.computeIfAbsent(interval.getRoomId(), key -> new ArrayList<>()).add(interval);
+            }
+        }
+
+        int overlaps = 0;
+
+        for (List<ReservationIntervalDto> intervals : byRoom.values()) {
+            intervals.sort(Comparator.comparing(ReservationIntervalDto::getStartDate));
+            PriorityQueue<ReservationIntervalDto> open = new PriorityQueue<>(Comparator.comparing(ReservationIntervalDto::getEndDate));
+
+            for (ReservationIntervalDto interval : intervals) {
+                while (!open.isEmpty() && !open.peek().getEndDate().isAfter(interval.getStartDate())) {
+                    open.poll();
+                }
+
+                overlaps += open.size();
+                open.add(interval);
+            }
+        }
+
+        return overlaps;
+    }
+
+    private String option(String name, String defaultValue) {
+        return this.options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Turns the weights of the mix into cumulative upper bounds, in the order of {@link #OPERATIONS}.
+     */
+    private static int[] parseMix(String mix) {
+        Map<String, Integer> weights = new HashMap<>();
+
+        for (String part : mix.split(",")) {
+            String[] weight = part.split("=");
+            weights.put(weight[0].trim(), Integer.parseInt(weight[1].trim()));
+        }
+
+        int[] bounds = new int[OPERATIONS.length];
+        int total = 0;
+
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            total += weights.getOrDefault(OPERATIONS[i], 0);
+            bounds[i] = total;
+        }
+
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix needs a positive weight: " + mix);
+        }
+
+        return bounds;
+    }
+
+    private static String pickOperation(int[] bounds, int value) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (value < bounds[i]) {
+                return OPERATIONS[i];
+            }
+        }
+
+        return OPERATIONS[OPERATIONS.length - 1];
+    }
+
+    /**
+     * Reservations created during a scenario, as {@code {id, roomId}} pairs, for updates and deletes to pick from.
+     */
+    private static class ReservationPool {
+        private final List<long[]> reservations = new ArrayList<>();
+
+        private synchronized void add(long id, long roomId) {
+            this.reservations.add(new long[]{id, roomId});
+        }
+
+        private synchronized long[] random(ThreadLocalRandom random) {
+            return this.reservations.isEmpty() ? null : this.reservations.get(random.nextInt(this.reservations.size()));
+        }
+
+        private synchronized long[] take(ThreadLocalRandom random) {
+            if (this.reservations.isEmpty()) {
+                return null;
+            }
+
+            int index = random.nextInt(this.reservations.size());
+            long[] taken = this.reservations.get(index);
+            this.reservations.set(index, this.reservations.get(this.reservations.size() - 1));
+            this.reservations.remove(this.reservations.size() - 1);
+
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package app.pinjamruang.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and outcome counters of one operation type. Latencies are recorded in microseconds,
+ * from one microsecond up to one minute at three significant digits.
+ */
+class OperationStats {
+    private final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+
+    private final LongAdder succeeded = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    void record(long startedAtNanos, int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAtNanos);
+        this.latencies.recordValue(Math.max(1, Math.min(micros, this.latencies.getHighestTrackableValue())));
+
+        if (status >= 200 && status < 300) {
+            this.succeeded.increment();
+        } else if (status >= 400 && status < 500) {
+            this.rejected.increment();
+        } else {
+            this.failed.increment();
+        }
+    }
+
+    long count() {
+        return this.latencies.getTotalCount();
+    }
+
+    Map<String, Object> toReport(double elapsedSeconds) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", count());
+        report.put("succeeded", this.succeeded.sum());
+        report.put("rejected", this.rejected.sum());
+        report.put("failed", this.failed.sum());
+        report.put("throughputPerSecond", count() / elapsedSeconds);
+        report.put("meanMillis", this.latencies.getMean() / 1000.0);
+        report.put("p50Millis", this.latencies.getValueAtPercentile(50) / 1000.0);
+        report.put("p99Millis", this.latencies.getValueAtPercentile(99) / 1000.0);
+        report.put("p999Millis", this.latencies.getValueAtPercentile(99.9) / 1000.0);
+        report.put("maxMillis", this.latencies.getMaxValue() / 1000.0);
+
+        return report;
+    }
+}
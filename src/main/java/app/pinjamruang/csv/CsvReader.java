@@ -0,0 +1,216 @@
+package app.pinjamruang.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 records one at a time: fields separated by commas, optionally quoted, with {@code ""} for a
+ * quote inside a quoted field and line breaks allowed inside quotes. Blank lines are skipped.
+ *
+ * Only the current record is held in memory, and a record longer than {@link #MAX_RECORD_LENGTH} chars fails
+ * the read, so an unbalanced quote can not pull the rest of the input into a single field. A record that is too
+ * long or ends inside quotes is reported as a {@link MalformedRecordException}, and reading resumes on the line
+ * after the one it starts on.
+ */
+public class CsvReader {
+    public static final int MAX_RECORD_LENGTH = 1 << 16;
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[8192];
+
+    private int position;
+
+    private int limit;
+
+    private int pending = NONE;
+
+    private long line = 1;
+
+    private long recordLine;
+
+    // Chars read past a malformed record's first line, read again before the rest of the input.
+    private String pushback = "";
+
+    private int pushbackPosition;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the fields of the next record, or null at the end of the input.
+     *
+     * @throws MalformedRecordException if the next record can not be parsed; the following call reads on
+     */
+    public List<String> next() throws IOException {
+        List<String> fields;
+
+        do {
+            fields = readRecord();
+        } while (fields != null && fields.size() == 1 && fields.get(0).isEmpty());
+
+        return fields;
+    }
+
+    /**
+     * Returns the line the record last returned by {@link #next()} starts on, counting from 1.
+     */
+    public long getLineNumber() {
+        return this.recordLine;
+    }
+
+    private List<String> readRecord() throws IOException {
+        int c = read();
+
+        if (c == -1) {
+            return null;
+        }
+
+        this.recordLine = this.line;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (c != -1) {
+                text.append((char) c);
+            }
+
+            if (quoted) {
+                if (c == -1) {
+                    throw malformed(text, "Unterminated quoted field in the record starting at line %d.");
+                }
+
+                if (c == '"') {
+                    c = read();
+
+                    if (c != '"') {
+                        // The closing quote; whatever follows is read as unquoted text.
+                        quoted = false;
+                        continue;
+                    }
+
+                    text.append('"');
+                } else if (c == '\n') {
+                    this.line++;
+                }
+
+                field.append((char) c);
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+
+                    if (next != '\n') {
+                        this.pending = next;
+                    }
+                }
+
+                if (c != -1) {
+                    this.line++;
+                }
+
+                fields.add(field.toString());
+
+                return fields;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+
+            if (text.length() > MAX_RECORD_LENGTH) {
+                throw malformed(text, "The record starting at line %d is longer than " + MAX_RECORD_LENGTH + " characters.");
+            }
+
+            c = read();
+        }
+    }
+
+    /**
+     * Gives up on the record read so far: everything after its first line is read again, and a first line that
+     * has not ended yet is skipped to its end.
+     */
+    private MalformedRecordException malformed(StringBuilder text, String message) throws IOException {
+        int lineEnd = indexOfLineBreak(text);
+
+        if (lineEnd < 0) {
+            int c;
+
+            do {
+                c = read();
+            } while (c != -1 && c != '\n' && c != '\r');
+
+            if (c == '\r') {
+                int next = read();
+
+                if (next != '\n') {
+                    this.pending = next;
+                }
+            }
+
+            lineEnd = text.length();
+        } else {
+            String rest = text.substring(lineEnd + 1) + this.pushback.substring(this.pushbackPosition);
+            this.pushback = text.charAt(lineEnd) == '\r' && rest.startsWith("\n") ? rest.substring(1) : rest;
+            this.pushbackPosition = 0;
+
+            if (rest.isEmpty() && text.charAt(lineEnd) == '\r') {
+                int next = read();
+
+                if (next != '\n') {
+                    this.pending = next;
+                }
+            }
+        }
+
+        this.line = this.recordLine + 1;
+
+        return new MalformedRecordException(String.format(message, this.recordLine), this.recordLine, text.substring(0, lineEnd));
+    }
+
+    private static int indexOfLineBreak(StringBuilder text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' || text.charAt(i) == '\r') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int read() throws IOException {
+        if (this.pending != NONE) {
+            int c = this.pending;
+            this.pending = NONE;
+
+            return c;
+        }
+
+        if (this.pushbackPosition < this.pushback.length()) {
+            return this.pushback.charAt(this.pushbackPosition++);
+        }
+
+        if (this.position == this.limit) {
+            this.limit = this.reader.read(this.buffer, 0, this.buffer.length);
+            this.position = 0;
+
+            if (this.limit <= 0) {
+                this.limit = 0;
+
+                return -1;
+            }
+        }
+
+        return this.buffer[this.position++];
+    }
+}
@@ -0,0 +1,47 @@
+package app.pinjamruang.csv;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes RFC 4180 records, quoting only the fields that need it.
+ */
+public class CsvWriter {
+    private final Writer writer;
+
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void write(List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                this.writer.write(',');
+            }
+
+            writeField(fields.get(i));
+        }
+
+        this.writer.write('\n');
+    }
+
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            this.writer.write(field);
+            return;
+        }
+
+        this.writer.write('"');
+        this.writer.write(field.replace("\"", "\"\""));
+        this.writer.write('"');
+    }
+}
@@ -0,0 +1,33 @@
+package app.pinjamruang.csv;
+
+import java.io.IOException;
+
+/**
+ * A record {@link CsvReader} could not parse. The reader has already moved past it, so reading can go on
+ * with the next record.
+ */
+public class MalformedRecordException extends IOException {
+    private final long lineNumber;
+
+    private final String text;
+
+    public MalformedRecordException(String message, long lineNumber, String text) {
+        super(message);
+        this.lineNumber = lineNumber;
+        this.text = text;
+    }
+
+    /**
+     * Returns the line the record starts on, counting from 1.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the first line of the record as it was read.
+     */
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,64 @@
+package app.pinjamruang.json;
+
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+import static app.pinjamruang.json.JsonFields.*;
+
+public class CreateReservationDtoDeserializer extends StdDeserializer<CreateReservationDto> {
+    public CreateReservationDtoDeserializer() {
+        super(CreateReservationDto.class);
+    }
+
+    @Override
+    public CreateReservationDto deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!enterObject(p)) {
+            return (CreateReservationDto) ctxt.handleUnexpectedToken(CreateReservationDto.class, p);
+        }
+
+        String startDate = null;
+        String endDate = null;
+        Integer attendees = null;
+        String agenda = null;
+        Long roomId = null;
+        Long version = null;
+
+        for (JsonToken token = p.currentToken(); token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String name = p.getCurrentName();
+            p.nextToken();
+
+            switch (name) {
+                case "startDate":
+                    startDate = readString(p, ctxt);
+                    break;
+                case "endDate":
+                    endDate = readString(p, ctxt);
+                    break;
+                case "attendees":
+                    attendees = readInteger(p, ctxt);
+                    break;
+                case "agenda":
+                    agenda = readString(p, ctxt);
+                    break;
+                case "roomId":
+                    roomId = readLong(p, ctxt);
+                    break;
+                case "version":
+                    version = readLong(p, ctxt);
+                    break;
+                default:
+                    ctxt.handleUnknownProperty(p, this, CreateReservationDto.class, name);
+            }
+        }
+
+        CreateReservationDto dto = new CreateReservationDto(startDate, endDate, attendees, agenda, roomId);
+        dto.setVersion(version);
+
+        return dto;
+    }
+}
@@ -0,0 +1,60 @@
+package app.pinjamruang.json;
+
+import app.pinjamruang.room.dto.CreateRoomDto;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+import static app.pinjamruang.json.JsonFields.*;
+
+public class CreateRoomDtoDeserializer extends StdDeserializer<CreateRoomDto> {
+    public CreateRoomDtoDeserializer() {
+        super(CreateRoomDto.class);
+    }
+
+    @Override
+    public CreateRoomDto deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!enterObject(p)) {
+            return (CreateRoomDto) ctxt.handleUnexpectedToken(CreateRoomDto.class, p);
+        }
+
+        String name = null;
+        Integer capacity = null;
+        String openTime = null;
+        String closeTime = null;
+        Long version = null;
+
+        for (JsonToken token = p.currentToken(); token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String field = p.getCurrentName();
+            p.nextToken();
+
+            switch (field) {
+                case "name":
+                    name = readString(p, ctxt);
+                    break;
+                case "capacity":
+                    capacity = readInteger(p, ctxt);
+                    break;
+                case "openTime":
+                    openTime = readString(p, ctxt);
+                    break;
+                case "closeTime":
+                    closeTime = readString(p, ctxt);
+                    break;
+                case "version":
+                    version = readLong(p, ctxt);
+                    break;
+                default:
+                    ctxt.handleUnknownProperty(p, this, CreateRoomDto.class, field);
+            }
+        }
+
+        CreateRoomDto dto = new CreateRoomDto(name, capacity, openTime, closeTime);
+        dto.setVersion(version);
+
+        return dto;
+    }
+}
@@ -0,0 +1,151 @@
+package app.pinjamruang.json;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parsing and printing of the fixed date formats the API uses, without a {@link DateTimeFormatter} in the
+ * common case.
+ *
+ * Input of exactly the expected shape with in-range fields is read digit by digit. Anything else goes through
+ * the formatter, so its lenient cases, such as February 30th or 24:00, and its
+ * {@link java.time.format.DateTimeParseException} messages stay what they were. Printing matches
+ * {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} and {@link DateTimeFormatter#ISO_LOCAL_TIME}, which is how Jackson
+ * writes these types.
+ */
+public final class FixedFormatDates {
+    public static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    public static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    static final int MAX_DATE_TIME_LENGTH = 35;
+    static final int MAX_TIME_LENGTH = 18;
+
+    private FixedFormatDates() {
+    }
+
+    /**
+     * Parses {@code yyyy-MM-dd HH:mm}.
+     */
+    public static LocalDateTime parseDateTime(String text) {
+        if (text != null && text.length() == 16
+                && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == ' ' && text.charAt(13) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            int hour = digits(text, 11, 13);
+            int minute = digits(text, 14, 16);
+
+            if (year >= 1 && month >= 1 && month <= 12 && day >= 1 && day <= Month.of(month).length(Year.isLeap(year))
+                    && isTime(hour, minute)) {
+                return LocalDateTime.of(year, month, day, hour, minute);
+            }
+        }
+
+        return LocalDateTime.parse(text, DATE_TIME);
+    }
+
+    /**
+     * Parses {@code HH:mm}.
+     */
+    public static LocalTime parseTime(String text) {
+        if (text != null && text.length() == 5 && text.charAt(2) == ':') {
+            int hour = digits(text, 0, 2);
+            int minute = digits(text, 3, 5);
+
+            if (isTime(hour, minute)) {
+                return LocalTime.of(hour, minute);
+            }
+        }
+
+        return LocalTime.parse(text, TIME);
+    }
+
+    /**
+     * Prints {@code dateTime} into {@code buffer}, which holds at least {@value #MAX_DATE_TIME_LENGTH} chars, and
+     * returns the number of chars written.
+     */
+    public static int printDateTime(LocalDateTime dateTime, char[] buffer) {
+        int year = dateTime.getYear();
+
+        if (year < 0 || year > 9999) {
+            return copy(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime), buffer);
+        }
+
+        pad(buffer, 0, year, 4);
+        buffer[4] = '-';
+        pad(buffer, 5, dateTime.getMonthValue(), 2);
+        buffer[7] = '-';
+        pad(buffer, 8, dateTime.getDayOfMonth(), 2);
+        buffer[10] = 'T';
+
+        return 11 + printTime(dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond(), dateTime.getNano(), buffer, 11);
+    }
+
+    /**
+     * Prints {@code time} into {@code buffer}, which holds at least {@value #MAX_TIME_LENGTH} chars, and returns
+     * the number of chars written.
+     */
+    public static int printTime(LocalTime time, char[] buffer) {
+        return printTime(time.getHour(), time.getMinute(), time.getSecond(), time.getNano(), buffer, 0);
+    }
+
+    private static int printTime(int hour, int minute, int second, int nano, char[] buffer, int offset) {
+        pad(buffer, offset, hour, 2);
+        buffer[offset + 2] = ':';
+        pad(buffer, offset + 3, minute, 2);
+        buffer[offset + 5] = ':';
+        pad(buffer, offset + 6, second, 2);
+
+        if (nano == 0) {
+            return 8;
+        }
+
+        // Like ISO_LOCAL_TIME, print as few fraction digits as the value needs.
+        int digits = 9;
+        while (nano % 10 == 0) {
+            nano /= 10;
+            digits--;
+        }
+
+        buffer[offset + 8] = '.';
+        pad(buffer, offset + 9, nano, digits);
+
+        return 9 + digits;
+    }
+
+    private static boolean isTime(int hour, int minute) {
+        return hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59;
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    private static void pad(char[] buffer, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int copy(String text, char[] buffer) {
+        text.getChars(0, text.length(), buffer, 0);
+
+        return text.length();
+    }
+}
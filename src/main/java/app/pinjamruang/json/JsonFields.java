@@ -0,0 +1,112 @@
+package app.pinjamruang.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Field writers and value readers shared by the hand-written (de)serializers. Values of the expected token type
+ * are read directly; any other token is handed to Jackson's own deserializer for the type, so coercions such as
+ * a number sent as a string keep working.
+ */
+final class JsonFields {
+    private JsonFields() {
+    }
+
+    static void writeNumber(JsonGenerator gen, SerializableString name, Long value) throws IOException {
+        gen.writeFieldName(name);
+
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    static void writeNumber(JsonGenerator gen, SerializableString name, Integer value) throws IOException {
+        gen.writeFieldName(name);
+
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    static void writeString(JsonGenerator gen, SerializableString name, String value) throws IOException {
+        gen.writeFieldName(name);
+        gen.writeString(value);
+    }
+
+    static void writeDateTime(JsonGenerator gen, SerializableString name, LocalDateTime value) throws IOException {
+        gen.writeFieldName(name);
+
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            char[] buffer = new char[FixedFormatDates.MAX_DATE_TIME_LENGTH];
+            gen.writeString(buffer, 0, FixedFormatDates.printDateTime(value, buffer));
+        }
+    }
+
+    static void writeTime(JsonGenerator gen, SerializableString name, LocalTime value) throws IOException {
+        gen.writeFieldName(name);
+
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            char[] buffer = new char[FixedFormatDates.MAX_TIME_LENGTH];
+            gen.writeString(buffer, 0, FixedFormatDates.printTime(value, buffer));
+        }
+    }
+
+    static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+
+        if (token == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+
+        return token == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, String.class);
+    }
+
+    static Integer readInteger(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+
+        if (token == JsonToken.VALUE_NUMBER_INT && p.getNumberType() == JsonParser.NumberType.INT) {
+            return p.getIntValue();
+        }
+
+        return token == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Integer.class);
+    }
+
+    static Long readLong(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+
+        if (token == JsonToken.VALUE_NUMBER_INT && p.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            return p.getLongValue();
+        }
+
+        return token == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Long.class);
+    }
+
+    /**
+     * Positions {@code p} on the first field name of an object, or on its end. Returns false when the current
+     * token does not start an object.
+     */
+    static boolean enterObject(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+
+        if (token == JsonToken.START_OBJECT) {
+            token = p.nextToken();
+        }
+
+        return token == JsonToken.FIELD_NAME || token == JsonToken.END_OBJECT;
+    }
+}
@@ -0,0 +1,27 @@
+package app.pinjamruang.json;
+
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hand-written (de)serializers for the DTOs every write reads and the entities every response writes. They
+ * stream fields in a fixed order instead of going through Jackson's reflective bean (de)serializers, and print
+ * dates without a {@link java.time.format.DateTimeFormatter}. The JSON read and written is unchanged.
+ *
+ * Spring Boot registers the module with the {@link com.fasterxml.jackson.databind.ObjectMapper} it configures.
+ */
+@Component
+public class PinjamruangJsonModule extends SimpleModule {
+    public PinjamruangJsonModule() {
+        super(PinjamruangJsonModule.class.getSimpleName());
+
+        addSerializer(Room.class, new RoomJsonSerializer());
+        addSerializer(Reservation.class, new ReservationJsonSerializer());
+        addDeserializer(CreateReservationDto.class, new CreateReservationDtoDeserializer());
+        addDeserializer(CreateRoomDto.class, new CreateRoomDtoDeserializer());
+    }
+}
@@ -0,0 +1,56 @@
+package app.pinjamruang.json;
+
+import app.pinjamruang.reservation.model.Reservation;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+import static app.pinjamruang.json.JsonFields.*;
+
+/**
+ * Writes a reservation with its room nested, as the bean serializer did. The room is read through its getters,
+ * so a lazily loaded proxy is written like the entity it stands for.
+ */
+public class ReservationJsonSerializer extends StdSerializer<Reservation> {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString START_DATE = new SerializedString("startDate");
+    private static final SerializableString END_DATE = new SerializedString("endDate");
+    private static final SerializableString ATTENDEES = new SerializedString("attendees");
+    private static final SerializableString AGENDA = new SerializedString("agenda");
+    private static final SerializableString ROOM = new SerializedString("room");
+    private static final SerializableString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializableString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializableString VERSION = new SerializedString("version");
+
+    private final RoomJsonSerializer roomSerializer = new RoomJsonSerializer();
+
+    public ReservationJsonSerializer() {
+        super(Reservation.class);
+    }
+
+    @Override
+    public void serialize(Reservation reservation, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(reservation);
+        writeNumber(gen, ID, reservation.getId());
+        writeDateTime(gen, START_DATE, reservation.getStartDate());
+        writeDateTime(gen, END_DATE, reservation.getEndDate());
+        writeNumber(gen, ATTENDEES, reservation.getAttendees());
+        writeString(gen, AGENDA, reservation.getAgenda());
+        gen.writeFieldName(ROOM);
+
+        if (reservation.getRoom() == null) {
+            gen.writeNull();
+        } else {
+            this.roomSerializer.serialize(reservation.getRoom(), gen, provider);
+        }
+
+        writeDateTime(gen, CREATED_AT, reservation.getCreatedAt());
+        writeDateTime(gen, UPDATED_AT, reservation.getUpdatedAt());
+        writeNumber(gen, VERSION, reservation.getVersion());
+        gen.writeEndObject();
+    }
+}
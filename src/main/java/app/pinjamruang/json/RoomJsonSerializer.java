@@ -0,0 +1,41 @@
+package app.pinjamruang.json;
+
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+import static app.pinjamruang.json.JsonFields.*;
+
+public class RoomJsonSerializer extends StdSerializer<Room> {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString CAPACITY = new SerializedString("capacity");
+    private static final SerializableString OPEN_TIME = new SerializedString("openTime");
+    private static final SerializableString CLOSE_TIME = new SerializedString("closeTime");
+    private static final SerializableString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializableString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializableString VERSION = new SerializedString("version");
+
+    public RoomJsonSerializer() {
+        super(Room.class);
+    }
+
+    @Override
+    public void serialize(Room room, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(room);
+        writeNumber(gen, ID, room.getId());
+        writeString(gen, NAME, room.getName());
+        writeNumber(gen, CAPACITY, room.getCapacity());
+        writeTime(gen, OPEN_TIME, room.getOpenTime());
+        writeTime(gen, CLOSE_TIME, room.getCloseTime());
+        writeDateTime(gen, CREATED_AT, room.getCreatedAt());
+        writeDateTime(gen, UPDATED_AT, room.getUpdatedAt());
+        writeNumber(gen, VERSION, room.getVersion());
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,97 @@
+package app.pinjamruang.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Timers, counters and gauges of the booking write and lookup paths, published through Actuator.
+ *
+ * Meters are created once per operation, reason or room and then looked up from local maps, so recording
+ * on the hot path does not go through the registry.
+ */
+@Component
+public class BookingMetrics {
+    public static final String OPERATION_TIMER = "pinjamruang.booking.operation";
+    public static final String REJECTION_COUNTER = "pinjamruang.reservation.rejections";
+    public static final String ROOM_RESERVATIONS_GAUGE = "pinjamruang.room.reservations";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+
+    private final Map<Long, Meter> roomGauges = new ConcurrentHashMap<>();
+
+    public BookingMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public BookingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T timed(String operation, Supplier<T> action) {
+        return timer(operation).record(action);
+    }
+
+    public void runTimed(String operation, Runnable action) {
+        timer(operation).record(action);
+    }
+
+    public void countRejection(String reason) {
+        this.rejections.computeIfAbsent(reason, key -> Counter.builder(REJECTION_COUNTER)
+                .description("Reservations rejected, by reason")
+                .tag("reason", key)
+                .register(this.meterRegistry)
+        ).increment();
+    }
+
+    /**
+     * Registers a gauge reporting {@code count} for the room, unless the room already has one.
+     */
+    public <T> void trackRoom(Long roomId, T source, ToDoubleFunction<T> count) {
+        if (roomId == null || this.roomGauges.containsKey(roomId)) {
+            return;
+        }
+
+        this.roomGauges.computeIfAbsent(roomId, key -> Gauge.builder(ROOM_RESERVATIONS_GAUGE, source, count)
+                .description("Reservations currently booked in the room")
+                .tag("roomId", String.valueOf(key))
+                .register(this.meterRegistry)
+        );
+    }
+
+    public void untrackRoom(Long roomId) {
+        Meter gauge = roomId == null ? null : this.roomGauges.remove(roomId);
+
+        if (gauge != null) {
+            this.meterRegistry.remove(gauge);
+        }
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    private Timer timer(String operation) {
+        return this.timers.computeIfAbsent(operation, key -> Timer.builder(OPERATION_TIMER)
+                .description("Latency of booking operations")
+                .tag("operation", key)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+        );
+    }
+}
@@ -0,0 +1,120 @@
+package app.pinjamruang.persistence;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GETs answered from {@link ResourceVersions}. The data is loaded together with its tag, and a
+ * client presenting that tag gets a 304 instead of the body. A client presenting the tag the versions were
+ * last read with, {@link ResourceVersions#cachedTag}, gets its 304 without loading anything.
+ */
+public final class ETags {
+    private static final String STAMP_SEPARATOR = ":";
+
+    private ETags() {
+    }
+
+    /**
+     * Tags a collection response with the version it was loaded with. A null {@code cachedTag} always loads.
+     */
+    public static <T> ResponseEntity<T> forCollection(WebRequest request, String cachedTag, Supplier<Tagged<ResponseEntity<T>>> load) {
+        if (cachedTag != null && findTag(request, tag -> tag.equals(quote(cachedTag)) || tag.equals("*")) != null) {
+            return notModified(quote(cachedTag));
+        }
+
+        Tagged<ResponseEntity<T>> tagged = load.get();
+        String etag = quote(tagged.getTag());
+
+        if (findTag(request, tag -> tag.equals(etag) || tag.equals("*")) != null) {
+            return notModified(etag);
+        }
+
+        ResponseEntity<T> response = tagged.getValue();
+
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .eTag(etag)
+                .body(response.getBody());
+    }
+
+    /**
+     * Tags an entity response with the version it was loaded with, followed by the entity's {@code stamp}. A
+     * client whose tag carries the entity's stamp gets a 304 with the refreshed tag instead of the body, even
+     * if other entities of the collection changed since. A client tag starting with the {@code cachedTag} is
+     * current as a whole and gets a 304 without loading; a null {@code cachedTag} always loads.
+     */
+    public static <T> ResponseEntity<T> forEntity(WebRequest request, String cachedTag, Supplier<Tagged<T>> load, Function<T, String> stamp) {
+        if (cachedTag != null) {
+            String current = findTag(request, tag -> tag.startsWith("\"" + cachedTag + STAMP_SEPARATOR));
+
+            if (current != null) {
+                return notModified(current);
+            }
+        }
+
+        Tagged<T> tagged = load.get();
+        T entity = tagged.getValue();
+        String entityStamp = STAMP_SEPARATOR + stamp.apply(entity) + "\"";
+        String etag = "\"" + tagged.getTag() + entityStamp;
+
+        if (findTag(request, tag -> tag.endsWith(entityStamp)) != null) {
+            return notModified(etag);
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(entity);
+    }
+
+    /**
+     * Stamps an entity by its {@code @Version}s, e.g. a reservation and its embedded room. Unlike a timestamp,
+     * a version moves on every committed write, however close together two writes land.
+     */
+    public static String stamp(Long... versions) {
+        StringBuilder stamp = new StringBuilder();
+
+        for (Long version : versions) {
+            stamp.append(stamp.length() == 0 ? "" : "-").append(version == null ? 0L : version);
+        }
+
+        return stamp.toString();
+    }
+
+    /**
+     * Returns the first tag of the request's If-None-Match header accepted by {@code filter}, without a weak
+     * prefix, or null.
+     */
+    private static String findTag(WebRequest request, Predicate<String> filter) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch == null) {
+            return null;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (filter.test(tag)) {
+                return tag;
+            }
+        }
+
+        return null;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    private static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+}
@@ -0,0 +1,51 @@
+package app.pinjamruang.persistence;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated listing. {@code nextCursor} is the key to pass as {@code after} to
+ * fetch the following page, or {@code null} when this is the last page.
+ */
+public class KeysetPage<T> {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final Long nextCursor;
+
+    public KeysetPage(List<T> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Builds a page from a query that fetched up to {@code limit + 1} rows ordered by key; the extra row only
+     * tells whether another page exists and is dropped.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, Long> key) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+
+        List<T> items = rows.subList(0, limit);
+
+        return new KeysetPage<>(items, key.apply(items.get(limit - 1)));
+    }
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
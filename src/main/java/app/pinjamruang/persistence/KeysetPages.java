@@ -0,0 +1,32 @@
+package app.pinjamruang.persistence;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+
+public final class KeysetPages {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private KeysetPages() {
+    }
+
+    /**
+     * Renders a page as a plain JSON array. When another page exists, its cursor is sent in the
+     * {@value #NEXT_CURSOR_HEADER} header and as a {@code Link: <...>; rel="next"} header.
+     */
+    public static <T> ResponseEntity<List<T>> toResponse(KeysetPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.getNextCursor())
+                    .toUriString();
+
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()))
+                    .header("Link", String.format("<%s>; rel=\"next\"", next));
+        }
+
+        return response.body(page.getItems());
+    }
+}
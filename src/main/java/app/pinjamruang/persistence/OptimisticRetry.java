@@ -0,0 +1,76 @@
+package app.pinjamruang.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs read-modify-write operations against {@code @Version}ed entities.
+ *
+ * A write that lost the race to a concurrent one is retried up to {@code max-attempts} times, sleeping an
+ * exponentially growing, jittered backoff in between so that competing writers do not collide again in lock
+ * step. The operation must re-read the entity on every attempt; a rolled back transaction clears the
+ * request's persistence context, so the next read sees the committed row. Writes that are still stale after
+ * the last attempt, or that are only allowed a single attempt, surface as {@link StaleWriteException}.
+ */
+@Component
+public class OptimisticRetry {
+    private static final Logger logger = LoggerFactory.getLogger(OptimisticRetry.class);
+
+    @Value("${pinjamruang.optimistic-retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${pinjamruang.optimistic-retry.backoff-millis:20}")
+    private long backoffMillis = 20L;
+
+    public <T> T run(Supplier<T> operation) throws StaleWriteException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= this.maxAttempts) {
+                    throw stale(e);
+                }
+
+                logger.debug("Optimistic write conflict on attempt {} of {}, retrying", attempt, this.maxAttempts);
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Runs the operation once, for writes made against a version the client read and must not silently be
+     * replayed on newer data.
+     */
+    public <T> T runOnce(Supplier<T> operation) throws StaleWriteException {
+        try {
+            return operation.get();
+        } catch (OptimisticLockingFailureException e) {
+            throw stale(e);
+        }
+    }
+
+    long backoffMillis(int attempt) {
+        long ceiling = this.backoffMillis << Math.min(attempt - 1, 16);
+
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(backoffMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StaleWriteException("Interrupted while retrying a conflicting write.", e);
+        }
+    }
+
+    private static StaleWriteException stale(OptimisticLockingFailureException e) {
+        return new StaleWriteException("The resource was changed by another request, reload it and try again.", e);
+    }
+}
@@ -0,0 +1,38 @@
+package app.pinjamruang.persistence;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator using the pooled-lo optimizer, so only one in {@code allocation-size} inserts needs a
+ * round trip to fetch the next sequence value. The allocation size is read from the
+ * {@code pinjamruang.id.allocation-size} Hibernate setting ({@code spring.jpa.properties.pinjamruang.id.allocation-size}).
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+    public static final String ALLOCATION_SIZE_SETTING = "pinjamruang.id.allocation-size";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Properties pooledParams = new Properties();
+        pooledParams.putAll(params);
+        pooledParams.setProperty(OPT_PARAM, "pooled-lo");
+        pooledParams.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize(serviceRegistry)));
+
+        super.configure(type, pooledParams, serviceRegistry);
+    }
+
+    public static int allocationSize(ServiceRegistry serviceRegistry) {
+        Object setting = serviceRegistry.getService(ConfigurationService.class)
+                .getSettings()
+                .get(ALLOCATION_SIZE_SETTING);
+
+        return setting == null ? DEFAULT_ALLOCATION_SIZE : Integer.parseInt(setting.toString());
+    }
+}
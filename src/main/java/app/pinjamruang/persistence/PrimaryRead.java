@@ -0,0 +1,18 @@
+package app.pinjamruang.persistence;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps a {@code @Transactional(readOnly = true)} service method on the primary, for reads that must see the
+ * writes just made. The room calendar is one: a week read from a lagging replica right after a write dropped it
+ * from the cache would be cached again without that write.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface PrimaryRead {
+}
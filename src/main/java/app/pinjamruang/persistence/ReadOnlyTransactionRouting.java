@@ -0,0 +1,33 @@
+package app.pinjamruang.persistence;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Routes the {@code @Transactional(readOnly = true)} methods of {@code @Service} beans to the replicas, and any
+ * other transactional service method called from one of them back to the primary. Read-only methods marked
+ * {@link PrimaryRead} stay on the primary.
+ *
+ * Only service methods count: Spring Data runs every repository finder in a read-only transaction of its own,
+ * and those must keep reading the primary when a write path calls them. Calls a service makes to itself do
+ * not pass through the proxy either, so a write method reusing one of its own read methods stays on the
+ * primary as well.
+ */
+@Aspect
+public class ReadOnlyTransactionRouting {
+    @Around("@within(org.springframework.stereotype.Service) && @annotation(transactional)")
+    public Object route(ProceedingJoinPoint joinPoint, Transactional transactional) throws Throwable {
+        boolean replica = transactional.readOnly()
+                && !((MethodSignature) joinPoint.getSignature()).getMethod().isAnnotationPresent(PrimaryRead.class);
+        boolean previous = ReplicaRoutingDataSource.enterScope(replica);
+
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.restoreScope(previous);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package app.pinjamruang.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replaces the single data source with a {@link ReplicaRoutingDataSource} over the primary pool from
+ * {@code spring.datasource.*} and one pool per {@code pinjamruang.datasource.replicas[n].*}. Replicas without
+ * credentials of their own use the primary's. Pool settings are read from {@code spring.datasource.hikari.*} and
+ * {@code pinjamruang.datasource.replicas[n].hikari.*}.
+ *
+ * Only active when at least one replica is configured; without one the application runs on the auto-configured
+ * data source as before.
+ */
+@Configuration
+@ConditionalOnProperty(ReadReplicaConfiguration.REPLICAS + "[0].url")
+public class ReadReplicaConfiguration implements DisposableBean {
+    static final String REPLICAS = "pinjamruang.datasource.replicas";
+
+    @Autowired
+    private Environment environment;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties) {
+        Binder binder = Binder.get(this.environment);
+        HikariDataSource primary = pool(binder, properties, "spring.datasource.hikari", ReplicaRoutingDataSource.PRIMARY);
+
+        List<DataSourceProperties> replicaProperties = binder
+                .bind(REPLICAS, Bindable.listOf(DataSourceProperties.class))
+                .orElse(Collections.emptyList());
+        List<HikariDataSource> replicas = new ArrayList<>();
+
+        for (int i = 0; i < replicaProperties.size(); i++) {
+            DataSourceProperties replica = replicaProperties.get(i);
+
+            if (replica.getUsername() == null) {
+                replica.setUsername(properties.determineUsername());
+                replica.setPassword(properties.determinePassword());
+            }
+
+            replicas.add(pool(binder, replica, REPLICAS + "[" + i + "].hikari", "replica-" + i));
+        }
+
+        // The route is picked when a statement first needs the connection, not when the transaction begins.
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas));
+    }
+
+    /**
+     * Same as the auto-configured adapter, except that Spring does not prepare the connection at the start of a
+     * transaction. Spring only asks Hibernate to hold a connection for the whole session when it prepares it, so
+     * Hibernate now releases it after every transaction. With open-in-view that lets a request read the
+     * replicas in one transaction and still write to the primary in the next.
+     */
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties, DataSource dataSource) {
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter();
+        adapter.setShowSql(properties.isShowSql());
+        adapter.setDatabase(properties.determineDatabase(dataSource));
+        adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        adapter.setPrepareConnection(false);
+
+        return adapter;
+    }
+
+    @Bean
+    public ReadOnlyTransactionRouting readOnlyTransactionRouting() {
+        return new ReadOnlyTransactionRouting();
+    }
+
+    @Override
+    public void destroy() {
+        for (HikariDataSource pool : this.pools) {
+            pool.close();
+        }
+    }
+
+    private HikariDataSource pool(Binder binder, DataSourceProperties properties, String hikariPrefix, String name) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind(hikariPrefix, Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        this.pools.add(pool);
+
+        return pool;
+    }
+}
@@ -0,0 +1,72 @@
+package app.pinjamruang.persistence;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections opened inside a read-only service transaction to the replica pools, taking them in turn,
+ * and every other connection to the primary.
+ *
+ * The decision is made when a connection is opened, so this has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} for the scope set by
+ * {@link ReadOnlyTransactionRouting} to be visible by then. Repository calls outside such a scope, write paths
+ * and the startup loads of the in-memory indexes included, always read the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> replicaScope = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final List<String> replicaKeys = new ArrayList<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            targets.put(key, replicas.get(i));
+            this.replicaKeys.add(key);
+        }
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Sets whether connections opened by the current thread may go to a replica and returns the previous
+     * setting, to be handed back to {@link #restoreScope(boolean)} when the call is done.
+     */
+    static boolean enterScope(boolean replica) {
+        boolean previous = replicaScope.get();
+        replicaScope.set(replica);
+
+        return previous;
+    }
+
+    static void restoreScope(boolean previous) {
+        if (previous) {
+            replicaScope.set(Boolean.TRUE);
+        } else {
+            replicaScope.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (this.replicaKeys.isEmpty() || !replicaScope.get()) {
+            return PRIMARY;
+        }
+
+        return this.replicaKeys.get(Math.floorMod(this.next.getAndIncrement(), this.replicaKeys.size()));
+    }
+}
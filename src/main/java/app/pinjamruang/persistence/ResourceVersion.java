@@ -0,0 +1,87 @@
+package app.pinjamruang.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One stripe of the stored version of a resource collection; the version is the sum of its stripes, see
+ * {@link ResourceVersions}.
+ */
+@Entity
+@IdClass(ResourceVersion.Key.class)
+@Table(name = "resource_version_stripe")
+public class ResourceVersion {
+    @Id
+    @Column(name = "collection")
+    private String collection;
+
+    @Id
+    @Column(name = "stripe")
+    private int stripe;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    public ResourceVersion() {
+    }
+
+    public ResourceVersion(String collection, int stripe, long version) {
+        this.collection = collection;
+        this.stripe = stripe;
+        this.version = version;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public int getStripe() {
+        return stripe;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Key key() {
+        return new Key(this.collection, this.stripe);
+    }
+
+    public static class Key implements Serializable {
+        private String collection;
+        private int stripe;
+
+        public Key() {
+        }
+
+        public Key(String collection, int stripe) {
+            this.collection = collection;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+
+            return Objects.equals(this.collection, key.collection) && this.stripe == key.stripe;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.collection, this.stripe);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package app.pinjamruang.persistence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ResourceVersionRepository extends JpaRepository<ResourceVersion, ResourceVersion.Key> {
+    List<ResourceVersion> findByCollectionIn(Collection<String> collections);
+
+    @Transactional
+    @Modifying
+    @Query("update ResourceVersion v set v.version = v.version + 1 where v.collection in :collections and v.stripe = :stripe")
+    int increment(@Param("collections") Collection<String> collections, @Param("stripe") int stripe);
+}
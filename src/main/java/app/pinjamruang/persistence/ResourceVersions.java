@@ -0,0 +1,175 @@
+package app.pinjamruang.persistence;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters of the resource collections, kept in the {@code resource_version_stripe} table and used as
+ * the base of their ETags. Writes bump them inside their own transaction, so every instance tags a collection the
+ * same way and a version moves exactly when the write it stands for commits.
+ *
+ * A collection's version is the sum of its stripes, and a write only bumps the stripe of its thread, so
+ * concurrent writes do not queue on one row lock. The last version read is also kept in memory for
+ * {@code cache-millis}, so a client presenting a current tag can be answered without a query; a write
+ * committed on this instance drops it at once, one on another instance is seen when it expires.
+ */
+@Component
+public class ResourceVersions {
+    public static final String ROOMS = "rooms";
+    public static final String RESERVATIONS = "reservations";
+
+    @Autowired
+    private ResourceVersionRepository repository;
+
+    @Value("${pinjamruang.resource-versions.stripes:16}")
+    private int stripes = 16;
+
+    @Value("${pinjamruang.resource-versions.cache-millis:1000}")
+    private long cacheMillis = 1000;
+
+    // Spreads threads with the same id on different instances over different stripes.
+    private final int stripeOffset = ThreadLocalRandom.current().nextInt(1 << 16);
+
+    private final Map<String, CachedVersion> cachedVersions = new ConcurrentHashMap<>();
+
+    // Moved by every write committed here, so a version read before the write is not cached after it.
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void createCounters() {
+        Set<ResourceVersion.Key> existing = new HashSet<>();
+
+        for (ResourceVersion version : this.repository.findByCollectionIn(Arrays.asList(ROOMS, RESERVATIONS))) {
+            existing.add(version.key());
+        }
+
+        for (String collection : Arrays.asList(ROOMS, RESERVATIONS)) {
+            for (int stripe = 0; stripe < this.stripes; stripe++) {
+                if (existing.contains(new ResourceVersion.Key(collection, stripe))) {
+                    continue;
+                }
+
+                try {
+                    this.repository.save(new ResourceVersion(collection, stripe, 0L));
+                } catch (DataIntegrityViolationException e) {
+                    // Another instance starting at the same time created it first.
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the collections as changed. Call inside the transaction of the write: the new version becomes
+     * visible when the write commits and is dropped with it on a rollback. A thread always bumps the same
+     * stripe, so one transaction never locks two stripes of a collection.
+     */
+    public void bump(String... collections) {
+        int stripe = Math.floorMod(Thread.currentThread().getId() + this.stripeOffset, this.stripes);
+
+        this.repository.increment(Arrays.asList(collections), stripe);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(collections);
+                }
+            });
+        } else {
+            invalidate(collections);
+        }
+    }
+
+    /**
+     * Returns the current version of the given collections as one tag. Read it in the read-only transaction
+     * that loads the data the tag is sent with, before the data: both then come from the same database, and a
+     * lagging replica can at worst send newer rows under an older tag, never older rows under a newer one.
+     */
+    public String tag(String... collections) {
+        Map<String, Long> generations = new HashMap<>();
+
+        for (String collection : collections) {
+            generations.put(collection, generation(collection).get());
+        }
+
+        Map<String, Long> versions = new HashMap<>();
+
+        for (ResourceVersion version : this.repository.findByCollectionIn(Arrays.asList(collections))) {
+            versions.merge(version.getCollection(), version.getVersion(), Long::sum);
+        }
+
+        long readAt = System.nanoTime();
+        StringBuilder tag = new StringBuilder();
+
+        for (String collection : collections) {
+            long version = versions.getOrDefault(collection, 0L);
+
+            this.cachedVersions.put(collection, new CachedVersion(version, generations.get(collection), readAt));
+            tag.append(tag.length() == 0 ? "" : ".").append(version);
+        }
+
+        return tag.toString();
+    }
+
+    /**
+     * Returns the tag {@link #tag} last returned for the given collections if it was read less than
+     * {@code cache-millis} ago and no write to them committed here since, otherwise null. Only good for
+     * confirming a client's tag: the data has to be loaded with {@link #tag}.
+     */
+    public String cachedTag(String... collections) {
+        long now = System.nanoTime();
+        StringBuilder tag = new StringBuilder();
+
+        for (String collection : collections) {
+            CachedVersion cached = this.cachedVersions.get(collection);
+
+            if (cached == null
+                    || now - cached.readAt >= TimeUnit.MILLISECONDS.toNanos(this.cacheMillis)
+                    || cached.generation != generation(collection).get()) {
+                return null;
+            }
+
+            tag.append(tag.length() == 0 ? "" : ".").append(cached.version);
+        }
+
+        return tag.toString();
+    }
+
+    private void invalidate(String... collections) {
+        for (String collection : collections) {
+            generation(collection).incrementAndGet();
+            this.cachedVersions.remove(collection);
+        }
+    }
+
+    private AtomicLong generation(String collection) {
+        return this.generations.computeIfAbsent(collection, key -> new AtomicLong());
+    }
+
+    private static class CachedVersion {
+        private final long version;
+        private final long generation;
+        private final long readAt;
+
+        private CachedVersion(long version, long generation, long readAt) {
+            this.version = version;
+            this.generation = generation;
+            this.readAt = readAt;
+        }
+    }
+}
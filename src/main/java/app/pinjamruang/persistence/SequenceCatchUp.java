@@ -0,0 +1,66 @@
+package app.pinjamruang.persistence;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the per-entity sequences ahead of the ids already stored in their tables. Rows written before the
+ * entities had their own sequences took ids from the shared {@code hibernate_sequence}, so a freshly created
+ * sequence is restarted above the current maximum id, and its increment is aligned with the configured
+ * allocation size.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SequenceCatchUp {
+    public static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put("room_seq", "room");
+        SEQUENCES.put("reservation_seq", "reservation");
+        SEQUENCES.put("recurring_reservation_seq", "recurring_reservation");
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceCatchUp.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void catchUp() {
+        SessionFactoryImplementor sessionFactory = this.entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+        int allocationSize = PooledSequenceGenerator.allocationSize(sessionFactory.getServiceRegistry());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+
+        for (Map.Entry<String, String> sequence : SEQUENCES.entrySet()) {
+            catchUp(jdbcTemplate, dialect, sequence.getKey(), sequence.getValue(), allocationSize);
+        }
+    }
+
+    private void catchUp(JdbcTemplate jdbcTemplate, Dialect dialect, String sequenceName, String tableName, int allocationSize) {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + tableName, Long.class);
+        Long nextValue = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(sequenceName), Long.class);
+
+        jdbcTemplate.execute("alter sequence " + sequenceName + " increment by " + allocationSize);
+
+        if (maxId != null && nextValue != null && nextValue <= maxId) {
+            jdbcTemplate.execute("alter sequence " + sequenceName + " restart with " + (maxId + 1));
+            logger.info("Restarted sequence {} at {} to stay above existing {} ids", sequenceName, maxId + 1, tableName);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package app.pinjamruang.persistence;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Wires {@link SqlStatementCounter} into Hibernate and puts {@link SqlBudgetFilter} in front of every request.
+ */
+@Configuration
+public class SqlAccountingConfiguration {
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Value("${pinjamruang.sql.query-budget:10}")
+    private int queryBudget;
+
+    @Value("${pinjamruang.sql.query-count-header:false}")
+    private boolean queryCountHeader;
+
+    /**
+     * Static, because the entity manager factory this configuration depends on is built with it.
+     */
+    @Bean
+    public static HibernatePropertiesCustomizer sqlStatementInspector(SqlStatementCounter sqlStatementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlStatementCounter);
+    }
+
+    @PostConstruct
+    public void countEntityLoads() {
+        this.entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, this.sqlStatementCounter);
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlBudgetFilter> sqlBudgetFilter() {
+        FilterRegistrationBean<SqlBudgetFilter> registration = new FilterRegistrationBean<>(
+                new SqlBudgetFilter(this.sqlStatementCounter, this.queryBudget, this.queryCountHeader));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+
+        return registration;
+    }
+}
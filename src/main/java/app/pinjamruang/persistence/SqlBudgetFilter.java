@@ -0,0 +1,189 @@
+package app.pinjamruang.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Counts the SQL statements and loaded entities of every request with {@link SqlStatementCounter} and logs
+ * requests going over the statement budget.
+ *
+ * With the header enabled the counts are also returned as {@value #QUERY_COUNT_HEADER} and
+ * {@value #ENTITY_COUNT_HEADER}. To be able to do that after the body is written, the body is held in memory
+ * until the request returns from the filter chain. Work done after that, such as a streamed export or an
+ * event feed writing from another thread, is neither counted nor held.
+ */
+public class SqlBudgetFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String ENTITY_COUNT_HEADER = "X-Entity-Load-Count";
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlBudgetFilter.class);
+
+    private final SqlStatementCounter counter;
+
+    private final int budget;
+
+    private final boolean exposeCounts;
+
+    public SqlBudgetFilter(SqlStatementCounter counter, int budget, boolean exposeCounts) {
+        this.counter = counter;
+        this.budget = budget;
+        this.exposeCounts = exposeCounts;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        CountingResponse countingResponse = this.exposeCounts ? new CountingResponse(response) : null;
+        SqlStatementCounter.Counts counts;
+
+        this.counter.start();
+
+        try {
+            filterChain.doFilter(request, countingResponse != null ? countingResponse : response);
+        } finally {
+            counts = this.counter.stop();
+        }
+
+        if (counts.getStatements() > this.budget) {
+            logger.warn("{} {} issued {} SQL statements, over the budget of {}, and loaded {} entities",
+                    request.getMethod(), request.getRequestURI(), counts.getStatements(), this.budget, counts.getEntitiesLoaded());
+        }
+
+        if (countingResponse != null) {
+            countingResponse.release(counts, request.isAsyncStarted());
+        }
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private volatile boolean holding = true;
+
+        private HoldingOutputStream outputStream;
+
+        private PrintWriter writer;
+
+        private CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (this.outputStream == null) {
+                this.outputStream = new HoldingOutputStream(super.getOutputStream());
+            }
+
+            return this.outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (this.writer == null) {
+                this.writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+
+            return this.writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (!this.holding) {
+                super.flushBuffer();
+            }
+        }
+
+        /**
+         * Adds the count headers, writes the held body and lets further writes through.
+         */
+        private void release(SqlStatementCounter.Counts counts, boolean streaming) throws IOException {
+            if (!isCommitted()) {
+                setHeader(QUERY_COUNT_HEADER, String.valueOf(counts.getStatements()));
+                setHeader(ENTITY_COUNT_HEADER, String.valueOf(counts.getEntitiesLoaded()));
+            }
+
+            if (this.writer != null) {
+                this.writer.flush();
+            }
+
+            if (this.outputStream != null) {
+                this.outputStream.release();
+            }
+
+            this.holding = false;
+
+            // Streams such as event feeds keep writing after the chain returns, send their headers now.
+            if (streaming) {
+                flushBuffer();
+            }
+        }
+
+        private class HoldingOutputStream extends ServletOutputStream {
+            private final ServletOutputStream delegate;
+
+            private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+
+            private HoldingOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public synchronized void write(int b) throws IOException {
+                if (holding) {
+                    this.held.write(b);
+                } else {
+                    this.delegate.write(b);
+                }
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                if (holding) {
+                    this.held.write(b, off, len);
+                } else {
+                    this.delegate.write(b, off, len);
+                }
+            }
+
+            // Under the stream's lock, so a write from another thread lands either in the held body or after it.
+            private synchronized void release() throws IOException {
+                this.held.writeTo(this.delegate);
+                this.held.reset();
+                holding = false;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (!holding) {
+                    this.delegate.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!holding) {
+                    this.delegate.close();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return this.delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                this.delegate.setWriteListener(writeListener);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package app.pinjamruang.persistence;
+
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements Hibernate prepares and the entities it loads on the current thread.
+ *
+ * It is installed as Hibernate's {@link StatementInspector} and as a post-load listener. That way it sees
+ * every query, including lazy loads and the proxies initialized while a response is being serialized.
+ * Threads that have not called {@link #start()} are not counted.
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector, PostLoadEventListener {
+    private static final ThreadLocal<Counts> counts = new ThreadLocal<>();
+
+    public void start() {
+        counts.set(new Counts());
+    }
+
+    /**
+     * Stops counting on the current thread and returns what was counted since {@link #start()}.
+     */
+    public Counts stop() {
+        Counts current = counts.get();
+        counts.remove();
+
+        return current == null ? new Counts() : current;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Counts current = counts.get();
+
+        if (current != null) {
+            current.statements++;
+        }
+
+        return sql;
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        Counts current = counts.get();
+
+        if (current != null) {
+            current.entitiesLoaded++;
+        }
+    }
+
+    public static final class Counts {
+        private int statements;
+        private int entitiesLoaded;
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public int getEntitiesLoaded() {
+            return entitiesLoaded;
+        }
+    }
+}
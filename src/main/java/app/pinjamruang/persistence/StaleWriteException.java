@@ -0,0 +1,15 @@
+package app.pinjamruang.persistence;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StaleWriteException extends RuntimeException {
+    public StaleWriteException(String message) {
+        super(message);
+    }
+
+    public StaleWriteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,28 @@
+package app.pinjamruang.persistence;
+
+import java.util.function.Function;
+
+/**
+ * A read result together with the {@link ResourceVersions} tag read in the same transaction, just before it.
+ */
+public class Tagged<T> {
+    private final String tag;
+    private final T value;
+
+    public Tagged(String tag, T value) {
+        this.tag = tag;
+        this.value = value;
+    }
+
+    public <R> Tagged<R> map(Function<T, R> mapper) {
+        return new Tagged<>(this.tag, mapper.apply(this.value));
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public T getValue() {
+        return value;
+    }
+}
@@ -1,28 +1,129 @@
 package app.pinjamruang.reservation.controller;
 
+import app.pinjamruang.persistence.ETags;
+import app.pinjamruang.persistence.KeysetPages;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.reservation.dto.CreateRecurringReservationDto;
 import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.dto.ReservationBatchResultDto;
+import app.pinjamruang.reservation.dto.ReservationOccurrenceDto;
+import app.pinjamruang.reservation.dto.RoomOccupancyDto;
+import app.pinjamruang.reservation.model.ArchivedReservation;
+import app.pinjamruang.reservation.model.RecurringReservation;
 import app.pinjamruang.reservation.model.Reservation;
 import app.pinjamruang.reservation.service.ReservationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/reservations")
 public class ReservationController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @Autowired
     private ReservationService service;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     @GetMapping("/")
-    public List<Reservation> getAllReservations() {
-        return this.service.getAllReservations();
+    public ResponseEntity<List<Reservation>> getAllReservations(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime to,
+            WebRequest request
+    ) {
+        String cachedTag = this.resourceVersions.cachedTag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS);
+
+        return ETags.forCollection(request, cachedTag,
+                () -> this.service.getReservations(after, limit, roomId, from, to).map(KeysetPages::toResponse));
+    }
+
+    @GetMapping("/archive")
+    public ResponseEntity<List<ArchivedReservation>> getArchivedReservations(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long roomId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime to,
+            WebRequest request
+    ) {
+        return ETags.forCollection(request, this.resourceVersions.cachedTag(ResourceVersions.RESERVATIONS),
+                () -> this.service.getArchivedReservations(after, limit, roomId, from, to).map(KeysetPages::toResponse));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReservations(
+            @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime to
+    ) {
+        StreamingResponseBody body = outputStream -> this.service.exportReservations(roomId, from, to, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/occupancy")
+    public List<RoomOccupancyDto> getOccupancy(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate date,
+            @RequestParam(required = false) Long roomId
+    ) {
+        return this.service.getOccupancy(date, roomId);
+    }
+
+    @GetMapping("/recurring/{seriesId}")
+    public RecurringReservation getRecurringReservationById(@PathVariable Long seriesId) {
+        return this.service.getRecurringReservationById(seriesId);
+    }
+
+    @GetMapping("/recurring/{seriesId}/occurrences")
+    public List<ReservationOccurrenceDto> getOccurrences(
+            @PathVariable Long seriesId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime to,
+            @RequestParam(required = false) Integer limit
+    ) {
+        return this.service.getOccurrences(seriesId, from, to, limit);
+    }
+
+    @PostMapping("/recurring")
+    public RecurringReservation createRecurringReservation(@Valid @RequestBody CreateRecurringReservationDto reservationDto) {
+        return this.service.createRecurringReservation(reservationDto);
+    }
+
+    @DeleteMapping("/recurring/{seriesId}/occurrences/{date}")
+    public RecurringReservation cancelOccurrence(
+            @PathVariable Long seriesId,
+            @PathVariable @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate date
+    ) {
+        return this.service.cancelOccurrence(seriesId, date);
+    }
+
+    @DeleteMapping("/recurring/{seriesId}")
+    public void deleteRecurringReservation(@PathVariable Long seriesId) {
+        this.service.deleteRecurringReservation(seriesId);
     }
 
     @GetMapping("/{reservationId}")
-    public Reservation getReservationById(@PathVariable Long reservationId) {
-        return this.service.getReservationById(reservationId);
+    public ResponseEntity<Reservation> getReservationById(@PathVariable Long reservationId, WebRequest request) {
+        String cachedTag = this.resourceVersions.cachedTag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS);
+
+        return ETags.forEntity(request, cachedTag, () -> this.service.getTaggedReservationById(reservationId),
+                reservation -> ETags.stamp(reservation.getVersion(), reservation.getRoom().getVersion()));
     }
 
     @PostMapping("/")
@@ -30,6 +131,11 @@ public class ReservationController {
         return this.service.createReservation(reservationDto);
     }
 
+    @PostMapping("/batch")
+    public List<ReservationBatchResultDto> createReservations(@RequestBody List<CreateReservationDto> reservationDtos) {
+        return this.service.createReservations(reservationDtos);
+    }
+
     @PutMapping("/{reservationId}")
     public Reservation updateReservation(@PathVariable Long reservationId, @Valid @RequestBody CreateReservationDto reservationDto) {
         return this.service.updateReservation(reservationId, reservationDto);
@@ -0,0 +1,28 @@
+package app.pinjamruang.reservation.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class CalendarDayDto {
+    private LocalDate date;
+    private List<CalendarEntryDto> reservations;
+    private List<FreeSlotDto> freeSlots;
+
+    public CalendarDayDto(LocalDate date, List<CalendarEntryDto> reservations, List<FreeSlotDto> freeSlots) {
+        this.date = date;
+        this.reservations = reservations;
+        this.freeSlots = freeSlots;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<CalendarEntryDto> getReservations() {
+        return reservations;
+    }
+
+    public List<FreeSlotDto> getFreeSlots() {
+        return freeSlots;
+    }
+}
@@ -0,0 +1,66 @@
+package app.pinjamruang.reservation.dto;
+
+import app.pinjamruang.reservation.model.Reservation;
+
+import java.time.LocalDateTime;
+
+/**
+ * A booked interval on a room calendar: either a single reservation, or an occurrence of a recurring series,
+ * which carries the series id only.
+ */
+public class CalendarEntryDto {
+    private Long reservationId;
+    private Long seriesId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    private Integer attendees;
+    private String agenda;
+
+    public CalendarEntryDto(Long reservationId, Long seriesId, LocalDateTime startDate, LocalDateTime endDate, Integer attendees, String agenda) {
+        this.reservationId = reservationId;
+        this.seriesId = seriesId;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.attendees = attendees;
+        this.agenda = agenda;
+    }
+
+    public static CalendarEntryDto of(Reservation reservation) {
+        return new CalendarEntryDto(
+                reservation.getId(),
+                null,
+                reservation.getStartDate(),
+                reservation.getEndDate(),
+                reservation.getAttendees(),
+                reservation.getAgenda()
+        );
+    }
+
+    public static CalendarEntryDto occurrence(Long seriesId, LocalDateTime startDate, LocalDateTime endDate) {
+        return new CalendarEntryDto(null, seriesId, startDate, endDate, null, null);
+    }
+
+    public Long getReservationId() {
+        return reservationId;
+    }
+
+    public Long getSeriesId() {
+        return seriesId;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+
+    public Integer getAttendees() {
+        return attendees;
+    }
+
+    public String getAgenda() {
+        return agenda;
+    }
+}
@@ -0,0 +1,39 @@
+package app.pinjamruang.reservation.dto;
+
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+
+/**
+ * The first occurrence of a series plus its repeat rule. A series ends at {@code until} (inclusive,
+ * yyyy-MM-dd), after {@code count} occurrences, or at whichever comes first when both are given.
+ */
+public class CreateRecurringReservationDto extends CreateReservationDto {
+    private RecurrenceFrequency frequency;
+    private Integer interval;
+    private String until;
+    private Integer count;
+
+    public CreateRecurringReservationDto(String startDate, String endDate, Integer attendees, String agenda, Long roomId,
+                                         RecurrenceFrequency frequency, Integer interval, String until, Integer count) {
+        super(startDate, endDate, attendees, agenda, roomId);
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.count = count;
+    }
+
+    public RecurrenceFrequency getFrequency() {
+        return frequency;
+    }
+
+    public Integer getInterval() {
+        return interval;
+    }
+
+    public String getUntil() {
+        return until;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+}
@@ -6,6 +6,7 @@ public class CreateReservationDto {
     private Integer attendees;
     private String agenda;
     private Long roomId;
+    private Long version;
 
     public CreateReservationDto(String startDate, String endDate, Integer attendees, String agenda, Long roomId) {
         this.startDate = startDate;
@@ -34,4 +35,15 @@ public class CreateReservationDto {
     public Long getRoomId() {
         return roomId;
     }
+
+    /**
+     * The version the client last read. When set, an update is rejected unless it still is the current one.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
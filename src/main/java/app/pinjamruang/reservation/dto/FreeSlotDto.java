@@ -0,0 +1,21 @@
+package app.pinjamruang.reservation.dto;
+
+import java.time.LocalDateTime;
+
+public class FreeSlotDto {
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+
+    public FreeSlotDto(LocalDateTime startDate, LocalDateTime endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+}
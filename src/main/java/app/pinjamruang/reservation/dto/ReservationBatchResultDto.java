@@ -0,0 +1,41 @@
+package app.pinjamruang.reservation.dto;
+
+import app.pinjamruang.reservation.model.Reservation;
+
+public class ReservationBatchResultDto {
+    private int index;
+    private boolean created;
+    private Reservation reservation;
+    private String error;
+
+    public ReservationBatchResultDto(int index, boolean created, Reservation reservation, String error) {
+        this.index = index;
+        this.created = created;
+        this.reservation = reservation;
+        this.error = error;
+    }
+
+    public static ReservationBatchResultDto created(int index, Reservation reservation) {
+        return new ReservationBatchResultDto(index, true, reservation, null);
+    }
+
+    public static ReservationBatchResultDto rejected(int index, String error) {
+        return new ReservationBatchResultDto(index, false, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isCreated() {
+        return created;
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,113 @@
+package app.pinjamruang.reservation.dto;
+
+import app.pinjamruang.reservation.model.RecurringReservation;
+import app.pinjamruang.reservation.model.Reservation;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+public class ReservationEventDto {
+    public enum Type {
+        CREATED, UPDATED, DELETED, SERIES_CREATED, OCCURRENCE_CANCELLED, SERIES_DELETED
+    }
+
+    private Type type;
+    private Long reservationId;
+    private Long seriesId;
+    private Long roomId;
+    private Long previousRoomId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    private Integer attendees;
+    private String agenda;
+
+    public ReservationEventDto(Type type, Reservation reservation, Long previousRoomId) {
+        this.type = type;
+        this.reservationId = reservation.getId();
+        this.roomId = reservation.getRoom().getId();
+        this.previousRoomId = previousRoomId;
+        this.startDate = reservation.getStartDate();
+        this.endDate = reservation.getEndDate();
+        this.attendees = reservation.getAttendees();
+        this.agenda = reservation.getAgenda();
+    }
+
+    /**
+     * A change of a recurring series. The dates are those of its first occurrence, or of the occurrence
+     * cancelled.
+     */
+    public ReservationEventDto(Type type, RecurringReservation series, LocalDateTime startDate, LocalDateTime endDate) {
+        this.type = type;
+        this.seriesId = series.getId();
+        this.roomId = series.getRoom().getId();
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.attendees = series.getAttendees();
+        this.agenda = series.getAgenda();
+    }
+
+    public static ReservationEventDto created(Reservation reservation) {
+        return new ReservationEventDto(Type.CREATED, reservation, null);
+    }
+
+    /**
+     * An update of a reservation; {@code previousRoomId} is set only when it moved to another room.
+     */
+    public static ReservationEventDto updated(Reservation reservation, Long previousRoomId) {
+        boolean moved = !Objects.equals(reservation.getRoom().getId(), previousRoomId);
+
+        return new ReservationEventDto(Type.UPDATED, reservation, moved ? previousRoomId : null);
+    }
+
+    public static ReservationEventDto deleted(Reservation reservation) {
+        return new ReservationEventDto(Type.DELETED, reservation, null);
+    }
+
+    public static ReservationEventDto seriesCreated(RecurringReservation series) {
+        return new ReservationEventDto(Type.SERIES_CREATED, series, series.getStartDate(), series.getEndDate());
+    }
+
+    public static ReservationEventDto occurrenceCancelled(RecurringReservation series, LocalDateTime startDate, LocalDateTime endDate) {
+        return new ReservationEventDto(Type.OCCURRENCE_CANCELLED, series, startDate, endDate);
+    }
+
+    public static ReservationEventDto seriesDeleted(RecurringReservation series) {
+        return new ReservationEventDto(Type.SERIES_DELETED, series, series.getStartDate(), series.getEndDate());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getReservationId() {
+        return reservationId;
+    }
+
+    public Long getSeriesId() {
+        return seriesId;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public Long getPreviousRoomId() {
+        return previousRoomId;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+
+    public Integer getAttendees() {
+        return attendees;
+    }
+
+    public String getAgenda() {
+        return agenda;
+    }
+}
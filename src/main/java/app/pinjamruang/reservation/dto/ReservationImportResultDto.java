@@ -0,0 +1,19 @@
+package app.pinjamruang.reservation.dto;
+
+public class ReservationImportResultDto {
+    private long imported;
+    private long rejected;
+
+    public ReservationImportResultDto(long imported, long rejected) {
+        this.imported = imported;
+        this.rejected = rejected;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
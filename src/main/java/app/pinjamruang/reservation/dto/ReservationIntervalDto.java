@@ -0,0 +1,33 @@
+package app.pinjamruang.reservation.dto;
+
+import java.time.LocalDateTime;
+
+public class ReservationIntervalDto {
+    private Long id;
+    private Long roomId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+
+    public ReservationIntervalDto(Long id, Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+        this.id = id;
+        this.roomId = roomId;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+}
@@ -0,0 +1,33 @@
+package app.pinjamruang.reservation.dto;
+
+import java.time.LocalDateTime;
+
+public class ReservationOccurrenceDto {
+    private Long recurringReservationId;
+    private Long roomId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+
+    public ReservationOccurrenceDto(Long recurringReservationId, Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+        this.recurringReservationId = recurringReservationId;
+        this.roomId = roomId;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public Long getRecurringReservationId() {
+        return recurringReservationId;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+}
@@ -0,0 +1,28 @@
+package app.pinjamruang.reservation.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class RoomCalendarDto {
+    private Long roomId;
+    private LocalDate weekStart;
+    private List<CalendarDayDto> days;
+
+    public RoomCalendarDto(Long roomId, LocalDate weekStart, List<CalendarDayDto> days) {
+        this.roomId = roomId;
+        this.weekStart = weekStart;
+        this.days = days;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public List<CalendarDayDto> getDays() {
+        return days;
+    }
+}
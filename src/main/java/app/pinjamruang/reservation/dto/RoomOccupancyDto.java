@@ -0,0 +1,45 @@
+package app.pinjamruang.reservation.dto;
+
+import java.time.LocalDate;
+
+public class RoomOccupancyDto {
+    private Long roomId;
+    private LocalDate date;
+    private int slotMinutes;
+    private int occupiedSlots;
+    private String slots;
+    private long[] words;
+
+    public RoomOccupancyDto(Long roomId, LocalDate date, int slotMinutes, int occupiedSlots, String slots, long[] words) {
+        this.roomId = roomId;
+        this.date = date;
+        this.slotMinutes = slotMinutes;
+        this.occupiedSlots = occupiedSlots;
+        this.slots = slots;
+        this.words = words;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public int getOccupiedSlots() {
+        return occupiedSlots;
+    }
+
+    public String getSlots() {
+        return slots;
+    }
+
+    public long[] getWords() {
+        return words;
+    }
+}
@@ -0,0 +1,11 @@
+package app.pinjamruang.reservation.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRecurrenceException extends RuntimeException {
+    public InvalidRecurrenceException(String message) {
+        super(message);
+    }
+}
@@ -5,7 +5,29 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class RoomNotAvailableException extends RuntimeException {
+    private final Reason reason;
+
     public RoomNotAvailableException(String message) {
+        this(null, message);
+    }
+
+    public RoomNotAvailableException(Reason reason, String message) {
         super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public enum Reason {
+        CAPACITY,
+        HOURS,
+        CONFLICT,
+        MULTI_DAY;
+
+        public String tag() {
+            return name().toLowerCase();
+        }
     }
 }
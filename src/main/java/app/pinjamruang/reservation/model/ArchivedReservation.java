@@ -0,0 +1,80 @@
+package app.pinjamruang.reservation.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A reservation moved out of the {@code reservation} table once it ended before the archive horizon. Rows are
+ * written by {@link app.pinjamruang.reservation.repository.ReservationRepository#moveToArchive} only and keep
+ * the id they had as a live reservation. The room is kept as a plain id, so archived history neither blocks
+ * deleting a room nor is lost with it.
+ */
+@Entity
+@Table(
+        name = "reservation_archive",
+        indexes = @Index(name = "idx_reservation_archive_room_start_end", columnList = "roomId, startDate, endDate")
+)
+public class ArchivedReservation {
+    @Id
+    private Long id;
+
+    @Column(name = "startDate", nullable = false)
+    private LocalDateTime startDate;
+
+    @Column(name = "endDate", nullable = false)
+    private LocalDateTime endDate;
+
+    @Column(name = "attendees", nullable = false)
+    private Integer attendees;
+
+    @Column(name = "agenda")
+    private String agenda;
+
+    @Column(name = "roomId", nullable = false)
+    private Long roomId;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+
+    public Integer getAttendees() {
+        return attendees;
+    }
+
+    public String getAgenda() {
+        return agenda;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -0,0 +1,7 @@
+package app.pinjamruang.reservation.model;
+
+public enum RecurrenceFrequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY
+}
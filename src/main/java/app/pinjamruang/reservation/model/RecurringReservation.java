@@ -0,0 +1,147 @@
+package app.pinjamruang.reservation.model;
+
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A series of reservations stored as its first occurrence, a repeat rule and the dates of cancelled
+ * occurrences. Occurrences are never stored; they are expanded from the rule when read or checked.
+ */
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Entity
+@Table(name = "recurring_reservation")
+public class RecurringReservation {
+    @Id
+    @GeneratedValue(generator = "recurring_reservation_seq")
+    @GenericGenerator(
+            name = "recurring_reservation_seq",
+            strategy = "app.pinjamruang.persistence.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "recurring_reservation_seq")
+    )
+    private Long id;
+
+    @NotNull
+    @Column(name = "startDate")
+    private LocalDateTime startDate;
+
+    @NotNull
+    @Column(name = "endDate")
+    private LocalDateTime endDate;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "frequency")
+    private RecurrenceFrequency frequency;
+
+    @NotNull
+    @Column(name = "repeatInterval")
+    private Integer interval;
+
+    @Column(name = "untilDate")
+    private LocalDate until;
+
+    @Column(name = "occurrenceCount")
+    private Integer count;
+
+    @ElementCollection
+    @CollectionTable(name = "recurring_reservation_exception", joinColumns = @JoinColumn(name = "recurringReservationId"))
+    @Column(name = "exceptionDate")
+    private Set<LocalDate> exceptionDates = new HashSet<>();
+
+    @NotNull
+    @Column(name = "attendees")
+    private Integer attendees;
+
+    @Column(name = "agenda")
+    private String agenda;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "roomId", nullable = false)
+    private Room room;
+
+    @Column(name = "created_at")
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
+    public RecurringReservation() {
+    }
+
+    public RecurringReservation(@NotNull Reservation firstOccurrence, @NotNull RecurrenceFrequency frequency, @NotNull Integer interval, LocalDate until, Integer count) {
+        this.startDate = firstOccurrence.getStartDate();
+        this.endDate = firstOccurrence.getEndDate();
+        this.attendees = firstOccurrence.getAttendees();
+        this.agenda = firstOccurrence.getAgenda();
+        this.room = firstOccurrence.getRoom();
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.count = count;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+
+    public RecurrenceFrequency getFrequency() {
+        return frequency;
+    }
+
+    public Integer getInterval() {
+        return interval;
+    }
+
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public Set<LocalDate> getExceptionDates() {
+        return exceptionDates;
+    }
+
+    public Integer getAttendees() {
+        return attendees;
+    }
+
+    public String getAgenda() {
+        return agenda;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -3,6 +3,8 @@ package app.pinjamruang.reservation.model;
 import app.pinjamruang.room.model.Room;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
@@ -11,9 +13,18 @@ import java.time.LocalDateTime;
 
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Entity
+@Table(
+        name = "reservation",
+        indexes = @Index(name = "idx_reservation_room_start_end", columnList = "roomId, startDate, endDate")
+)
 public class Reservation {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "reservation_seq")
+    @GenericGenerator(
+            name = "reservation_seq",
+            strategy = "app.pinjamruang.persistence.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "reservation_seq")
+    )
     private Long id;
 
     @NotNull
@@ -31,7 +42,7 @@ public class Reservation {
     @Column(name = "agenda")
     private String agenda;
 
-    @ManyToOne(optional = false, fetch = FetchType.EAGER)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "roomId", nullable = false)
     private Room room;
 
@@ -43,6 +54,10 @@ public class Reservation {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     public Reservation() {
     }
 
@@ -105,4 +120,8 @@ public class Reservation {
     public LocalDateTime getUpdatedAt() {
         return updatedAt;
     }
+
+    public Long getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,115 @@
+package app.pinjamruang.reservation.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Running totals of the reservations of one room on one day: how many there are, how many minutes of the day
+ * they book and the sum of attendees times minutes. Rows are only written by
+ * {@link app.pinjamruang.reservation.repository.RoomDayUtilizationRepository#add} and never recomputed, so
+ * they keep counting archived reservations. The room is kept as a plain id, so the totals outlive the room.
+ */
+@Entity
+@IdClass(RoomDayUtilization.Key.class)
+@Table(name = "room_day_utilization")
+public class RoomDayUtilization {
+    @Id
+    @Column(name = "roomId")
+    private Long roomId;
+
+    @Id
+    @Column(name = "utilizationDate")
+    private LocalDate date;
+
+    @Column(name = "reservations", nullable = false)
+    private int reservations;
+
+    @Column(name = "bookedMinutes", nullable = false)
+    private long bookedMinutes;
+
+    @Column(name = "attendeeMinutes", nullable = false)
+    private long attendeeMinutes;
+
+    public RoomDayUtilization() {
+    }
+
+    public RoomDayUtilization(Long roomId, LocalDate date, int reservations, long bookedMinutes, long attendeeMinutes) {
+        this.roomId = roomId;
+        this.date = date;
+        this.reservations = reservations;
+        this.bookedMinutes = bookedMinutes;
+        this.attendeeMinutes = attendeeMinutes;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getReservations() {
+        return reservations;
+    }
+
+    public long getBookedMinutes() {
+        return bookedMinutes;
+    }
+
+    public long getAttendeeMinutes() {
+        return attendeeMinutes;
+    }
+
+    public Key key() {
+        return new Key(this.roomId, this.date);
+    }
+
+    /**
+     * Returns the totals of this day with the amounts of {@code other} added; neither is changed.
+     */
+    public RoomDayUtilization plus(RoomDayUtilization other) {
+        return new RoomDayUtilization(
+                this.roomId,
+                this.date,
+                this.reservations + other.reservations,
+                this.bookedMinutes + other.bookedMinutes,
+                this.attendeeMinutes + other.attendeeMinutes
+        );
+    }
+
+    public static class Key implements Serializable {
+        private Long roomId;
+        private LocalDate date;
+
+        public Key() {
+        }
+
+        public Key(Long roomId, LocalDate date) {
+            this.roomId = roomId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+
+            return Objects.equals(this.roomId, key.roomId) && Objects.equals(this.date, key.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.roomId, this.date);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.model.ArchivedReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchivedReservationRepository extends JpaRepository<ArchivedReservation, Long> {
+    /**
+     * Returns the archived reservations overlapping {@code [from, to)} with an id greater than {@code after},
+     * ordered by id. The room is optional.
+     */
+    @Query("select a from ArchivedReservation a " +
+            "where a.id > :after and a.endDate > :from and a.startDate < :to " +
+            "and (:roomId is null or a.roomId = :roomId) " +
+            "order by a.id")
+    List<ArchivedReservation> findAfter(
+            @Param("after") Long after,
+            @Param("roomId") Long roomId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Pageable pageable
+    );
+
+    /**
+     * Returns the archived reservations of the given rooms overlapping {@code [from, to)}, for checking rows
+     * that go straight into the archive.
+     */
+    @Query("select new app.pinjamruang.reservation.dto.ReservationIntervalDto(a.id, a.roomId, a.startDate, a.endDate) " +
+            "from ArchivedReservation a where a.roomId in :roomIds and a.endDate > :from and a.startDate < :to")
+    List<ReservationIntervalDto> findOverlapping(
+            @Param("roomIds") Collection<Long> roomIds,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+}
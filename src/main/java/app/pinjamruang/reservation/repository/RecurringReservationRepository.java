@@ -0,0 +1,26 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.RecurringReservation;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RecurringReservationRepository extends JpaRepository<RecurringReservation, Long> {
+    @Override
+    @EntityGraph(attributePaths = {"room", "exceptionDates"})
+    List<RecurringReservation> findAll();
+
+    @EntityGraph(attributePaths = {"room", "exceptionDates"})
+    Optional<RecurringReservation> findWithRoomById(Long id);
+
+    /**
+     * Returns the room of a series without loading it. A series never changes rooms, so this picks the lock to
+     * take before the series itself is read.
+     */
+    @Query("select r.room.id from RecurringReservation r where r.id = :id")
+    Optional<Long> findRoomIdById(@Param("id") Long id);
+}
@@ -0,0 +1,87 @@
+package app.pinjamruang.reservation.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Adds a GiST exclusion constraint on PostgreSQL so the database itself rejects overlapping reservations of
+ * the same room. Runs after Hibernate has created or updated the schema and is a no-op on other databases.
+ *
+ * The striped locks of {@code BookingCoordinator} only serialize the writes of one instance, so this is what keeps
+ * several instances from booking the same slot. It is on unless {@code pinjamruang.reservation.exclusion-constraint}
+ * is false.
+ *
+ * Reservations stored before conflicts were checked for partial overlaps may still overlap, and adding the
+ * constraint would fail on them. In that case the overlapping pairs are logged and the constraint is left out
+ * until they are resolved. A database user that may not create the btree_gist extension gets a warning as well;
+ * the application starts either way.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "pinjamruang.reservation.exclusion-constraint", havingValue = "true", matchIfMissing = true)
+public class ReservationExclusionConstraint {
+    public static final String CONSTRAINT_NAME = "reservation_room_no_overlap";
+
+    static final int LOGGED_OVERLAPS = 20;
+
+    private static final String FIND_OVERLAPS = "select a.id, b.id, a.room_id from reservation a " +
+            "join reservation b on a.room_id = b.room_id and a.id < b.id " +
+            "and a.start_date < b.end_date and b.start_date < a.end_date " +
+            "order by a.id, b.id limit " + LOGGED_OVERLAPS;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationExclusionConstraint.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @PostConstruct
+    public void install() throws MetaDataAccessException {
+        String databaseName = JdbcUtils.extractDatabaseMetaData(this.dataSource, "getDatabaseProductName");
+
+        if (!"PostgreSQL".equals(databaseName)) {
+            logger.info("Skipping reservation exclusion constraint, {} is not PostgreSQL", databaseName);
+            return;
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+        Integer existing = jdbcTemplate.queryForObject(
+                "select count(*) from pg_constraint where conname = ?", Integer.class, CONSTRAINT_NAME);
+
+        if (existing != null && existing > 0) {
+            return;
+        }
+
+        List<String> overlaps = jdbcTemplate.query(FIND_OVERLAPS, (row, rowNumber) -> String.format(
+                "%d and %d in room %d", row.getLong(1), row.getLong(2), row.getLong(3)));
+
+        if (!overlaps.isEmpty()) {
+            logger.warn("Not installing reservation exclusion constraint {}, stored reservations overlap (first {}): {}",
+                    CONSTRAINT_NAME, LOGGED_OVERLAPS, overlaps);
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("create extension if not exists btree_gist");
+            jdbcTemplate.execute("alter table reservation add constraint " + CONSTRAINT_NAME +
+                    " exclude using gist (room_id with =, tsrange(start_date, end_date) with &&)");
+        } catch (DataAccessException e) {
+            logger.warn("Could not install reservation exclusion constraint {}: {}",
+                    CONSTRAINT_NAME, e.getMostSpecificCause().getMessage());
+            return;
+        }
+
+        logger.info("Installed reservation exclusion constraint {}", CONSTRAINT_NAME);
+    }
+}
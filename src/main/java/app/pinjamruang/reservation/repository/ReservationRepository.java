@@ -1,16 +1,74 @@
 package app.pinjamruang.reservation.repository;
 
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
 import app.pinjamruang.reservation.model.Reservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
-public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+public interface ReservationRepository extends JpaRepository<Reservation, Long>, ReservationRepositoryCustom {
+    @Override
+    @EntityGraph(attributePaths = "room")
+    List<Reservation> findAll();
+
+    @EntityGraph(attributePaths = "room")
+    Optional<Reservation> findWithRoomById(Long id);
+
+    /**
+     * Returns the room of a reservation without loading it, to pick the lock to take before the reservation is
+     * read. An update can move the reservation to another room before the lock is taken.
+     */
+    @Query("select r.room.id from Reservation r where r.id = :id")
+    Optional<Long> findRoomIdById(@Param("id") Long id);
+
+    /**
+     * Deletes the reservation only if it is still at the given version, and returns the number of rows deleted.
+     */
+    @Modifying
+    @Query("delete from Reservation r where r.id = :id and r.version = :version")
+    int deleteByIdAndVersion(@Param("id") Long id, @Param("version") Long version);
+
+    @Query("select new app.pinjamruang.reservation.dto.ReservationIntervalDto(r.id, r.room.id, r.startDate, r.endDate) " +
+            "from Reservation r")
+    List<ReservationIntervalDto> findAllIntervals();
+
+    /**
+     * Returns the reservations ending before {@code horizon} with an id greater than {@code after}, ordered by
+     * id, so the archiver walks the table in id order and every batch resumes where the previous one stopped.
+     */
+    @Query("select new app.pinjamruang.reservation.dto.ReservationIntervalDto(r.id, r.room.id, r.startDate, r.endDate) " +
+            "from Reservation r where r.id > :after and r.endDate < :horizon order by r.id")
+    List<ReservationIntervalDto> findIntervalsEndingBefore(
+            @Param("after") Long after,
+            @Param("horizon") LocalDateTime horizon,
+            Pageable pageable
+    );
+
+    /**
+     * Only matches reservations lying completely inside the given window, for every room. Conflict checks use
+     * {@link #findOverlapping(Long, LocalDateTime, LocalDateTime)}, which is room-scoped and also matches partial
+     * overlaps.
+     */
     List<Reservation> findByStartDateBetweenAndEndDateBetween(
             LocalDateTime startDateStart,
             LocalDateTime startDateEnd,
             LocalDateTime endDateStart,
             LocalDateTime endDateEnd
     );
+
+    @Query("select r from Reservation r join fetch r.room " +
+            "where r.room.id = :roomId and r.startDate < :endDate and r.endDate > :startDate " +
+            "order by r.startDate")
+    List<Reservation> findOverlapping(
+            @Param("roomId") Long roomId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate
+    );
 }
@@ -0,0 +1,34 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.Reservation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface ReservationRepositoryCustom {
+    /**
+     * Returns up to {@code limit} reservations with an id greater than {@code after}, ordered by id. Every filter
+     * is optional; {@code from}/{@code to} match reservations overlapping that range.
+     */
+    List<Reservation> findAfter(Long after, Long roomId, LocalDateTime from, LocalDateTime to, int limit);
+
+    /**
+     * Feeds every matching reservation to {@code consumer} through a forward-only cursor on a stateless session,
+     * so rows are never kept in a persistence context and memory use does not depend on the result size.
+     */
+    void scroll(Long roomId, LocalDateTime from, LocalDateTime to, int fetchSize, Consumer<Reservation> consumer);
+
+    /**
+     * Copies the given reservations into {@code reservation_archive} and deletes them, in one transaction.
+     * Reservations that no longer end before {@code horizon}, because they were moved since they were
+     * selected, are left in place. Returns the number of reservations moved.
+     */
+    int moveToArchive(List<Long> ids, LocalDateTime horizon, LocalDateTime archivedAt);
+
+    /**
+     * Inserts the given new reservations in one transaction, in JDBC batches of {@code batchSize} rows, and
+     * leaves them detached with their ids assigned.
+     */
+    void insertAll(List<Reservation> reservations, int batchSize);
+}
@@ -0,0 +1,162 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.Reservation;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class ReservationRepositoryImpl implements ReservationRepositoryCustom {
+    private static final String COPY_TO_ARCHIVE = "insert into reservation_archive " +
+            "(id, start_date, end_date, attendees, agenda, room_id, created_at, updated_at, archived_at) " +
+            "select id, start_date, end_date, attendees, agenda, room_id, created_at, updated_at, :archivedAt " +
+            "from reservation where id in (:ids) and end_date < :horizon";
+
+    private static final String DELETE_ARCHIVED = "delete from reservation " +
+            "where id in (:ids) and end_date < :horizon";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public List<Reservation> findAfter(Long after, Long roomId, LocalDateTime from, LocalDateTime to, int limit) {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Reservation> query = builder.createQuery(Reservation.class);
+        Root<Reservation> reservation = query.from(Reservation.class);
+        reservation.fetch("room");
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (after != null) {
+            predicates.add(builder.greaterThan(reservation.get("id"), after));
+        }
+
+        if (roomId != null) {
+            predicates.add(builder.equal(reservation.get("room").get("id"), roomId));
+        }
+
+        if (from != null) {
+            predicates.add(builder.greaterThan(reservation.get("endDate"), from));
+        }
+
+        if (to != null) {
+            predicates.add(builder.lessThan(reservation.get("startDate"), to));
+        }
+
+        query.select(reservation)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(reservation.get("id")));
+
+        return this.entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public void scroll(Long roomId, LocalDateTime from, LocalDateTime to, int fetchSize, Consumer<Reservation> consumer) {
+        StringBuilder hql = new StringBuilder("select r from Reservation r join fetch r.room where 1 = 1");
+
+        if (roomId != null) {
+            hql.append(" and r.room.id = :roomId");
+        }
+
+        if (from != null) {
+            hql.append(" and r.endDate > :from");
+        }
+
+        if (to != null) {
+            hql.append(" and r.startDate < :to");
+        }
+
+        hql.append(" order by r.id");
+
+        SessionFactory sessionFactory = this.entityManagerFactory.unwrap(SessionFactory.class);
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+
+            try {
+                Query<Reservation> query = session.createQuery(hql.toString(), Reservation.class)
+                        .setReadOnly(true)
+                        .setFetchSize(fetchSize);
+
+                if (roomId != null) {
+                    query.setParameter("roomId", roomId);
+                }
+
+                if (from != null) {
+                    query.setParameter("from", from);
+                }
+
+                if (to != null) {
+                    query.setParameter("to", to);
+                }
+
+                // Backed by a forward-only scroll, so rows are read fetchSize at a time.
+                try (Stream<Reservation> results = query.stream()) {
+                    results.forEach(consumer);
+                }
+            } finally {
+                transaction.rollback();
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public int moveToArchive(List<Long> ids, LocalDateTime horizon, LocalDateTime archivedAt) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        int copied = this.entityManager.createNativeQuery(COPY_TO_ARCHIVE)
+                .setParameter("ids", ids)
+                .setParameter("horizon", horizon)
+                .setParameter("archivedAt", archivedAt)
+                .executeUpdate();
+        int deleted = this.entityManager.createNativeQuery(DELETE_ARCHIVED)
+                .setParameter("ids", ids)
+                .setParameter("horizon", horizon)
+                .executeUpdate();
+
+        if (copied != deleted) {
+            throw new IllegalStateException(String.format("Copied %d reservations to the archive but deleted %d.", copied, deleted));
+        }
+
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public void insertAll(List<Reservation> reservations, int batchSize) {
+        Session session = this.entityManager.unwrap(Session.class);
+        Integer configuredBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+
+        try {
+            reservations.forEach(this.entityManager::persist);
+            this.entityManager.flush();
+            reservations.forEach(this.entityManager::detach);
+        } finally {
+            session.setJdbcBatchSize(configuredBatchSize);
+        }
+    }
+}
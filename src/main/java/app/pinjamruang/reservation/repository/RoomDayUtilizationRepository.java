@@ -0,0 +1,7 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RoomDayUtilizationRepository extends JpaRepository<RoomDayUtilization, RoomDayUtilization.Key>, RoomDayUtilizationRepositoryCustom {
+}
@@ -0,0 +1,21 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+
+import java.util.List;
+
+public interface RoomDayUtilizationRepositoryCustom {
+    /**
+     * Adds the amounts of each of {@code deltas} to the row of its room and day, creating the row when there is
+     * none yet. Every delta is one upsert, sent in a single JDBC batch, within the caller's transaction if there
+     * is one. Whether a row exists is left to the database, so concurrent writers can not both insert it.
+     */
+    void add(List<RoomDayUtilization> deltas);
+
+    /**
+     * Sets the row of each of {@code totals}' room and day to its amounts, creating the row when there is none
+     * yet. Writing the same totals twice leaves the same rows, so instances filling the table at the same time
+     * do not count anything twice.
+     */
+    void replace(List<RoomDayUtilization> totals);
+}
@@ -0,0 +1,102 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+public class RoomDayUtilizationRepositoryImpl implements RoomDayUtilizationRepositoryCustom {
+    private static final String ADD_POSTGRESQL = "insert into room_day_utilization " +
+            "(room_id, utilization_date, reservations, booked_minutes, attendee_minutes) values (?, ?, ?, ?, ?) " +
+            "on conflict (room_id, utilization_date) do update set " +
+            "reservations = room_day_utilization.reservations + excluded.reservations, " +
+            "booked_minutes = room_day_utilization.booked_minutes + excluded.booked_minutes, " +
+            "attendee_minutes = room_day_utilization.attendee_minutes + excluded.attendee_minutes";
+
+    private static final String REPLACE_POSTGRESQL = "insert into room_day_utilization " +
+            "(room_id, utilization_date, reservations, booked_minutes, attendee_minutes) values (?, ?, ?, ?, ?) " +
+            "on conflict (room_id, utilization_date) do update set " +
+            "reservations = excluded.reservations, " +
+            "booked_minutes = excluded.booked_minutes, " +
+            "attendee_minutes = excluded.attendee_minutes";
+
+    // Standard SQL MERGE for the databases without ON CONFLICT, such as H2 in the tests.
+    private static final String MERGE_SOURCE = "merge into room_day_utilization u using (select " +
+            "cast(? as bigint) as room_id, cast(? as date) as utilization_date, cast(? as int) as reservations, " +
+            "cast(? as bigint) as booked_minutes, cast(? as bigint) as attendee_minutes) d " +
+            "on (u.room_id = d.room_id and u.utilization_date = d.utilization_date) ";
+
+    private static final String MERGE_INSERT = "when not matched then insert " +
+            "(room_id, utilization_date, reservations, booked_minutes, attendee_minutes) " +
+            "values (d.room_id, d.utilization_date, d.reservations, d.booked_minutes, d.attendee_minutes)";
+
+    private static final String ADD_MERGE = MERGE_SOURCE +
+            "when matched then update set " +
+            "reservations = u.reservations + d.reservations, " +
+            "booked_minutes = u.booked_minutes + d.booked_minutes, " +
+            "attendee_minutes = u.attendee_minutes + d.attendee_minutes " +
+            MERGE_INSERT;
+
+    private static final String REPLACE_MERGE = MERGE_SOURCE +
+            "when matched then update set " +
+            "reservations = d.reservations, " +
+            "booked_minutes = d.booked_minutes, " +
+            "attendee_minutes = d.attendee_minutes " +
+            MERGE_INSERT;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void add(List<RoomDayUtilization> deltas) {
+        upsert(deltas, ADD_POSTGRESQL, ADD_MERGE);
+    }
+
+    @Override
+    @Transactional
+    public void replace(List<RoomDayUtilization> totals) {
+        upsert(totals, REPLACE_POSTGRESQL, REPLACE_MERGE);
+    }
+
+    private void upsert(List<RoomDayUtilization> rows, String postgreSqlUpsert, String mergeUpsert) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        SessionImplementor session = this.entityManager.unwrap(SessionImplementor.class);
+        boolean postgreSql = session.getFactory().getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+        String sql = postgreSql ? postgreSqlUpsert : mergeUpsert;
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+
+        // Prepared through Hibernate, so the statement inspector sees the upsert like any other statement.
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(sql);
+
+        try {
+            for (RoomDayUtilization row : rows) {
+                statement.setLong(1, row.getRoomId());
+                statement.setDate(2, Date.valueOf(row.getDate()));
+                statement.setInt(3, row.getReservations());
+                statement.setLong(4, row.getBookedMinutes());
+                statement.setLong(5, row.getAttendeeMinutes());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper()
+                    .convert(e, "Could not write room day utilization", sql);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package app.pinjamruang.reservation.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes reservation writes per room with a fixed array of striped locks, so the conflict check and the
+ * save of one room can not interleave with another write to the same room, while writes to rooms on other
+ * stripes run in parallel.
+ */
+@Component
+public class BookingCoordinator {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] locks;
+
+    public BookingCoordinator() {
+        this(DEFAULT_STRIPES);
+    }
+
+    @Autowired
+    public BookingCoordinator(@Value("${pinjamruang.reservation.lock-stripes:" + DEFAULT_STRIPES + "}") int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Lock stripes must be positive.");
+        }
+
+        this.locks = new ReentrantLock[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs {@code action} while holding the locks of every given room. Stripes are always acquired in
+     * ascending order, so writes moving a reservation between two rooms can not deadlock each other.
+     */
+    public <T> T withRoomLocks(Supplier<T> action, Long... roomIds) {
+        int[] stripes = Arrays.stream(roomIds)
+                .mapToInt(this::stripeOf)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        int acquired = 0;
+
+        try {
+            for (int stripe : stripes) {
+                this.locks[stripe].lock();
+                acquired++;
+            }
+
+            return action.get();
+        } finally {
+            for (int i = acquired - 1; i >= 0; i--) {
+                this.locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    public void runWithRoomLocks(Runnable action, Long... roomIds) {
+        withRoomLocks(() -> {
+            action.run();
+            return null;
+        }, roomIds);
+    }
+
+    public int stripeOf(Long roomId) {
+        return roomId == null ? 0 : Math.floorMod(Long.hashCode(roomId), this.locks.length);
+    }
+}
@@ -0,0 +1,172 @@
+package app.pinjamruang.reservation.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One bitset per room and day at {@value #SLOT_MINUTES}-minute granularity, so a day is
+ * {@value #SLOTS_PER_DAY} bits in {@value #WORDS_PER_DAY} longs. A slot is set when any reservation touches it.
+ *
+ * Grids are computed lazily from {@link ReservationIndex} and invalidated by {@link ReservationService} on
+ * every write. A clear range proves a room is free with a few word-wise ANDs; only when a bit is set, which
+ * may be a partial slot, the exact interval index is consulted.
+ */
+@Component
+public class OccupancyGrid {
+    public static final int SLOT_MINUTES = 5;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    public static final int WORDS_PER_DAY = (SLOTS_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+    @Autowired
+    private ReservationIndex reservationIndex;
+
+    @Value("${pinjamruang.reservation.occupancy-grid.maximum-room-days:100000}")
+    private long maximumRoomDays = 100_000L;
+
+    private Cache<RoomDay, long[]> grids = buildGrids();
+
+    @PostConstruct
+    public void initGrids() {
+        this.grids = buildGrids();
+    }
+
+    /**
+     * Returns a copy of the room's occupancy bits for the given day.
+     */
+    public long[] getDay(Long roomId, LocalDate date) {
+        return grid(roomId, date).clone();
+    }
+
+    public boolean isFree(Long roomId, LocalDateTime startDate, LocalDateTime endDate, Long excludedId) {
+        if (roomId == null || !startDate.isBefore(endDate)) {
+            return true;
+        }
+
+        if (!anySlotSet(roomId, startDate, endDate)) {
+            return true;
+        }
+
+        return !this.reservationIndex.hasOverlap(roomId, startDate, endDate, excludedId);
+    }
+
+    public void invalidate(Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+        if (roomId == null) {
+            return;
+        }
+
+        for (LocalDate date = startDate.toLocalDate(); !date.isAfter(endDate.toLocalDate()); date = date.plusDays(1)) {
+            this.grids.invalidate(new RoomDay(roomId, date));
+        }
+    }
+
+    private Cache<RoomDay, long[]> buildGrids() {
+        return Caffeine.newBuilder()
+                .maximumSize(this.maximumRoomDays)
+                .build();
+    }
+
+    private boolean anySlotSet(Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+        for (LocalDate date = startDate.toLocalDate(); date.atStartOfDay().isBefore(endDate); date = date.plusDays(1)) {
+            int fromSlot = date.equals(startDate.toLocalDate()) ? floorSlot(startDate) : 0;
+            int toSlot = date.equals(endDate.toLocalDate()) ? ceilSlot(endDate) : SLOTS_PER_DAY;
+
+            if (fromSlot < toSlot && anySet(grid(roomId, date), fromSlot, toSlot)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private long[] grid(Long roomId, LocalDate date) {
+        return this.grids.get(new RoomDay(roomId, date), this::compute);
+    }
+
+    private long[] compute(RoomDay roomDay) {
+        long[] words = new long[WORDS_PER_DAY];
+        LocalDateTime dayStart = roomDay.date.atStartOfDay();
+        LocalDateTime dayEnd = dayStart.plusDays(1);
+
+        this.reservationIndex.forEachOverlapping(roomDay.roomId, dayStart, dayEnd, (startDate, endDate) -> {
+            int fromSlot = startDate.isAfter(dayStart) ? floorSlot(startDate) : 0;
+            int toSlot = endDate.isBefore(dayEnd) ? ceilSlot(endDate) : SLOTS_PER_DAY;
+
+            setRange(words, fromSlot, toSlot);
+        });
+
+        return words;
+    }
+
+    static int floorSlot(LocalDateTime dateTime) {
+        return (dateTime.getHour() * 60 + dateTime.getMinute()) / SLOT_MINUTES;
+    }
+
+    static int ceilSlot(LocalDateTime dateTime) {
+        int minutes = dateTime.getHour() * 60 + dateTime.getMinute();
+        boolean partial = minutes % SLOT_MINUTES != 0 || dateTime.getSecond() != 0 || dateTime.getNano() != 0;
+
+        return minutes / SLOT_MINUTES + (partial ? 1 : 0);
+    }
+
+    static void setRange(long[] words, int fromSlot, int toSlot) {
+        for (int word = fromSlot / Long.SIZE; word * Long.SIZE < toSlot; word++) {
+            words[word] |= mask(word, fromSlot, toSlot);
+        }
+    }
+
+    static boolean anySet(long[] words, int fromSlot, int toSlot) {
+        for (int word = fromSlot / Long.SIZE; word * Long.SIZE < toSlot; word++) {
+            if ((words[word] & mask(word, fromSlot, toSlot)) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static long mask(int word, int fromSlot, int toSlot) {
+        int low = Math.max(fromSlot - word * Long.SIZE, 0);
+        int high = Math.min(toSlot - word * Long.SIZE, Long.SIZE);
+        long upTo = high == Long.SIZE ? -1L : (1L << high) - 1;
+
+        return upTo & (-1L << low);
+    }
+
+    private static final class RoomDay {
+        private final Long roomId;
+        private final LocalDate date;
+
+        private RoomDay(Long roomId, LocalDate date) {
+            this.roomId = roomId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof RoomDay)) {
+                return false;
+            }
+
+            RoomDay roomDay = (RoomDay) other;
+
+            return this.roomId.equals(roomDay.roomId) && this.date.equals(roomDay.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.roomId, this.date);
+        }
+    }
+}
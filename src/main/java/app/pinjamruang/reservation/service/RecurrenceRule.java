@@ -0,0 +1,248 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.reservation.model.RecurringReservation;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable snapshot of a {@link RecurringReservation} that expands its occurrences on demand.
+ *
+ * The n-th occurrence starts at the first start date plus n times the interval in days, weeks or months
+ * (monthly dates past the end of a shorter month are clamped to its last day). Reading from a given date
+ * seeks straight to the first candidate occurrence instead of walking the series from its start.
+ */
+public final class RecurrenceRule {
+    private final Long seriesId;
+    private final Long roomId;
+    private final RecurrenceFrequency frequency;
+    private final int interval;
+    private final LocalDateTime firstStartDate;
+    private final Duration duration;
+    private final LocalDate until;
+    private final Integer count;
+    private final Set<LocalDate> exceptionDates;
+
+    public RecurrenceRule(Long seriesId, Long roomId, RecurrenceFrequency frequency, int interval,
+                          LocalDateTime firstStartDate, LocalDateTime firstEndDate, LocalDate until, Integer count,
+                          Set<LocalDate> exceptionDates) {
+        this.seriesId = seriesId;
+        this.roomId = roomId;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.firstStartDate = firstStartDate;
+        this.duration = Duration.between(firstStartDate, firstEndDate);
+        this.until = until;
+        this.count = count;
+        this.exceptionDates = Collections.unmodifiableSet(new HashSet<>(exceptionDates));
+    }
+
+    public static RecurrenceRule of(RecurringReservation series) {
+        return new RecurrenceRule(
+                series.getId(),
+                series.getRoom().getId(),
+                series.getFrequency(),
+                series.getInterval(),
+                series.getStartDate(),
+                series.getEndDate(),
+                series.getUntil(),
+                series.getCount(),
+                series.getExceptionDates()
+        );
+    }
+
+    public Long getSeriesId() {
+        return seriesId;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDateTime getFirstStartDate() {
+        return firstStartDate;
+    }
+
+    /**
+     * Returns the end of the last occurrence the rule allows, cancelled or not.
+     */
+    public LocalDateTime getLastEndDate() {
+        return startOf(Math.max(lastIndex(), 0)).plus(this.duration);
+    }
+
+    /**
+     * Counts the occurrences the rule allows, cancelled ones included.
+     */
+    public int size() {
+        return lastIndex() + 1;
+    }
+
+    /**
+     * Returns true if an occurrence of the rule, cancelled or not, starts on the given date.
+     */
+    public boolean occursOn(LocalDate date) {
+        int n = Math.max(indexAtOrBefore(endOfDay(date)), 0);
+        LocalDateTime startDate = startOf(n);
+
+        return withinBounds(n, startDate) && startDate.toLocalDate().equals(date);
+    }
+
+    /**
+     * Iterates the start dates of the non-cancelled occurrences ending after {@code from}, in order.
+     */
+    public Iterator<LocalDateTime> startDatesFrom(LocalDateTime from) {
+        return new OccurrenceIterator(from);
+    }
+
+    /**
+     * Calls {@code consumer} with the start and end date of every non-cancelled occurrence overlapping
+     * {@code [from, to)}.
+     */
+    public void forEachOverlapping(LocalDateTime from, LocalDateTime to, BiConsumer<LocalDateTime, LocalDateTime> consumer) {
+        Iterator<LocalDateTime> startDates = startDatesFrom(from);
+
+        while (startDates.hasNext()) {
+            LocalDateTime startDate = startDates.next();
+
+            if (!startDate.isBefore(to)) {
+                return;
+            }
+
+            consumer.accept(startDate, startDate.plus(this.duration));
+        }
+    }
+
+    public boolean hasOverlap(LocalDateTime from, LocalDateTime to) {
+        Iterator<LocalDateTime> startDates = startDatesFrom(from);
+
+        return startDates.hasNext() && startDates.next().isBefore(to);
+    }
+
+    public LocalDateTime endOf(LocalDateTime startDate) {
+        return startDate.plus(this.duration);
+    }
+
+    private LocalDateTime startOf(int n) {
+        long steps = (long) n * this.interval;
+
+        switch (this.frequency) {
+            case DAILY:
+                return this.firstStartDate.plusDays(steps);
+            case WEEKLY:
+                return this.firstStartDate.plusWeeks(steps);
+            default:
+                return this.firstStartDate.plusMonths(steps);
+        }
+    }
+
+    private boolean withinBounds(int n, LocalDateTime startDate) {
+        return (this.count == null || n < this.count)
+                && (this.until == null || !startDate.toLocalDate().isAfter(this.until));
+    }
+
+    /**
+     * Returns the index of the last occurrence the rule allows, or -1 if it allows none. A rule without a
+     * count or an until date never ends.
+     */
+    private int lastIndex() {
+        int last = this.count != null ? this.count - 1 : Integer.MAX_VALUE - 1;
+
+        if (this.until != null) {
+            last = Math.min(last, indexAtOrBefore(endOfDay(this.until)));
+        }
+
+        return last;
+    }
+
+    private static LocalDateTime endOfDay(LocalDate date) {
+        return date.plusDays(1).atStartOfDay().minusNanos(1);
+    }
+
+    /**
+     * Returns the index of the last occurrence starting at or before {@code dateTime}, or -1 if there is none.
+     */
+    private int indexAtOrBefore(LocalDateTime dateTime) {
+        if (dateTime.isBefore(this.firstStartDate)) {
+            return -1;
+        }
+
+        long n = unit().between(this.firstStartDate, dateTime) / this.interval;
+        int index = (int) Math.min(n, Integer.MAX_VALUE - 1L);
+
+        // Month clamping can put the estimate one step off in either direction.
+        while (index > 0 && startOf(index).isAfter(dateTime)) {
+            index--;
+        }
+
+        while (!startOf(index + 1).isAfter(dateTime)) {
+            index++;
+        }
+
+        return index;
+    }
+
+    private ChronoUnit unit() {
+        switch (this.frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS;
+            case WEEKLY:
+                return ChronoUnit.WEEKS;
+            default:
+                return ChronoUnit.MONTHS;
+        }
+    }
+
+    private class OccurrenceIterator implements Iterator<LocalDateTime> {
+        private int n;
+
+        private LocalDateTime next;
+
+        private OccurrenceIterator(LocalDateTime from) {
+            this.n = Math.max(indexAtOrBefore(from.minus(duration)), 0);
+            advance(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public LocalDateTime next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+
+            LocalDateTime current = this.next;
+            this.n++;
+            advance(current);
+
+            return current;
+        }
+
+        private void advance(LocalDateTime from) {
+            for (; ; this.n++) {
+                LocalDateTime startDate = startOf(this.n);
+
+                if (!withinBounds(this.n, startDate)) {
+                    this.next = null;
+                    return;
+                }
+
+                if (startDate.plus(duration).isAfter(from) && !exceptionDates.contains(startDate.toLocalDate())) {
+                    this.next = startDate;
+                    return;
+                }
+            }
+        }
+    }
+}
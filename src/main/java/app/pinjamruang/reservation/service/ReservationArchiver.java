@@ -0,0 +1,143 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves reservations that ended more than {@code horizon-days} ago from {@code reservation} into
+ * {@code reservation_archive}, so the live table, the {@link ReservationIndex} built from it and every
+ * conflict check stay proportional to current bookings rather than to history.
+ *
+ * Reservations are moved in batches of {@code batch-size}, walking the table by id. Each batch is a short
+ * transaction of its own, run under the locks of the rooms it touches, so a booking of one of those rooms waits
+ * for at most one batch. Recurring series are not archived.
+ */
+@Component
+public class ReservationArchiver {
+    private static final Logger logger = LoggerFactory.getLogger(ReservationArchiver.class);
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationIndex reservationIndex;
+
+    @Autowired
+    private OccupancyGrid occupancyGrid;
+
+    @Autowired
+    private RoomCalendar roomCalendar;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private BookingMetrics bookingMetrics;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${pinjamruang.reservation.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pinjamruang.reservation.archive.horizon-days:365}")
+    private long horizonDays = 365L;
+
+    @Value("${pinjamruang.reservation.archive.batch-size:500}")
+    private int batchSize = 500;
+
+    @Scheduled(
+            initialDelayString = "${pinjamruang.reservation.archive.initial-delay-millis:60000}",
+            fixedDelayString = "${pinjamruang.reservation.archive.interval-millis:3600000}"
+    )
+    public void archiveOnSchedule() {
+        if (this.enabled) {
+            archive(getArchivedUntil());
+        }
+    }
+
+    /**
+     * Archives every reservation ending before {@code horizon} and returns how many were moved.
+     */
+    public int archive(LocalDateTime horizon) {
+        return this.bookingMetrics.timed("reservation.archive", () -> {
+            int moved = 0;
+            Long after = 0L;
+            List<ReservationIntervalDto> batch;
+
+            do {
+                batch = this.reservationRepository.findIntervalsEndingBefore(after, horizon, PageRequest.of(0, this.batchSize));
+
+                if (!batch.isEmpty()) {
+                    moved += moveBatch(batch, horizon);
+                    after = batch.get(batch.size() - 1).getId();
+                }
+            } while (batch.size() == this.batchSize);
+
+            if (moved > 0) {
+                logger.info("Archived {} reservations ending before {}", moved, horizon);
+            }
+
+            return moved;
+        });
+    }
+
+    /**
+     * Returns the current horizon, {@code horizon-days} before now. Only reservations ending before the horizon
+     * are archived, so ranges starting at or after it can not match an archived reservation. It is taken from the
+     * configuration rather than from this instance's runs, so every instance answers the same.
+     */
+    public LocalDateTime getArchivedUntil() {
+        return LocalDateTime.now().minusDays(this.horizonDays);
+    }
+
+    private int moveBatch(List<ReservationIntervalDto> batch, LocalDateTime horizon) {
+        List<Long> ids = new ArrayList<>();
+        Set<Long> roomIds = new LinkedHashSet<>();
+
+        for (ReservationIntervalDto interval : batch) {
+            ids.add(interval.getId());
+            roomIds.add(interval.getRoomId());
+        }
+
+        return this.bookingCoordinator.withRoomLocks(() -> {
+            int moved = this.transactionTemplate.execute(status -> {
+                int archived = this.reservationRepository.moveToArchive(ids, horizon, LocalDateTime.now());
+
+                if (archived > 0) {
+                    this.resourceVersions.bump(ResourceVersions.RESERVATIONS);
+                }
+
+                return archived;
+            });
+
+            for (ReservationIntervalDto interval : batch) {
+                // A reservation moved past the horizon since the batch was read stayed live under its new dates.
+                this.reservationIndex.removeIfEndingBefore(interval.getId(), horizon);
+                this.occupancyGrid.invalidate(interval.getRoomId(), interval.getStartDate(), interval.getEndDate());
+                this.roomCalendar.invalidate(interval.getRoomId(), interval.getStartDate(), interval.getEndDate());
+            }
+
+            return moved;
+        }, roomIds.toArray(new Long[0]));
+    }
+}
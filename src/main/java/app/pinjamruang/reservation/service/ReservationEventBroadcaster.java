@@ -0,0 +1,291 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.ReservationEventDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans reservation changes out to Server-Sent Events subscribers of a room or of all rooms.
+ *
+ * Publishing only appends the event to each subscriber's bounded buffer, so a write never waits for a
+ * client. A small shared pool drains the buffers into the connections. Each send is handed to one of at most
+ * {@code writer-threads} writer threads and waited for at most {@code send-timeout-millis}, so a client that
+ * stops reading holds a writer thread rather than a pool thread. A subscriber whose send times out, or whose
+ * buffer is full, has fallen too far behind to catch up from deltas; its stream is completed at once, and the
+ * client reconnects and reloads the current state. When every writer thread is taken by stalled clients, the
+ * subscriber that needs one is dropped instead of waiting or adding threads.
+ *
+ * Every {@code heartbeat-millis} idle subscribers are sent a comment, so a connection that died without
+ * closing fails a send, or times out, and is dropped rather than held until the next reservation change.
+ */
+@Component
+public class ReservationEventBroadcaster {
+    public static final Long ALL_ROOMS = 0L;
+
+    @Value("${pinjamruang.reservation.events.buffer-size:64}")
+    private int bufferSize = 64;
+
+    @Value("${pinjamruang.reservation.events.sender-threads:2}")
+    private int senderThreads = 2;
+
+    @Value("${pinjamruang.reservation.events.send-timeout-millis:5000}")
+    private long sendTimeoutMillis = 5000L;
+
+    @Value("${pinjamruang.reservation.events.writer-threads:16}")
+    private int writerThreads = 16;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicLong eventIds = new AtomicLong();
+
+    private ExecutorService sender = Executors.newFixedThreadPool(this.senderThreads);
+
+    // Runs the sends and completions that may block on a connection; at most one of each per subscriber.
+    private ExecutorService writer = newWriter(this.writerThreads);
+
+    @PostConstruct
+    public void initSender() {
+        this.sender.shutdown();
+        this.sender = Executors.newFixedThreadPool(this.senderThreads);
+        this.writer.shutdown();
+        this.writer = newWriter(this.writerThreads);
+    }
+
+    // Without a queue, a task either gets a thread at once or is rejected.
+    private static ExecutorService newWriter(int threads) {
+        return new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.sender.shutdownNow();
+        this.writer.shutdownNow();
+
+        for (Set<Subscriber> roomSubscribers : this.subscribers.values()) {
+            for (Subscriber subscriber : roomSubscribers) {
+                subscriber.close();
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the changes of a room, or of every room for {@link #ALL_ROOMS}.
+     */
+    public SseEmitter subscribe(Long roomId) {
+        return subscribe(roomId, new SseEmitter());
+    }
+
+    SseEmitter subscribe(Long roomId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(roomId, emitter);
+
+        this.subscribers.computeIfAbsent(roomId, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        return emitter;
+    }
+
+    /**
+     * Delivers the event to the subscribers of its room, of the room it moved from, and of all rooms.
+     */
+    public void publish(ReservationEventDto event) {
+        long id = this.eventIds.incrementAndGet();
+
+        offer(event.getRoomId(), id, event);
+
+        if (event.getPreviousRoomId() != null) {
+            offer(event.getPreviousRoomId(), id, event);
+        }
+
+        offer(ALL_ROOMS, id, event);
+    }
+
+    /**
+     * Sends a comment to every subscriber with nothing left to send.
+     */
+    @Scheduled(
+            initialDelayString = "${pinjamruang.reservation.events.heartbeat-millis:15000}",
+            fixedDelayString = "${pinjamruang.reservation.events.heartbeat-millis:15000}"
+    )
+    public void heartbeat() {
+        for (Set<Subscriber> roomSubscribers : this.subscribers.values()) {
+            for (Subscriber subscriber : roomSubscribers) {
+                if (subscriber.buffer.isEmpty()) {
+                    subscriber.offer(Event.HEARTBEAT);
+                }
+            }
+        }
+    }
+
+    public int subscriberCount(Long roomId) {
+        Set<Subscriber> roomSubscribers = this.subscribers.get(roomId);
+
+        return roomSubscribers == null ? 0 : roomSubscribers.size();
+    }
+
+    private void offer(Long roomId, long id, ReservationEventDto event) {
+        Set<Subscriber> roomSubscribers = this.subscribers.get(roomId);
+
+        if (roomSubscribers != null) {
+            for (Subscriber subscriber : roomSubscribers) {
+                subscriber.offer(new Event(id, event));
+            }
+        }
+    }
+
+    private static class Event {
+        private static final Event HEARTBEAT = new Event(0L, null);
+
+        private final long id;
+        private final ReservationEventDto payload;
+
+        private Event(long id, ReservationEventDto payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    private class Subscriber {
+        private final Long roomId;
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(Long roomId, SseEmitter emitter) {
+            this.roomId = roomId;
+            this.emitter = emitter;
+        }
+
+        private void offer(Event event) {
+            if (this.closed.get()) {
+                return;
+            }
+
+            if (!this.buffer.offer(event)) {
+                disconnect();
+                return;
+            }
+
+            if (this.draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (!this.closed.get()) {
+                Event event = this.buffer.poll();
+
+                if (event == null) {
+                    this.draining.set(false);
+
+                    // An event offered after the poll but before the flag was cleared has no drain scheduled.
+                    if (this.buffer.isEmpty() || !this.draining.compareAndSet(false, true)) {
+                        return;
+                    }
+
+                    continue;
+                }
+
+                Future<?> sending;
+
+                try {
+                    sending = writer.submit(() -> {
+                        this.emitter.send(event == Event.HEARTBEAT
+                                ? SseEmitter.event().comment("heartbeat")
+                                : SseEmitter.event()
+                                        .id(String.valueOf(event.id))
+                                        .name(event.payload.getType().name().toLowerCase())
+                                        .data(event.payload, MediaType.APPLICATION_JSON));
+
+                        return null;
+                    });
+                } catch (RejectedExecutionException e) {
+                    // No send to this emitter is in progress, so completing it here can not block.
+                    if (close()) {
+                        this.emitter.complete();
+                    }
+
+                    return;
+                }
+
+                try {
+                    sending.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    sending.cancel(true);
+                    disconnect();
+                    return;
+                } catch (ExecutionException e) {
+                    close();
+                    this.emitter.completeWithError(e.getCause());
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    disconnect();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Closes the subscriber and completes its stream on a writer thread, as the emitter is locked for as
+         * long as a send to it is blocked. Without a free writer thread the stream is left to the servlet
+         * container's async timeout.
+         */
+        private void disconnect() {
+            if (close()) {
+                try {
+                    writer.execute(this.emitter::complete);
+                } catch (RejectedExecutionException e) {
+                    // Dropped: no more events are delivered to it either way.
+                }
+            }
+        }
+
+        /**
+         * Stops delivering to the subscriber and returns whether this call closed it.
+         */
+        private boolean close() {
+            if (!this.closed.compareAndSet(false, true)) {
+                return false;
+            }
+
+            this.buffer.clear();
+
+            Set<Subscriber> roomSubscribers = subscribers.get(this.roomId);
+
+            if (roomSubscribers != null) {
+                roomSubscribers.remove(this);
+            }
+
+            return true;
+        }
+    }
+}
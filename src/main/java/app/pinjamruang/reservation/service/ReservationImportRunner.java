@@ -0,0 +1,61 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.ReservationImportResultDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs {@link ReservationImporter} on {@code pinjamruang.reservation.import.file} once the application has
+ * started, then shuts the application down. Rejected rows go to {@code rejects-file}, by default the input
+ * path followed by {@code .rejects.csv}.
+ */
+@Component
+@ConditionalOnProperty("pinjamruang.reservation.import.file")
+public class ReservationImportRunner implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(ReservationImportRunner.class);
+
+    @Autowired
+    private ReservationImporter reservationImporter;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Value("${pinjamruang.reservation.import.file}")
+    private String file;
+
+    @Value("${pinjamruang.reservation.import.rejects-file:}")
+    private String rejectsFile;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Path input = Paths.get(this.file);
+        Path rejects = Paths.get(this.rejectsFile.isEmpty() ? this.file + ".rejects.csv" : this.rejectsFile);
+        ReservationImportResultDto result;
+
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer writer = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            result = this.reservationImporter.importCsv(reader, writer);
+        }
+
+        logger.info("Imported {} reservations from {}; {} rejected rows written to {}",
+                result.getImported(), input, result.getRejected(), rejects);
+
+        System.exit(SpringApplication.exit(this.applicationContext, () -> 0));
+    }
+}
@@ -0,0 +1,459 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.csv.CsvReader;
+import app.pinjamruang.csv.CsvWriter;
+import app.pinjamruang.csv.MalformedRecordException;
+import app.pinjamruang.json.FixedFormatDates;
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.reservation.dto.ReservationImportResultDto;
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.exception.RoomNotAvailableException;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.ArchivedReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationExclusionConstraint;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.service.RoomService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports reservations from CSV, for loading the history of another booking system.
+ *
+ * The input needs a header naming the {@code startDate}, {@code endDate}, {@code attendees} and {@code room}
+ * columns, plus an optional {@code agenda}, in any order. Dates use the API's {@code yyyy-MM-dd HH:mm} and
+ * {@code room} holds a room id or, failing that, a room name, both resolved against the rooms loaded once
+ * when the import starts.
+ *
+ * Rows are read and written {@code batch-size} at a time. Each batch is checked under the locks of its rooms,
+ * with the booking rules of {@link ReservationService} and against {@link ReservationIndex} rather than the
+ * database, then inserted in JDBC batches in a single transaction together with its utilization change. If the
+ * database still refuses the batch, it is inserted again row by row so only the rows it refuses are rejected.
+ * Every row that is not imported is written to {@code rejects} with its line number and the reason. A record
+ * that is not well-formed CSV is rejected with its first line as the only field, and the import goes on from
+ * the line after it.
+ *
+ * Rows ending before the archive horizon of {@link ReservationArchiver} go straight to
+ * {@code reservation_archive} and are not indexed; they are checked against the archived rows of their rooms,
+ * read once per batch. Memory use therefore depends on the batch size and on the current and future
+ * reservations imported, which stay indexed like any other booking, not on the size of the history.
+ */
+@Component
+public class ReservationImporter {
+    static final List<String> REQUIRED_COLUMNS = Arrays.asList("startDate", "endDate", "attendees", "room");
+
+    private static final String CONFLICT = "Given room is already reserved at given time.";
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private ReservationIndex reservationIndex;
+
+    @Autowired
+    private OccupancyGrid occupancyGrid;
+
+    @Autowired
+    private RoomCalendar roomCalendar;
+
+    @Autowired
+    private RoomUtilization roomUtilization;
+
+    @Autowired
+    private ReservationArchiver reservationArchiver;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private BookingMetrics bookingMetrics;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${pinjamruang.reservation.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Imports every row of {@code input} and writes the rejected ones to {@code rejects}, as CSV with the
+     * {@code line} and {@code reason} columns in front of the original ones.
+     *
+     * @throws IllegalArgumentException if the header lacks a required column
+     * @throws IOException if reading or writing fails
+     */
+    public ReservationImportResultDto importCsv(Reader input, Writer rejects) throws IOException {
+        CsvReader reader = new CsvReader(input);
+        CsvWriter rejectWriter = new CsvWriter(rejects);
+        List<String> header = reader.next();
+
+        if (header == null) {
+            throw new IllegalArgumentException("The import has no header.");
+        }
+
+        // A byte order mark left by spreadsheet exports would otherwise stick to the first column name.
+        header.set(0, header.get(0).replace("\uFEFF", ""));
+
+        Columns columns = new Columns(header);
+        List<String> rejectHeader = new ArrayList<>(Arrays.asList("line", "reason"));
+        rejectHeader.addAll(header);
+        rejectWriter.write(rejectHeader);
+
+        Rooms rooms = new Rooms(this.roomService.getAllRooms());
+        LocalDateTime horizon = this.reservationArchiver.getArchivedUntil();
+        List<Row> batch = new ArrayList<>(this.batchSize);
+        long imported = 0;
+        long rejected = 0;
+
+        while (true) {
+            List<String> record;
+
+            try {
+                record = reader.next();
+            } catch (MalformedRecordException e) {
+                writeReject(rejectWriter, new Row(e.getLineNumber(), Collections.singletonList(e.getText())), e.getMessage());
+                rejected++;
+                continue;
+            }
+
+            if (record == null) {
+                break;
+            }
+
+            Row row = new Row(reader.getLineNumber(), record);
+
+            try {
+                row.reservation = columns.toReservation(record, rooms);
+                batch.add(row);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                writeReject(rejectWriter, row, e.getMessage());
+                rejected++;
+            }
+
+            if (batch.size() == this.batchSize) {
+                int batchImported = importBatch(batch, horizon, rejectWriter);
+                imported += batchImported;
+                rejected += batch.size() - batchImported;
+                batch.clear();
+            }
+        }
+
+        int batchImported = importBatch(batch, horizon, rejectWriter);
+        imported += batchImported;
+        rejected += batch.size() - batchImported;
+        rejectWriter.flush();
+
+        return new ReservationImportResultDto(imported, rejected);
+    }
+
+    /**
+     * Imports one batch, writes its rejected rows and returns the number of rows imported.
+     */
+    private int importBatch(List<Row> batch, LocalDateTime horizon, CsvWriter rejectWriter) throws IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Long[] roomIds = batch.stream()
+                .map(row -> row.reservation.getRoom().getId())
+                .distinct()
+                .toArray(Long[]::new);
+
+        List<Row> accepted = this.bookingMetrics.timed("reservation.import_batch",
+                () -> this.bookingCoordinator.withRoomLocks(() -> checkAndInsert(batch, horizon), roomIds));
+
+        for (Row row : batch) {
+            if (row.reason != null) {
+                writeReject(rejectWriter, row, row.reason);
+            }
+        }
+
+        return accepted.size();
+    }
+
+    private List<Row> checkAndInsert(List<Row> batch, LocalDateTime horizon) {
+        ReservationIndex pendingIndex = archivedIntervals(batch, horizon);
+        List<Row> accepted = new ArrayList<>();
+
+        for (Row row : batch) {
+            Reservation reservation = row.reservation;
+            Long roomId = reservation.getRoom().getId();
+
+            try {
+                this.reservationService.validateReservationRules(reservation);
+            } catch (RoomNotAvailableException e) {
+                row.reason = e.getMessage();
+                continue;
+            }
+
+            if (this.reservationIndex.hasOverlap(roomId, reservation.getStartDate(), reservation.getEndDate(), null)
+                    || pendingIndex.hasOverlap(roomId, reservation.getStartDate(), reservation.getEndDate(), null)) {
+                row.reason = CONFLICT;
+                continue;
+            }
+
+            pendingIndex.put(-row.line, roomId, reservation.getStartDate(), reservation.getEndDate());
+            accepted.add(row);
+        }
+
+        if (accepted.isEmpty()) {
+            return accepted;
+        }
+
+        try {
+            insert(accepted, horizon);
+        } catch (DataIntegrityViolationException e) {
+            accepted = insertOneByOne(accepted, horizon);
+        }
+
+        for (Row row : accepted) {
+            Reservation reservation = row.reservation;
+            Long roomId = reservation.getRoom().getId();
+
+            if (!isArchived(reservation, horizon)) {
+                this.reservationIndex.put(reservation);
+            }
+
+            this.occupancyGrid.invalidate(roomId, reservation.getStartDate(), reservation.getEndDate());
+            this.roomCalendar.invalidate(roomId, reservation.getStartDate(), reservation.getEndDate());
+            this.bookingMetrics.trackRoom(roomId, this.reservationIndex, index -> index.count(roomId));
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Returns an index of the archived reservations the rows of {@code batch} ending before {@code horizon} may
+     * overlap, read with one query.
+     */
+    private ReservationIndex archivedIntervals(List<Row> batch, LocalDateTime horizon) {
+        ReservationIndex archived = new ReservationIndex();
+        Set<Long> roomIds = new HashSet<>();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+
+        for (Row row : batch) {
+            Reservation reservation = row.reservation;
+
+            if (isArchived(reservation, horizon)) {
+                roomIds.add(reservation.getRoom().getId());
+                from = from == null || reservation.getStartDate().isBefore(from) ? reservation.getStartDate() : from;
+                to = to == null || reservation.getEndDate().isAfter(to) ? reservation.getEndDate() : to;
+            }
+        }
+
+        if (!roomIds.isEmpty()) {
+            for (ReservationIntervalDto interval : this.archivedReservationRepository.findOverlapping(roomIds, from, to)) {
+                archived.put(interval.getId(), interval.getRoomId(), interval.getStartDate(), interval.getEndDate());
+            }
+        }
+
+        return archived;
+    }
+
+    /**
+     * Inserts the rows of one batch in a single transaction, and moves those ending before {@code horizon} on
+     * to the archive before it commits.
+     */
+    private void insert(List<Row> rows, LocalDateTime horizon) {
+        List<Reservation> reservations = rows.stream().map(row -> row.reservation).collect(Collectors.toList());
+        UtilizationChange utilizationChange = new UtilizationChange();
+        reservations.forEach(utilizationChange::add);
+
+        this.transactionTemplate.execute(status -> {
+            this.reservationRepository.insertAll(reservations, this.batchSize);
+
+            List<Long> archivedIds = reservations.stream()
+                    .filter(reservation -> isArchived(reservation, horizon))
+                    .map(Reservation::getId)
+                    .collect(Collectors.toList());
+            this.reservationRepository.moveToArchive(archivedIds, horizon, LocalDateTime.now());
+            this.roomUtilization.apply(utilizationChange);
+            this.resourceVersions.bump(ResourceVersions.RESERVATIONS);
+
+            return null;
+        });
+    }
+
+    /**
+     * Inserts the rows of a batch the database refused one at a time, rejects the rows it refuses again and
+     * returns the others.
+     */
+    private List<Row> insertOneByOne(List<Row> rows, LocalDateTime horizon) {
+        List<Row> inserted = new ArrayList<>();
+
+        for (Row row : rows) {
+            // The rolled back batch left an id and a version on the reservation, which would make it look detached.
+            Reservation reservation = row.reservation;
+            row.reservation = new Reservation(reservation.getStartDate(), reservation.getEndDate(),
+                    reservation.getAttendees(), reservation.getAgenda(), reservation.getRoom());
+
+            try {
+                insert(Collections.singletonList(row), horizon);
+                inserted.add(row);
+            } catch (DataIntegrityViolationException e) {
+                row.reason = refusal(e);
+            }
+        }
+
+        return inserted;
+    }
+
+    private static String refusal(DataIntegrityViolationException e) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage());
+
+        if (cause.contains(ReservationExclusionConstraint.CONSTRAINT_NAME)) {
+            return CONFLICT;
+        }
+
+        // Driver messages go on with details and hints on further lines, the first one names the problem.
+        return "The database refused the row: " + cause.split("\\R", 2)[0];
+    }
+
+    private static boolean isArchived(Reservation reservation, LocalDateTime horizon) {
+        return reservation.getEndDate().isBefore(horizon);
+    }
+
+    private static void writeReject(CsvWriter rejectWriter, Row row, String reason) throws IOException {
+        List<String> fields = new ArrayList<>(row.record.size() + 2);
+        fields.add(String.valueOf(row.line));
+        fields.add(reason);
+        fields.addAll(row.record);
+        rejectWriter.write(fields);
+    }
+
+    private static class Row {
+        private final long line;
+        private final List<String> record;
+        private Reservation reservation;
+        private String reason;
+
+        private Row(long line, List<String> record) {
+            this.line = line;
+            this.record = record;
+        }
+    }
+
+    /**
+     * Positions of the imported columns in the header.
+     */
+    private static class Columns {
+        private final int size;
+        private final int startDate;
+        private final int endDate;
+        private final int attendees;
+        private final int agenda;
+        private final int room;
+
+        private Columns(List<String> header) {
+            for (String column : REQUIRED_COLUMNS) {
+                if (!header.contains(column)) {
+                    throw new IllegalArgumentException(String.format("The import header has no %s column.", column));
+                }
+            }
+
+            this.size = header.size();
+            this.startDate = header.indexOf("startDate");
+            this.endDate = header.indexOf("endDate");
+            this.attendees = header.indexOf("attendees");
+            this.agenda = header.indexOf("agenda");
+            this.room = header.indexOf("room");
+        }
+
+        private Reservation toReservation(List<String> record, Rooms rooms) {
+            if (record.size() != this.size) {
+                throw new IllegalArgumentException(String.format("Expected %d columns, found %d.", this.size, record.size()));
+            }
+
+            String attendees = record.get(this.attendees).trim();
+            Reservation reservation = new Reservation();
+            reservation.setStartDate(FixedFormatDates.parseDateTime(record.get(this.startDate).trim()));
+            reservation.setEndDate(FixedFormatDates.parseDateTime(record.get(this.endDate).trim()));
+            reservation.setAgenda(this.agenda < 0 ? null : record.get(this.agenda));
+            reservation.setRoom(rooms.resolve(record.get(this.room).trim()));
+
+            if (!reservation.getStartDate().isBefore(reservation.getEndDate())) {
+                throw new IllegalArgumentException("The end date must be after the start date.");
+            }
+
+            try {
+                reservation.setAttendees(Integer.valueOf(attendees));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Attendees must be a whole number, not '%s'.", attendees));
+            }
+
+            return reservation;
+        }
+    }
+
+    /**
+     * Rooms by id and by name. A name shared by several rooms does not resolve.
+     */
+    private static class Rooms {
+        private final Map<Long, Room> byId = new HashMap<>();
+        private final Map<String, Room> byName = new HashMap<>();
+        private final Set<String> ambiguousNames = new HashSet<>();
+
+        private Rooms(List<Room> rooms) {
+            for (Room room : rooms) {
+                this.byId.put(room.getId(), room);
+
+                if (this.byName.putIfAbsent(room.getName(), room) != null) {
+                    this.ambiguousNames.add(room.getName());
+                }
+            }
+        }
+
+        private Room resolve(String reference) {
+            Room room = null;
+
+            if (!reference.isEmpty() && reference.chars().allMatch(Character::isDigit) && reference.length() < 19) {
+                room = this.byId.get(Long.valueOf(reference));
+            }
+
+            if (room == null && this.ambiguousNames.contains(reference)) {
+                throw new IllegalArgumentException(String.format("More than one room is named '%s'.", reference));
+            }
+
+            if (room == null) {
+                room = this.byName.get(reference);
+            }
+
+            if (room == null) {
+                throw new IllegalArgumentException(String.format("Can't find any room with id or name '%s'.", reference));
+            }
+
+            return room;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.model.RecurringReservation;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.RecurringReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory, per-room index of reserved intervals.
+ *
+ * Each room keeps its reservations in a {@link TreeMap} ordered by start date, so an overlap check is a
+ * descending walk from the last reservation starting before the requested end. It stops at the requested start
+ * minus the duration of the longest reservation currently stored for the room, as no earlier reservation can
+ * reach into the range. One long reservation therefore widens the walk for its room until it is removed.
+ *
+ * Recurring reservations are kept as {@link RecurrenceRule}s next to the intervals of their room and only
+ * expanded around the checked range, so a long series costs one entry rather than one per occurrence.
+ */
+@Component
+public class ReservationIndex {
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private RecurringReservationRepository recurringReservationRepository;
+
+    private final Map<Long, RoomIntervals> rooms = new ConcurrentHashMap<>();
+
+    private final Map<Long, Interval> intervalsById = new ConcurrentHashMap<>();
+
+    private final Map<Long, RecurrenceRule> seriesById = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        this.rooms.clear();
+        this.intervalsById.clear();
+        this.seriesById.clear();
+
+        for (ReservationIntervalDto interval : this.reservationRepository.findAllIntervals()) {
+            put(interval.getId(), interval.getRoomId(), interval.getStartDate(), interval.getEndDate());
+        }
+
+        for (RecurringReservation series : this.recurringReservationRepository.findAll()) {
+            putSeries(RecurrenceRule.of(series));
+        }
+    }
+
+    public void put(Reservation reservation) {
+        if (reservation.getId() == null || reservation.getRoom() == null || reservation.getRoom().getId() == null) {
+            return;
+        }
+
+        put(reservation.getId(), reservation.getRoom().getId(), reservation.getStartDate(), reservation.getEndDate());
+    }
+
+    public void put(Long id, Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+        remove(id);
+
+        Interval interval = new Interval(id, roomId, startDate, endDate);
+
+        this.rooms.computeIfAbsent(roomId, key -> new RoomIntervals()).add(interval);
+        this.intervalsById.put(interval.id, interval);
+    }
+
+    public void remove(Long reservationId) {
+        Interval interval = this.intervalsById.remove(reservationId);
+
+        if (interval == null) {
+            return;
+        }
+
+        RoomIntervals roomIntervals = this.rooms.get(interval.roomId);
+
+        if (roomIntervals != null) {
+            roomIntervals.remove(interval);
+        }
+    }
+
+    /**
+     * Removes the reservation only if its indexed interval still ends before {@code horizon}.
+     */
+    public void removeIfEndingBefore(Long reservationId, LocalDateTime horizon) {
+        Interval interval = this.intervalsById.get(reservationId);
+
+        if (interval != null && interval.endDate.isBefore(horizon)) {
+            remove(reservationId);
+        }
+    }
+
+    public void putSeries(RecurrenceRule rule) {
+        removeSeries(rule.getSeriesId());
+
+        this.rooms.computeIfAbsent(rule.getRoomId(), key -> new RoomIntervals()).addSeries(rule);
+        this.seriesById.put(rule.getSeriesId(), rule);
+    }
+
+    public void removeSeries(Long seriesId) {
+        RecurrenceRule rule = this.seriesById.remove(seriesId);
+
+        if (rule == null) {
+            return;
+        }
+
+        RoomIntervals roomIntervals = this.rooms.get(rule.getRoomId());
+
+        if (roomIntervals != null) {
+            roomIntervals.removeSeries(rule);
+        }
+    }
+
+    /**
+     * Returns true if any indexed reservation of the given room overlaps {@code [startDate, endDate)}.
+     * The reservation with id {@code excludedId} is ignored, so an update never conflicts with itself.
+     */
+    public boolean hasOverlap(Long roomId, LocalDateTime startDate, LocalDateTime endDate, Long excludedId) {
+        if (roomId == null || !startDate.isBefore(endDate)) {
+            return false;
+        }
+
+        RoomIntervals roomIntervals = this.rooms.get(roomId);
+
+        return roomIntervals != null && roomIntervals.hasOverlap(startDate, endDate, excludedId);
+    }
+
+    /**
+     * Calls {@code consumer} with the start and end date of every reservation of the room overlapping
+     * {@code [startDate, endDate)}.
+     */
+    public void forEachOverlapping(Long roomId, LocalDateTime startDate, LocalDateTime endDate, BiConsumer<LocalDateTime, LocalDateTime> consumer) {
+        RoomIntervals roomIntervals = roomId == null ? null : this.rooms.get(roomId);
+
+        if (roomIntervals != null && startDate.isBefore(endDate)) {
+            roomIntervals.forEachOverlapping(startDate, endDate, consumer);
+        }
+    }
+
+    /**
+     * Returns the start dates of the occurrences of {@code rule} that overlap a reservation or another series
+     * of its room. The room's bookings over the whole span of the series are collected once, sorted by start
+     * date and swept together with the occurrences, so the check is linear in both instead of one lookup
+     * per occurrence.
+     */
+    public List<LocalDateTime> findConflicts(RecurrenceRule rule) {
+        List<LocalDateTime> conflicts = new ArrayList<>();
+        RoomIntervals roomIntervals = rule.getRoomId() == null ? null : this.rooms.get(rule.getRoomId());
+
+        if (roomIntervals == null) {
+            return conflicts;
+        }
+
+        List<Interval> booked = new ArrayList<>();
+        roomIntervals.forEachOverlapping(rule.getFirstStartDate(), rule.getLastEndDate(),
+                (startDate, endDate) -> booked.add(new Interval(null, rule.getRoomId(), startDate, endDate)));
+        booked.sort(Comparator.comparing(interval -> interval.startDate));
+
+        int next = 0;
+        Iterator<LocalDateTime> startDates = rule.startDatesFrom(rule.getFirstStartDate());
+
+        while (startDates.hasNext() && next < booked.size()) {
+            LocalDateTime startDate = startDates.next();
+            LocalDateTime endDate = rule.endOf(startDate);
+
+            // Occurrences only move forward, so a booking ending before this one starts can be dropped for good.
+            while (next < booked.size() && !booked.get(next).endDate.isAfter(startDate)) {
+                next++;
+            }
+
+            if (next < booked.size() && booked.get(next).startDate.isBefore(endDate)) {
+                conflicts.add(startDate);
+            }
+        }
+
+        return conflicts;
+    }
+
+    /**
+     * Returns the recurring series booked in the room, for callers that need the occurrences with their series.
+     */
+    public List<RecurrenceRule> seriesOf(Long roomId) {
+        RoomIntervals roomIntervals = roomId == null ? null : this.rooms.get(roomId);
+
+        return roomIntervals == null ? Collections.<RecurrenceRule>emptyList() : roomIntervals.series();
+    }
+
+    public int size() {
+        return this.intervalsById.size();
+    }
+
+    /**
+     * Counts the single reservations indexed for the room; recurring series are not expanded.
+     */
+    public int count(Long roomId) {
+        RoomIntervals roomIntervals = roomId == null ? null : this.rooms.get(roomId);
+
+        return roomIntervals == null ? 0 : roomIntervals.size();
+    }
+
+    /**
+     * Returns the duration of the longest reservation indexed for the room, which bounds its overlap checks.
+     */
+    Duration longest(Long roomId) {
+        RoomIntervals roomIntervals = roomId == null ? null : this.rooms.get(roomId);
+
+        return roomIntervals == null ? Duration.ZERO : roomIntervals.longest();
+    }
+
+    public Set<Long> roomIds() {
+        return Collections.unmodifiableSet(this.rooms.keySet());
+    }
+
+    private static class Interval {
+        private final Long id;
+        private final Long roomId;
+        private final LocalDateTime startDate;
+        private final LocalDateTime endDate;
+
+        private Interval(Long id, Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+            this.id = id;
+            this.roomId = roomId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+    }
+
+    private static class RoomIntervals {
+        private final TreeMap<LocalDateTime, Map<Long, Interval>> byStartDate = new TreeMap<>();
+
+        private final Map<Long, RecurrenceRule> series = new HashMap<>();
+
+        // Number of intervals per duration, so the longest is known again once the longest one is removed.
+        private final TreeMap<Duration, Integer> durations = new TreeMap<>();
+
+        private synchronized void add(Interval interval) {
+            this.byStartDate.computeIfAbsent(interval.startDate, startDate -> new HashMap<>()).put(interval.id, interval);
+            this.durations.merge(Duration.between(interval.startDate, interval.endDate), 1, Integer::sum);
+        }
+
+        private synchronized void remove(Interval interval) {
+            Map<Long, Interval> sameStart = this.byStartDate.get(interval.startDate);
+
+            if (sameStart != null && sameStart.remove(interval.id) != null) {
+                this.durations.computeIfPresent(Duration.between(interval.startDate, interval.endDate),
+                        (duration, count) -> count == 1 ? null : count - 1);
+
+                if (sameStart.isEmpty()) {
+                    this.byStartDate.remove(interval.startDate);
+                }
+            }
+        }
+
+        private synchronized Duration longest() {
+            return this.durations.isEmpty() ? Duration.ZERO : this.durations.lastKey();
+        }
+
+        private synchronized int size() {
+            int size = 0;
+
+            for (Map<Long, Interval> sameStart : this.byStartDate.values()) {
+                size += sameStart.size();
+            }
+
+            return size;
+        }
+
+        private synchronized void addSeries(RecurrenceRule rule) {
+            this.series.put(rule.getSeriesId(), rule);
+        }
+
+        private synchronized List<RecurrenceRule> series() {
+            return new ArrayList<>(this.series.values());
+        }
+
+        private synchronized void removeSeries(RecurrenceRule rule) {
+            this.series.remove(rule.getSeriesId());
+        }
+
+        private synchronized boolean hasOverlap(LocalDateTime startDate, LocalDateTime endDate, Long excludedId) {
+            for (Map<Long, Interval> sameStart : candidates(startDate, endDate).values()) {
+                for (Interval interval : sameStart.values()) {
+                    if (!interval.id.equals(excludedId) && interval.endDate.isAfter(startDate)) {
+                        return true;
+                    }
+                }
+            }
+
+            for (RecurrenceRule rule : this.series.values()) {
+                if (rule.hasOverlap(startDate, endDate)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private synchronized void forEachOverlapping(LocalDateTime startDate, LocalDateTime endDate, BiConsumer<LocalDateTime, LocalDateTime> consumer) {
+            for (Map<Long, Interval> sameStart : candidates(startDate, endDate).values()) {
+                for (Interval interval : sameStart.values()) {
+                    if (interval.endDate.isAfter(startDate)) {
+                        consumer.accept(interval.startDate, interval.endDate);
+                    }
+                }
+            }
+
+            for (RecurrenceRule rule : this.series.values()) {
+                rule.forEachOverlapping(startDate, endDate, consumer);
+            }
+        }
+
+        private NavigableMap<LocalDateTime, Map<Long, Interval>> candidates(LocalDateTime startDate, LocalDateTime endDate) {
+            return this.byStartDate
+                    .headMap(endDate, false)
+                    .tailMap(startDate.minus(longest()), true)
+                    .descendingMap();
+        }
+    }
+}
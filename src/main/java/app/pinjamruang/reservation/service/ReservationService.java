@@ -1,82 +1,717 @@
 package app.pinjamruang.reservation.service;
 
+import app.pinjamruang.json.FixedFormatDates;
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.persistence.KeysetPage;
+import app.pinjamruang.persistence.OptimisticRetry;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.persistence.StaleWriteException;
+import app.pinjamruang.persistence.Tagged;
+import app.pinjamruang.reservation.dto.CreateRecurringReservationDto;
 import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.dto.ReservationBatchResultDto;
+import app.pinjamruang.reservation.dto.ReservationEventDto;
+import app.pinjamruang.reservation.dto.ReservationOccurrenceDto;
+import app.pinjamruang.reservation.dto.RoomOccupancyDto;
+import app.pinjamruang.reservation.exception.InvalidBatchException;
+import app.pinjamruang.reservation.exception.InvalidRecurrenceException;
 import app.pinjamruang.reservation.exception.RoomNotAvailableException;
+import app.pinjamruang.reservation.exception.RoomNotAvailableException.Reason;
+import app.pinjamruang.reservation.model.ArchivedReservation;
+import app.pinjamruang.reservation.model.RecurringReservation;
 import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.ArchivedReservationRepository;
+import app.pinjamruang.reservation.repository.RecurringReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationExclusionConstraint;
 import app.pinjamruang.reservation.repository.ReservationRepository;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.service.RoomService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class ReservationService {
-    private static DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    public static final int MAX_SERIES_OCCURRENCES = 1000;
+
+    // Every item is checked while the locks of all rooms in the batch are held.
+    public static final int MAX_BATCH_SIZE = 500;
 
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private RecurringReservationRepository recurringReservationRepository;
+
+    @Autowired
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Autowired
+    private ReservationArchiver reservationArchiver;
+
     @Autowired
     private RoomService roomService;
 
+    @Autowired
+    private ReservationIndex reservationIndex;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private OccupancyGrid occupancyGrid;
+
+    @Autowired
+    private RoomCalendar roomCalendar;
+
+    @Autowired
+    private RoomUtilization roomUtilization;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookingMetrics bookingMetrics;
+
+    @Autowired
+    private ReservationEventBroadcaster reservationEventBroadcaster;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${pinjamruang.reservation.export-fetch-size:500}")
+    private int exportFetchSize = 500;
+
+    @PostConstruct
+    public void registerRoomGauges() {
+        for (Long roomId : this.reservationIndex.roomIds()) {
+            trackRoom(roomId);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public List<Reservation> getAllReservations() {
         return this.reservationRepository.findAll();
     }
 
-    public Reservation getReservationById(Long id) throws ResourceNotFoundException {
-        Reservation result = this.reservationRepository.getOne(id);
+    /**
+     * Pages through the reservations, tagged with the versions of the reservations and rooms read just before.
+     */
+    @Transactional(readOnly = true)
+    public Tagged<KeysetPage<Reservation>> getReservations(Long after, Integer limit, Long roomId, LocalDateTime from, LocalDateTime to) {
+        String tag = this.resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS);
+        int pageSize = KeysetPage.clampLimit(limit);
+        List<Reservation> rows = this.reservationRepository.findAfter(after, roomId, from, to, pageSize + 1);
+
+        return new Tagged<>(tag, KeysetPage.of(rows, pageSize, Reservation::getId));
+    }
 
-        if (result == null) {
-            throw new ResourceNotFoundException(String.format("Can\'t found any reservation with id %d", id));
+    /**
+     * Pages through the archived reservations overlapping {@code [from, to)}; an open {@code to} reaches the
+     * archive horizon. A range starting at or after the horizon returns an empty page without querying the
+     * archive. The page is tagged with the reservations version read just before.
+     */
+    @Transactional(readOnly = true)
+    public Tagged<KeysetPage<ArchivedReservation>> getArchivedReservations(Long after, Integer limit, Long roomId, LocalDateTime from, LocalDateTime to) {
+        String tag = this.resourceVersions.tag(ResourceVersions.RESERVATIONS);
+        int pageSize = KeysetPage.clampLimit(limit);
+        LocalDateTime archivedUntil = this.reservationArchiver.getArchivedUntil();
+
+        if (!from.isBefore(archivedUntil)) {
+            return new Tagged<>(tag, new KeysetPage<>(Collections.emptyList(), null));
         }
 
-        return result;
+        List<ArchivedReservation> rows = this.archivedReservationRepository.findAfter(
+                after == null ? 0L : after, roomId, from, to != null ? to : archivedUntil, PageRequest.of(0, pageSize + 1));
+
+        return new Tagged<>(tag, KeysetPage.of(rows, pageSize, ArchivedReservation::getId));
+    }
+
+    public void exportReservations(Long roomId, LocalDateTime from, LocalDateTime to, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = this.objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = this.objectMapper.getFactory()
+                .createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+
+        try {
+            this.reservationRepository.scroll(roomId, from, to, this.exportFetchSize, reservation -> {
+                try {
+                    writer.writeValue(generator, reservation);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            generator.close();
+        }
+    }
+
+    public List<RoomOccupancyDto> getOccupancy(LocalDate date, Long roomId) {
+        List<Long> roomIds = roomId == null ? this.roomService.getRoomIds() : Collections.singletonList(roomId);
+        List<RoomOccupancyDto> occupancy = new ArrayList<>(roomIds.size());
+
+        for (Long id : roomIds) {
+            long[] words = this.occupancyGrid.getDay(id, date);
+            StringBuilder slots = new StringBuilder(OccupancyGrid.SLOTS_PER_DAY);
+            int occupiedSlots = 0;
+
+            for (int slot = 0; slot < OccupancyGrid.SLOTS_PER_DAY; slot++) {
+                boolean occupied = (words[slot / Long.SIZE] & (1L << (slot % Long.SIZE))) != 0;
+                slots.append(occupied ? '1' : '0');
+                occupiedSlots += occupied ? 1 : 0;
+            }
+
+            occupancy.add(new RoomOccupancyDto(id, date, OccupancyGrid.SLOT_MINUTES, occupiedSlots, slots.toString(), words));
+        }
+
+        return occupancy;
+    }
+
+    @Transactional(readOnly = true)
+    public Reservation getReservationById(Long id) throws ResourceNotFoundException {
+        return this.reservationRepository.findWithRoomById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(String.format("Can\'t found any reservation with id %d", id)));
+    }
+
+    /**
+     * Returns the reservation tagged with the versions of the reservations and rooms read just before.
+     */
+    @Transactional(readOnly = true)
+    public Tagged<Reservation> getTaggedReservationById(Long id) throws ResourceNotFoundException {
+        String tag = this.resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS);
+
+        return new Tagged<>(tag, getReservationById(id));
     }
 
     public Reservation createReservation(CreateReservationDto reservationDto) throws RoomNotAvailableException {
-        Reservation newReservation = convertDtoToReservation(reservationDto);
+        return this.bookingMetrics.timed("reservation.create", () -> {
+            Reservation newReservation = convertDtoToReservation(reservationDto);
+
+            return this.bookingCoordinator.withRoomLocks(() -> {
+                validateReservation(newReservation);
 
-        validateReservation(newReservation);
+                Reservation savedReservation = saveReservation(newReservation, saved -> new UtilizationChange().add(saved));
+                this.reservationEventBroadcaster.publish(ReservationEventDto.created(savedReservation));
+
+                return savedReservation;
+            }, newReservation.getRoom().getId());
+        });
+    }
+
+    /**
+     * Creates each reservation of the batch that passes the checks and reports every item as created or rejected
+     * with its reason, in the order given. Batches over {@link #MAX_BATCH_SIZE} items are rejected as a whole.
+     */
+    public List<ReservationBatchResultDto> createReservations(List<CreateReservationDto> reservationDtos) throws InvalidBatchException {
+        if (reservationDtos.size() > MAX_BATCH_SIZE) {
+            throw new InvalidBatchException(String.format(
+                    "Batches can not have more than %d reservations.", MAX_BATCH_SIZE));
+        }
+
+        return this.bookingMetrics.timed("reservation.create_batch", () -> createReservationBatch(reservationDtos));
+    }
+
+    private List<ReservationBatchResultDto> createReservationBatch(List<CreateReservationDto> reservationDtos) {
+        ReservationBatchResultDto[] results = new ReservationBatchResultDto[reservationDtos.size()];
+        Map<Integer, Reservation> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < reservationDtos.size(); i++) {
+            String missingField = findMissingField(reservationDtos.get(i));
+
+            if (missingField != null) {
+                results[i] = ReservationBatchResultDto.rejected(i, String.format("Missing %s.", missingField));
+                continue;
+            }
+
+            try {
+                candidates.put(i, convertDtoToReservation(reservationDtos.get(i)));
+            } catch (ResourceNotFoundException | DateTimeParseException e) {
+                results[i] = ReservationBatchResultDto.rejected(i, e.getMessage());
+            }
+        }
 
-        return this.reservationRepository.save(newReservation);
+        Long[] roomIds = candidates.values().stream()
+                .map(reservation -> reservation.getRoom().getId())
+                .distinct()
+                .toArray(Long[]::new);
+
+        this.bookingCoordinator.runWithRoomLocks(() -> {
+            ReservationIndex pendingIndex = new ReservationIndex();
+            List<Integer> acceptedIndexes = new ArrayList<>();
+            List<Reservation> acceptedReservations = new ArrayList<>();
+
+            for (Map.Entry<Integer, Reservation> candidate : candidates.entrySet()) {
+                int i = candidate.getKey();
+                Reservation reservation = candidate.getValue();
+
+                try {
+                    validateReservation(reservation, pendingIndex);
+                } catch (RoomNotAvailableException e) {
+                    results[i] = ReservationBatchResultDto.rejected(i, e.getMessage());
+                    continue;
+                }
+
+                pendingIndex.put(
+                        -(i + 1L),
+                        reservation.getRoom().getId(),
+                        reservation.getStartDate(),
+                        reservation.getEndDate()
+                );
+                acceptedIndexes.add(i);
+                acceptedReservations.add(reservation);
+            }
+
+            try {
+                List<Reservation> savedReservations = saveReservations(acceptedReservations);
+
+                for (int k = 0; k < savedReservations.size(); k++) {
+                    int i = acceptedIndexes.get(k);
+                    results[i] = ReservationBatchResultDto.created(i, savedReservations.get(k));
+                    this.reservationEventBroadcaster.publish(ReservationEventDto.created(savedReservations.get(k)));
+                }
+            } catch (DataIntegrityViolationException e) {
+                // The database refused a row the index let through and rolled back the whole batch.
+                saveOneByOne(acceptedIndexes, acceptedReservations, results);
+            }
+        }, roomIds);
+
+        return Arrays.asList(results);
     }
 
-    public Reservation updateReservation(Long reservationId, CreateReservationDto reservationDto) throws RoomNotAvailableException, ResourceNotFoundException {
+    /**
+     * Saves the accepted items of a batch the database refused each on its own, so only the items it refuses again
+     * are rejected.
+     */
+    private void saveOneByOne(List<Integer> indexes, List<Reservation> reservations, ReservationBatchResultDto[] results) {
+        for (int k = 0; k < reservations.size(); k++) {
+            int i = indexes.get(k);
+
+            try {
+                Reservation savedReservation = saveReservation(copyOf(reservations.get(k)),
+                        saved -> new UtilizationChange().add(saved));
+                results[i] = ReservationBatchResultDto.created(i, savedReservation);
+                this.reservationEventBroadcaster.publish(ReservationEventDto.created(savedReservation));
+            } catch (RoomNotAvailableException e) {
+                results[i] = ReservationBatchResultDto.rejected(i, e.getMessage());
+            } catch (DataIntegrityViolationException e) {
+                // Driver messages go on with details and hints on further lines, the first one names the problem.
+                results[i] = ReservationBatchResultDto.rejected(i, "The database refused the reservation: "
+                        + String.valueOf(e.getMostSpecificCause().getMessage()).split("\\R", 2)[0]);
+            }
+        }
+    }
+
+    /**
+     * Updates the reservation. A DTO carrying the version the client read is applied at most once and fails with
+     * {@link StaleWriteException} if the reservation changed since; without a version a write that loses to a
+     * concurrent one is retried on the fresh row.
+     */
+    public Reservation updateReservation(Long reservationId, CreateReservationDto reservationDto) throws RoomNotAvailableException, ResourceNotFoundException, StaleWriteException {
+        return this.bookingMetrics.timed("reservation.update", () -> reservationDto.getVersion() != null
+                ? this.optimisticRetry.runOnce(() -> updateReservationWithLocks(reservationId, reservationDto))
+                : this.optimisticRetry.run(() -> updateReservationWithLocks(reservationId, reservationDto)));
+    }
+
+    private Reservation updateReservationWithLocks(Long reservationId, CreateReservationDto reservationDto) {
         Reservation reservation = getReservationById(reservationId);
 
+        if (reservationDto.getVersion() != null && !reservationDto.getVersion().equals(reservation.getVersion())) {
+            throw new StaleWriteException(String.format(
+                    "Reservation %d is at version %d, not %d.", reservationId, reservation.getVersion(), reservationDto.getVersion()));
+        }
+
+        Long previousRoomId = reservation.getRoom().getId();
+        LocalDateTime previousStartDate = reservation.getStartDate();
+        LocalDateTime previousEndDate = reservation.getEndDate();
+        int previousAttendees = reservation.getAttendees();
+
         updateReservationFromDto(reservation, reservationDto);
-        validateReservation(reservation);
 
-        return this.reservationRepository.save(reservation);
+        return this.bookingCoordinator.withRoomLocks(() -> {
+            validateReservation(reservation);
+
+            Reservation savedReservation = saveReservation(reservation, saved -> new UtilizationChange()
+                    .subtract(previousRoomId, previousStartDate, previousEndDate, previousAttendees)
+                    .add(saved));
+            this.occupancyGrid.invalidate(previousRoomId, previousStartDate, previousEndDate);
+            this.roomCalendar.invalidate(previousRoomId, previousStartDate, previousEndDate);
+            this.reservationEventBroadcaster.publish(ReservationEventDto.updated(savedReservation, previousRoomId));
+
+            return savedReservation;
+        }, previousRoomId, reservation.getRoom().getId());
     }
 
-    public void deleteReservation(Long reservationId) throws ResourceNotFoundException {
-        getReservationById(reservationId);
+    /**
+     * Deletes the reservation as it is when its room's lock is taken. A delete that loses to a concurrent update
+     * is retried on the fresh row, so the utilization removed is always that of the version deleted.
+     */
+    public void deleteReservation(Long reservationId) throws ResourceNotFoundException, StaleWriteException {
+        this.bookingMetrics.runTimed("reservation.delete", () -> this.optimisticRetry.run(() -> {
+            deleteReservationWithLocks(reservationId);
 
-        this.reservationRepository.deleteById(reservationId);
+            return null;
+        }));
     }
 
-    private void validateReservation(Reservation reservation) throws RoomNotAvailableException {
-        if (!roomHasEnoughCapacity(reservation)) {
-            throw new RoomNotAvailableException("Given room do not have enough capacity.");
+    private void deleteReservationWithLocks(Long reservationId) {
+        Long roomId = this.reservationRepository.findRoomIdById(reservationId)
+                .orElseThrow(() -> new ResourceNotFoundException(String.format("Can\'t found any reservation with id %d", reservationId)));
+
+        this.bookingCoordinator.runWithRoomLocks(() -> {
+            Reservation reservation = getReservationById(reservationId);
+
+            if (!reservation.getRoom().getId().equals(roomId)) {
+                // Moved to another room before the lock was taken.
+                throw new ObjectOptimisticLockingFailureException(Reservation.class, reservationId);
+            }
+
+            runInWriteTransaction(() -> {
+                if (this.reservationRepository.deleteByIdAndVersion(reservationId, reservation.getVersion()) == 0) {
+                    throw new ObjectOptimisticLockingFailureException(Reservation.class, reservationId);
+                }
+
+                this.roomUtilization.apply(new UtilizationChange().subtract(reservation));
+                this.resourceVersions.bump(ResourceVersions.RESERVATIONS);
+            });
+            this.reservationIndex.remove(reservationId);
+            this.occupancyGrid.invalidate(roomId, reservation.getStartDate(), reservation.getEndDate());
+            this.roomCalendar.invalidate(roomId, reservation.getStartDate(), reservation.getEndDate());
+            this.reservationEventBroadcaster.publish(ReservationEventDto.deleted(reservation));
+        }, roomId);
+    }
+
+    @Transactional(readOnly = true)
+    public RecurringReservation getRecurringReservationById(Long id) throws ResourceNotFoundException {
+        return this.recurringReservationRepository.findWithRoomById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(String.format("Can\'t found any recurring reservation with id %d", id)));
+    }
+
+    /**
+     * Expands the occurrences of a series starting from {@code from} (or its first occurrence) up to, but
+     * excluding, {@code to}, at most {@code limit} of them. Cancelled occurrences are skipped.
+     */
+    @Transactional(readOnly = true)
+    public List<ReservationOccurrenceDto> getOccurrences(Long seriesId, LocalDateTime from, LocalDateTime to, Integer limit) throws ResourceNotFoundException {
+        RecurrenceRule rule = RecurrenceRule.of(getRecurringReservationById(seriesId));
+        int pageSize = KeysetPage.clampLimit(limit);
+        Iterator<LocalDateTime> startDates = rule.startDatesFrom(from != null ? from : rule.getFirstStartDate());
+        List<ReservationOccurrenceDto> occurrences = new ArrayList<>();
+
+        while (startDates.hasNext() && occurrences.size() < pageSize) {
+            LocalDateTime startDate = startDates.next();
+
+            if (to != null && !startDate.isBefore(to)) {
+                break;
+            }
+
+            occurrences.add(new ReservationOccurrenceDto(seriesId, rule.getRoomId(), startDate, rule.endOf(startDate)));
         }
 
-        if (!roomOnOperationalTime(reservation)) {
-            throw new RoomNotAvailableException("Given room is not in operational time at given start and end time.");
+        return occurrences;
+    }
+
+    /**
+     * Stores a series as its rule. The capacity, operational time and one-day checks hold for every
+     * occurrence once they hold for the first, and all occurrences are checked for conflicts in one sweep
+     * over the room's bookings, so the whole series is accepted or rejected without a query per occurrence.
+     */
+    public RecurringReservation createRecurringReservation(CreateRecurringReservationDto dto) throws RoomNotAvailableException, InvalidRecurrenceException {
+        return this.bookingMetrics.timed("reservation.create_recurring", () -> createSeries(dto));
+    }
+
+    private RecurringReservation createSeries(CreateRecurringReservationDto dto) {
+        Reservation firstOccurrence = convertDtoToReservation(dto);
+        RecurringReservation series = new RecurringReservation(
+                firstOccurrence,
+                dto.getFrequency(),
+                dto.getInterval() != null ? dto.getInterval() : 1,
+                dto.getUntil() != null ? LocalDate.parse(dto.getUntil()) : null,
+                dto.getCount()
+        );
+
+        validateRecurrence(series);
+
+        return this.bookingCoordinator.withRoomLocks(() -> {
+            validateReservationRules(firstOccurrence);
+
+            List<LocalDateTime> conflicts = this.bookingMetrics.timed("reservation.series_conflict_check",
+                    () -> this.reservationIndex.findConflicts(RecurrenceRule.of(series)));
+
+            if (!conflicts.isEmpty()) {
+                throw reject(Reason.CONFLICT, String.format(
+                        "Given room is already reserved at %d of the occurrences, first at %s.",
+                        conflicts.size(),
+                        conflicts.get(0).format(FixedFormatDates.DATE_TIME)
+                ));
+            }
+
+            RecurringReservation savedSeries = inWriteTransaction(() -> {
+                RecurringReservation saved = this.recurringReservationRepository.save(series);
+                this.roomUtilization.apply(new UtilizationChange().add(RecurrenceRule.of(saved), saved.getAttendees()));
+
+                return saved;
+            });
+            RecurrenceRule rule = RecurrenceRule.of(savedSeries);
+
+            this.reservationIndex.putSeries(rule);
+            invalidateOccurrences(rule);
+            this.reservationEventBroadcaster.publish(ReservationEventDto.seriesCreated(savedSeries));
+
+            return savedSeries;
+        }, firstOccurrence.getRoom().getId());
+    }
+
+    /**
+     * Cancels the occurrence of a series on the given date by recording it as an exception of the rule. The
+     * series is read under the room's lock, so concurrent cancellations each add their date to the latest
+     * exceptions instead of overwriting one another. Cancelling a cancelled occurrence changes nothing.
+     */
+    public RecurringReservation cancelOccurrence(Long seriesId, LocalDate date) throws ResourceNotFoundException {
+        Long roomId = getRecurringReservationRoomId(seriesId);
+
+        return this.bookingCoordinator.withRoomLocks(() -> {
+            RecurringReservation series = getRecurringReservationById(seriesId);
+            RecurrenceRule rule = RecurrenceRule.of(series);
+
+            if (!rule.occursOn(date)) {
+                throw new ResourceNotFoundException(String.format("Recurring reservation %d has no occurrence on %s", seriesId, date));
+            }
+
+            if (!series.getExceptionDates().add(date)) {
+                return series;
+            }
+
+            UtilizationChange utilizationChange = new UtilizationChange();
+            rule.forEachOverlapping(date.atStartOfDay(), date.plusDays(1).atStartOfDay(),
+                    (startDate, endDate) -> utilizationChange.subtract(roomId, startDate, endDate, series.getAttendees()));
+
+            RecurringReservation savedSeries = inWriteTransaction(() -> {
+                RecurringReservation saved = this.recurringReservationRepository.save(series);
+                this.roomUtilization.apply(utilizationChange);
+
+                return saved;
+            });
+
+            this.reservationIndex.putSeries(RecurrenceRule.of(savedSeries));
+            this.occupancyGrid.invalidate(roomId, date.atStartOfDay(), date.atTime(LocalTime.MAX));
+            this.roomCalendar.invalidate(roomId, date.atStartOfDay(), date.atTime(LocalTime.MAX));
+
+            LocalDateTime startDate = date.atTime(series.getStartDate().toLocalTime());
+            this.reservationEventBroadcaster.publish(ReservationEventDto.occurrenceCancelled(savedSeries, startDate, rule.endOf(startDate)));
+
+            return savedSeries;
+        }, roomId);
+    }
+
+    public void deleteRecurringReservation(Long seriesId) throws ResourceNotFoundException {
+        Long roomId = getRecurringReservationRoomId(seriesId);
+
+        this.bookingCoordinator.runWithRoomLocks(() -> {
+            // Read under the lock, so the utilization removed leaves out occurrences cancelled in the meantime.
+            RecurringReservation series = getRecurringReservationById(seriesId);
+            RecurrenceRule rule = RecurrenceRule.of(series);
+
+            runInWriteTransaction(() -> {
+                this.recurringReservationRepository.deleteById(seriesId);
+                this.roomUtilization.apply(new UtilizationChange().subtract(rule, series.getAttendees()));
+            });
+            this.reservationIndex.removeSeries(seriesId);
+            invalidateOccurrences(rule);
+            this.reservationEventBroadcaster.publish(ReservationEventDto.seriesDeleted(series));
+        }, roomId);
+    }
+
+    private Long getRecurringReservationRoomId(Long seriesId) throws ResourceNotFoundException {
+        return this.recurringReservationRepository.findRoomIdById(seriesId)
+                .orElseThrow(() -> new ResourceNotFoundException(String.format("Can\'t found any recurring reservation with id %d", seriesId)));
+    }
+
+    private void validateRecurrence(RecurringReservation series) throws InvalidRecurrenceException {
+        if (series.getFrequency() == null) {
+            throw new InvalidRecurrenceException("Recurring reservations need a frequency.");
+        }
+
+        if (series.getInterval() < 1) {
+            throw new InvalidRecurrenceException("Recurrence interval must be positive.");
+        }
+
+        if (series.getUntil() == null && series.getCount() == null) {
+            throw new InvalidRecurrenceException("Recurring reservations need an until date or an occurrence count.");
+        }
+
+        if (series.getCount() != null && series.getCount() < 1) {
+            throw new InvalidRecurrenceException("Occurrence count must be positive.");
         }
 
-        if (roomIsReserved(reservation)) {
-            throw new RoomNotAvailableException("Given room is already reserved at given time.");
+        int occurrences = RecurrenceRule.of(series).size();
+
+        if (occurrences < 1) {
+            throw new InvalidRecurrenceException("Recurring reservation has no occurrences.");
+        }
+
+        if (occurrences > MAX_SERIES_OCCURRENCES) {
+            throw new InvalidRecurrenceException(String.format(
+                    "Recurring reservations can not have more than %d occurrences.", MAX_SERIES_OCCURRENCES));
+        }
+    }
+
+    private void invalidateOccurrences(RecurrenceRule rule) {
+        rule.forEachOverlapping(rule.getFirstStartDate(), rule.getLastEndDate(), (startDate, endDate) -> {
+            this.occupancyGrid.invalidate(rule.getRoomId(), startDate, endDate);
+            this.roomCalendar.invalidate(rule.getRoomId(), startDate, endDate);
+        });
+    }
+
+    private Reservation saveReservation(Reservation reservation, Function<Reservation, UtilizationChange> utilizationChange) throws RoomNotAvailableException {
+        Reservation savedReservation = inWriteTransaction(() -> {
+            Reservation saved = this.reservationRepository.save(reservation);
+            this.roomUtilization.apply(utilizationChange.apply(saved));
+            this.resourceVersions.bump(ResourceVersions.RESERVATIONS);
+
+            return saved;
+        });
+
+        indexReservation(savedReservation);
+
+        return savedReservation;
+    }
+
+    /**
+     * Saves the reservations in one transaction. Unlike {@link #saveReservation}, a refusal by the database is
+     * not translated, as it only says that some row of the batch was refused.
+     */
+    private List<Reservation> saveReservations(List<Reservation> reservations) throws DataIntegrityViolationException {
+        if (reservations.isEmpty()) {
+            return reservations;
+        }
+
+        List<Reservation> savedReservations = this.transactionTemplate.execute(status -> {
+            List<Reservation> saved = this.reservationRepository.saveAll(reservations);
+            UtilizationChange utilizationChange = new UtilizationChange();
+            saved.forEach(utilizationChange::add);
+            this.roomUtilization.apply(utilizationChange);
+            this.resourceVersions.bump(ResourceVersions.RESERVATIONS);
+
+            return saved;
+        });
+
+        savedReservations.forEach(this::indexReservation);
+
+        return savedReservations;
+    }
+
+    // The rolled back batch left an id and a version on the reservation, which would make it look detached.
+    private static Reservation copyOf(Reservation reservation) {
+        return new Reservation(reservation.getStartDate(), reservation.getEndDate(), reservation.getAttendees(),
+                reservation.getAgenda(), reservation.getRoom());
+    }
+
+    /**
+     * Runs a write, the utilization change it causes and the version bump in one transaction, so neither the
+     * totals nor the ETags ever count a write that rolled back or miss one that committed. The in-memory
+     * structures are updated by the caller once this returns, that is after the commit.
+     */
+    private <T> T inWriteTransaction(Supplier<T> write) throws RoomNotAvailableException {
+        try {
+            return this.transactionTemplate.execute(status -> write.get());
+        } catch (DataIntegrityViolationException e) {
+            throw translateIntegrityViolation(e);
+        }
+    }
+
+    private void runInWriteTransaction(Runnable write) throws RoomNotAvailableException {
+        inWriteTransaction(() -> {
+            write.run();
+
+            return null;
+        });
+    }
+
+    private void indexReservation(Reservation reservation) {
+        this.reservationIndex.put(reservation);
+        this.occupancyGrid.invalidate(reservation.getRoom().getId(), reservation.getStartDate(), reservation.getEndDate());
+        this.roomCalendar.invalidate(reservation.getRoom().getId(), reservation.getStartDate(), reservation.getEndDate());
+        trackRoom(reservation.getRoom().getId());
+    }
+
+    private void trackRoom(Long roomId) {
+        this.bookingMetrics.trackRoom(roomId, this.reservationIndex, index -> index.count(roomId));
+    }
+
+    private RoomNotAvailableException reject(Reason reason, String message) {
+        this.bookingMetrics.countRejection(reason.tag());
+
+        return new RoomNotAvailableException(reason, message);
+    }
+
+    private RuntimeException translateIntegrityViolation(DataIntegrityViolationException e) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage());
+
+        if (cause.contains(ReservationExclusionConstraint.CONSTRAINT_NAME)) {
+            return reject(Reason.CONFLICT, "Given room is already reserved at given time.");
+        }
+
+        return e;
+    }
+
+    // Package-private so the benchmarks under src/jmh can measure the checks without a database.
+    void validateReservation(Reservation reservation) throws RoomNotAvailableException {
+        validateReservation(reservation, null);
+    }
+
+    private void validateReservation(Reservation reservation, ReservationIndex pendingIndex) throws RoomNotAvailableException {
+        validateReservationRules(reservation);
+
+        if (roomIsReserved(reservation) || roomIsReserved(reservation, pendingIndex)) {
+            throw reject(Reason.CONFLICT, "Given room is already reserved at given time.");
+        }
+    }
+
+    // Package-private so ReservationImporter applies the same rules to every imported row.
+    void validateReservationRules(Reservation reservation) throws RoomNotAvailableException {
+        if (!roomHasEnoughCapacity(reservation)) {
+            throw reject(Reason.CAPACITY, "Given room do not have enough capacity.");
+        }
+
+        if (!roomOnOperationalTime(reservation)) {
+            throw reject(Reason.HOURS, "Given room is not in operational time at given start and end time.");
         }
 
         if (!reservationWithinOneDay(reservation)) {
-            throw new RoomNotAvailableException("Reservations can not span for more than one day.");
+            throw reject(Reason.MULTI_DAY, "Reservations can not span for more than one day.");
         }
     }
 
@@ -95,13 +730,21 @@ public class ReservationService {
     }
 
     private boolean roomIsReserved(Reservation reservation) {
-        LocalDateTime startDate = reservation.getStartDate();
-        LocalDateTime endDate = reservation.getEndDate();
-        List<Reservation> reservationsWithOverlappingDate =
-                this.reservationRepository.findByStartDateBetweenAndEndDateBetween(
-                        startDate, endDate, startDate, endDate);
+        return this.bookingMetrics.timed("reservation.conflict_check", () -> !this.occupancyGrid.isFree(
+                reservation.getRoom().getId(),
+                reservation.getStartDate(),
+                reservation.getEndDate(),
+                reservation.getId()
+        ));
+    }
 
-        return reservationsWithOverlappingDate.size() > 0;
+    private boolean roomIsReserved(Reservation reservation, ReservationIndex index) {
+        return index != null && index.hasOverlap(
+                reservation.getRoom().getId(),
+                reservation.getStartDate(),
+                reservation.getEndDate(),
+                reservation.getId()
+        );
     }
 
     private boolean reservationWithinOneDay(Reservation reservation) {
@@ -111,7 +754,31 @@ public class ReservationService {
         return startDate.getDayOfYear() == endDate.getDayOfYear();
     }
 
-    private Reservation convertDtoToReservation(CreateReservationDto dto) {
+    private static String findMissingField(CreateReservationDto dto) {
+        if (dto == null) {
+            return "reservation";
+        }
+
+        if (dto.getStartDate() == null) {
+            return "startDate";
+        }
+
+        if (dto.getEndDate() == null) {
+            return "endDate";
+        }
+
+        if (dto.getAttendees() == null) {
+            return "attendees";
+        }
+
+        if (dto.getRoomId() == null) {
+            return "roomId";
+        }
+
+        return null;
+    }
+
+    Reservation convertDtoToReservation(CreateReservationDto dto) {
         Reservation reservation = new Reservation();
         updateReservationFromDto(reservation, dto);
 
@@ -121,8 +788,8 @@ public class ReservationService {
     private void updateReservationFromDto(Reservation reservation, CreateReservationDto dto) {
         reservation.setAgenda(dto.getAgenda());
         reservation.setAttendees(dto.getAttendees());
-        reservation.setStartDate(LocalDateTime.parse(dto.getStartDate(), formatter));
-        reservation.setEndDate(LocalDateTime.parse(dto.getEndDate(), formatter));
+        reservation.setStartDate(FixedFormatDates.parseDateTime(dto.getStartDate()));
+        reservation.setEndDate(FixedFormatDates.parseDateTime(dto.getEndDate()));
         reservation.setRoom(this.roomService.getRoomById(dto.getRoomId()));
     }
 }
@@ -0,0 +1,208 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.CalendarDayDto;
+import app.pinjamruang.reservation.dto.CalendarEntryDto;
+import app.pinjamruang.reservation.dto.FreeSlotDto;
+import app.pinjamruang.reservation.dto.RoomCalendarDto;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.room.model.Room;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Week views of a room, Monday to Sunday, listing the reservations of each day and the free gaps between the
+ * room's {@code openTime} and {@code closeTime}.
+ *
+ * A week is built from a single range query for the room's reservations plus the occurrences of its recurring
+ * series, which are expanded from {@link ReservationIndex}. Weeks are cached per room and invalidated by
+ * {@link ReservationService} for exactly the weeks a write touches, and per room when the room itself changes.
+ * A cached week also remembers the version of the room it was built with and is rebuilt when read with
+ * another one, so a week still being built from the old room while the room was invalidated is not served
+ * with the updated room. Weeks expire after {@code ttl-seconds} in any case.
+ */
+@Component
+public class RoomCalendar {
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationIndex reservationIndex;
+
+    @Value("${pinjamruang.room.calendar.maximum-size:10000}")
+    private long maximumSize = 10_000L;
+
+    @Value("${pinjamruang.room.calendar.ttl-seconds:300}")
+    private long ttlSeconds = 300L;
+
+    private Cache<RoomWeek, CachedWeek> weeks = buildWeeks();
+
+    @PostConstruct
+    public void initWeeks() {
+        this.weeks = buildWeeks();
+    }
+
+    /**
+     * Returns the calendar of the week containing {@code date}.
+     */
+    public RoomCalendarDto getWeek(Room room, LocalDate date) {
+        LocalDate weekStart = weekStart(date);
+        RoomWeek roomWeek = new RoomWeek(room.getId(), weekStart);
+        CachedWeek cached = this.weeks.get(roomWeek, key -> new CachedWeek(room.getVersion(), compute(room, weekStart)));
+
+        if (!Objects.equals(cached.roomVersion, room.getVersion())) {
+            cached = new CachedWeek(room.getVersion(), compute(room, weekStart));
+            this.weeks.put(roomWeek, cached);
+        }
+
+        return cached.calendar;
+    }
+
+    public void invalidate(Long roomId, LocalDateTime startDate, LocalDateTime endDate) {
+        if (roomId == null) {
+            return;
+        }
+
+        for (LocalDate week = weekStart(startDate.toLocalDate()); !week.isAfter(endDate.toLocalDate()); week = week.plusWeeks(1)) {
+            this.weeks.invalidate(new RoomWeek(roomId, week));
+        }
+    }
+
+    public void invalidateRoom(Long roomId) {
+        this.weeks.asMap().keySet().removeIf(roomWeek -> roomWeek.roomId.equals(roomId));
+    }
+
+    static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private Cache<RoomWeek, CachedWeek> buildWeeks() {
+        return Caffeine.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(this.ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private RoomCalendarDto compute(Room room, LocalDate weekStart) {
+        LocalDateTime from = weekStart.atStartOfDay();
+        LocalDateTime to = from.plusWeeks(1);
+        List<CalendarEntryDto> entries = new ArrayList<>();
+
+        for (Reservation reservation : this.reservationRepository.findOverlapping(room.getId(), from, to)) {
+            entries.add(CalendarEntryDto.of(reservation));
+        }
+
+        for (RecurrenceRule rule : this.reservationIndex.seriesOf(room.getId())) {
+            rule.forEachOverlapping(from, to,
+                    (startDate, endDate) -> entries.add(CalendarEntryDto.occurrence(rule.getSeriesId(), startDate, endDate)));
+        }
+
+        entries.sort(Comparator.comparing(CalendarEntryDto::getStartDate));
+
+        List<CalendarDayDto> days = new ArrayList<>();
+
+        for (LocalDate date = weekStart; date.isBefore(weekStart.plusWeeks(1)); date = date.plusDays(1)) {
+            days.add(day(room, date, entries));
+        }
+
+        return new RoomCalendarDto(room.getId(), weekStart, days);
+    }
+
+    private static CalendarDayDto day(Room room, LocalDate date, List<CalendarEntryDto> entries) {
+        LocalDateTime dayStart = date.atStartOfDay();
+        LocalDateTime dayEnd = dayStart.plusDays(1);
+        List<CalendarEntryDto> reservations = new ArrayList<>();
+
+        for (CalendarEntryDto entry : entries) {
+            if (entry.getStartDate().isBefore(dayEnd) && entry.getEndDate().isAfter(dayStart)) {
+                reservations.add(entry);
+            }
+        }
+
+        return new CalendarDayDto(date, reservations, freeSlots(date.atTime(room.getOpenTime()), date.atTime(room.getCloseTime()), reservations));
+    }
+
+    /**
+     * Returns the gaps of {@code [open, close)} not covered by any of {@code reservations}, which are sorted by
+     * start date and may overlap each other.
+     */
+    static List<FreeSlotDto> freeSlots(LocalDateTime open, LocalDateTime close, List<CalendarEntryDto> reservations) {
+        List<FreeSlotDto> freeSlots = new ArrayList<>();
+        LocalDateTime cursor = open;
+
+        for (CalendarEntryDto reservation : reservations) {
+            if (!cursor.isBefore(close)) {
+                break;
+            }
+
+            if (reservation.getStartDate().isAfter(cursor)) {
+                LocalDateTime gapEnd = reservation.getStartDate().isBefore(close) ? reservation.getStartDate() : close;
+                freeSlots.add(new FreeSlotDto(cursor, gapEnd));
+            }
+
+            if (reservation.getEndDate().isAfter(cursor)) {
+                cursor = reservation.getEndDate();
+            }
+        }
+
+        if (cursor.isBefore(close)) {
+            freeSlots.add(new FreeSlotDto(cursor, close));
+        }
+
+        return freeSlots;
+    }
+
+    private static final class CachedWeek {
+        private final Long roomVersion;
+        private final RoomCalendarDto calendar;
+
+        private CachedWeek(Long roomVersion, RoomCalendarDto calendar) {
+            this.roomVersion = roomVersion;
+            this.calendar = calendar;
+        }
+    }
+
+    private static final class RoomWeek {
+        private final Long roomId;
+        private final LocalDate weekStart;
+
+        private RoomWeek(Long roomId, LocalDate weekStart) {
+            this.roomId = roomId;
+            this.weekStart = weekStart;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof RoomWeek)) {
+                return false;
+            }
+
+            RoomWeek roomWeek = (RoomWeek) other;
+
+            return this.roomId.equals(roomWeek.roomId) && this.weekStart.equals(roomWeek.weekStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.roomId, this.weekStart);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.model.RecurringReservation;
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+import app.pinjamruang.reservation.repository.RecurringReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.reservation.repository.RoomDayUtilizationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reservation count, booked minutes and attendee minutes per room and day, kept in memory and in the
+ * {@code room_day_utilization} table.
+ *
+ * {@link ReservationService} applies a {@link UtilizationChange} in the transaction of every write of a
+ * reservation or series, so only the days that write touches are updated and a read never looks at a
+ * reservation. The table is loaded at startup; while it is empty, it is first filled from the current
+ * reservations and series. The fill replaces rows rather than adding to them, so instances starting together
+ * against an empty table write the same totals instead of doubling them.
+ */
+@Component
+public class RoomUtilization {
+    private static final Logger logger = LoggerFactory.getLogger(RoomUtilization.class);
+
+    private static final int BACKFILL_FETCH_SIZE = 500;
+
+    @Autowired
+    private RoomDayUtilizationRepository utilizationRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private RecurringReservationRepository recurringReservationRepository;
+
+    private final Map<RoomDayUtilization.Key, RoomDayUtilization> days = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        this.days.clear();
+
+        for (RoomDayUtilization day : this.utilizationRepository.findAll()) {
+            this.days.put(day.key(), day);
+        }
+
+        if (this.days.isEmpty()) {
+            backfill();
+        }
+    }
+
+    /**
+     * Returns the totals of the room on that day, or null when it never had a reservation.
+     */
+    public RoomDayUtilization get(Long roomId, LocalDate date) {
+        return this.days.get(new RoomDayUtilization.Key(roomId, date));
+    }
+
+    /**
+     * Upserts the change into the table within the caller's transaction, so it commits or rolls back together
+     * with the reservation write it belongs to, and adds it to memory once that transaction has committed.
+     */
+    public void apply(UtilizationChange change) {
+        List<RoomDayUtilization> deltas = change.deltas();
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        this.utilizationRepository.add(deltas);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    merge(deltas);
+                }
+            });
+        } else {
+            merge(deltas);
+        }
+    }
+
+    private void merge(List<RoomDayUtilization> deltas) {
+        for (RoomDayUtilization delta : deltas) {
+            this.days.merge(delta.key(), delta, RoomDayUtilization::plus);
+        }
+    }
+
+    private void backfill() {
+        UtilizationChange change = new UtilizationChange();
+
+        this.reservationRepository.scroll(null, null, null, BACKFILL_FETCH_SIZE, change::add);
+
+        for (RecurringReservation series : this.recurringReservationRepository.findAll()) {
+            change.add(series);
+        }
+
+        if (!change.isEmpty()) {
+            List<RoomDayUtilization> totals = change.deltas();
+            this.utilizationRepository.replace(totals);
+
+            for (RoomDayUtilization day : totals) {
+                this.days.put(day.key(), day);
+            }
+
+            logger.info("Filled room_day_utilization with {} room days", this.days.size());
+        }
+    }
+}
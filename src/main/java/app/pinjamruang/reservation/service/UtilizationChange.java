@@ -0,0 +1,94 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.model.RecurringReservation;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The utilization a write adds and removes, summed per room and day before it is applied by
+ * {@link RoomUtilization}. A reservation moved within its day with the same length and attendees nets out to
+ * nothing, and a batch on one day to a single row.
+ */
+public class UtilizationChange {
+    private final Map<RoomDayUtilization.Key, RoomDayUtilization> deltas = new LinkedHashMap<>();
+
+    public UtilizationChange add(Reservation reservation) {
+        return add(reservation.getRoom().getId(), reservation.getStartDate(), reservation.getEndDate(), reservation.getAttendees());
+    }
+
+    public UtilizationChange subtract(Reservation reservation) {
+        return subtract(reservation.getRoom().getId(), reservation.getStartDate(), reservation.getEndDate(), reservation.getAttendees());
+    }
+
+    public UtilizationChange add(RecurringReservation series) {
+        return add(RecurrenceRule.of(series), series.getAttendees());
+    }
+
+    /**
+     * Adds every occurrence of the rule, each with {@code attendees}.
+     */
+    public UtilizationChange add(RecurrenceRule rule, int attendees) {
+        rule.forEachOverlapping(rule.getFirstStartDate(), rule.getLastEndDate(),
+                (startDate, endDate) -> add(rule.getRoomId(), startDate, endDate, attendees));
+
+        return this;
+    }
+
+    public UtilizationChange subtract(RecurrenceRule rule, int attendees) {
+        rule.forEachOverlapping(rule.getFirstStartDate(), rule.getLastEndDate(),
+                (startDate, endDate) -> subtract(rule.getRoomId(), startDate, endDate, attendees));
+
+        return this;
+    }
+
+    public UtilizationChange add(Long roomId, LocalDateTime startDate, LocalDateTime endDate, int attendees) {
+        return record(roomId, startDate, endDate, attendees, 1);
+    }
+
+    public UtilizationChange subtract(Long roomId, LocalDateTime startDate, LocalDateTime endDate, int attendees) {
+        return record(roomId, startDate, endDate, attendees, -1);
+    }
+
+    public boolean isEmpty() {
+        return deltas().isEmpty();
+    }
+
+    /**
+     * Returns the amounts to add per room and day, leaving out days where the change nets out to nothing.
+     */
+    List<RoomDayUtilization> deltas() {
+        List<RoomDayUtilization> deltas = new ArrayList<>();
+
+        for (RoomDayUtilization delta : this.deltas.values()) {
+            if (delta.getReservations() != 0 || delta.getBookedMinutes() != 0 || delta.getAttendeeMinutes() != 0) {
+                deltas.add(delta);
+            }
+        }
+
+        return deltas;
+    }
+
+    private UtilizationChange record(Long roomId, LocalDateTime startDate, LocalDateTime endDate, int attendees, int sign) {
+        for (LocalDate date = startDate.toLocalDate(); date.atStartOfDay().isBefore(endDate); date = date.plusDays(1)) {
+            LocalDateTime dayStart = date.atStartOfDay();
+            LocalDateTime dayEnd = dayStart.plusDays(1);
+            long minutes = Duration.between(
+                    startDate.isAfter(dayStart) ? startDate : dayStart,
+                    endDate.isBefore(dayEnd) ? endDate : dayEnd
+            ).toMinutes();
+
+            RoomDayUtilization delta = new RoomDayUtilization(roomId, date, sign, sign * minutes, sign * minutes * attendees);
+            this.deltas.merge(delta.key(), delta, RoomDayUtilization::plus);
+        }
+
+        return this;
+    }
+}
@@ -1,12 +1,27 @@
 package app.pinjamruang.room.controller;
 
+import app.pinjamruang.persistence.ETags;
+import app.pinjamruang.persistence.KeysetPages;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.persistence.Tagged;
+import app.pinjamruang.reservation.dto.RoomCalendarDto;
+import app.pinjamruang.reservation.service.ReservationEventBroadcaster;
 import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.dto.RoomCacheStatsDto;
+import app.pinjamruang.room.dto.RoomUtilizationDto;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.service.RoomService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -15,14 +30,71 @@ public class RoomController {
     @Autowired
     private RoomService service;
 
+    @Autowired
+    private ReservationEventBroadcaster reservationEventBroadcaster;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     @GetMapping("/")
-    public List<Room> getAllRooms() {
-        return this.service.getAllRooms();
+    public ResponseEntity<List<Room>> getAllRooms(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request
+    ) {
+        return ETags.forCollection(request, this.resourceVersions.cachedTag(ResourceVersions.ROOMS),
+                () -> this.service.getRooms(after, limit).map(KeysetPages::toResponse));
+    }
+
+    @GetMapping("/available")
+    public List<Room> getAvailableRooms(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime end,
+            @RequestParam(defaultValue = "1") int attendees
+    ) {
+        return this.service.getAvailableRooms(start, end, attendees);
+    }
+
+    @GetMapping("/utilization")
+    public List<RoomUtilizationDto> getUtilization(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return this.service.getUtilization(from, to);
+    }
+
+    @GetMapping("/cache/stats")
+    public RoomCacheStatsDto getRoomCacheStats() {
+        return this.service.getRoomCacheStats();
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getEvents() {
+        return this.reservationEventBroadcaster.subscribe(ReservationEventBroadcaster.ALL_ROOMS);
+    }
+
+    @GetMapping(value = "/{roomId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getRoomEvents(@PathVariable Long roomId) {
+        this.service.getRoomById(roomId);
+
+        return this.reservationEventBroadcaster.subscribe(roomId);
+    }
+
+    @GetMapping("/{roomId}/calendar")
+    public RoomCalendarDto getRoomCalendar(
+            @PathVariable Long roomId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate week
+    ) {
+        return this.service.getCalendar(roomId, week);
     }
 
     @GetMapping("/{roomId}")
-    public Room getRoomById(@PathVariable Long roomId) {
-        return this.service.getRoomById(roomId);
+    public ResponseEntity<Room> getRoomById(@PathVariable Long roomId, WebRequest request) {
+        // The room comes from this instance's cache, which may lag the version, so only its stamp tells
+        // whether it changed and a current version alone never answers.
+        return ETags.forEntity(request, null,
+                () -> new Tagged<>(this.resourceVersions.tag(ResourceVersions.ROOMS), this.service.getRoomById(roomId)),
+                room -> ETags.stamp(room.getVersion()));
     }
 
     @PostMapping("/")
@@ -5,6 +5,7 @@ public class CreateRoomDto {
     private Integer capacity;
     private String openTime;
     private String closeTime;
+    private Long version;
 
     public CreateRoomDto(String name, Integer capacity, String openTime, String closeTime) {
         this.name = name;
@@ -28,5 +29,16 @@ public class CreateRoomDto {
     public String getCloseTime() {
         return closeTime;
     }
+
+    /**
+     * The version the client last read. When set, an update is rejected unless it still is the current one.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
 
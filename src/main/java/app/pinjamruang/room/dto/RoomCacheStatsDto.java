@@ -0,0 +1,37 @@
+package app.pinjamruang.room.dto;
+
+public class RoomCacheStatsDto {
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+
+    public RoomCacheStatsDto(long size, long hits, long misses, double hitRate, long evictions) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hitRate;
+        this.evictions = evictions;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
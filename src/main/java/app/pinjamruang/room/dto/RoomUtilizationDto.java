@@ -0,0 +1,56 @@
+package app.pinjamruang.room.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Utilization of one room on one day. {@code occupancyRate} is the share of the opening hours that is booked,
+ * {@code attendeeCapacityRatio} the average share of the capacity in use while the room is booked.
+ */
+public class RoomUtilizationDto {
+    private Long roomId;
+    private LocalDate date;
+    private int reservations;
+    private long bookedMinutes;
+    private long openMinutes;
+    private double occupancyRate;
+    private double attendeeCapacityRatio;
+
+    public RoomUtilizationDto(Long roomId, LocalDate date, int reservations, long bookedMinutes, long openMinutes,
+                              double occupancyRate, double attendeeCapacityRatio) {
+        this.roomId = roomId;
+        this.date = date;
+        this.reservations = reservations;
+        this.bookedMinutes = bookedMinutes;
+        this.openMinutes = openMinutes;
+        this.occupancyRate = occupancyRate;
+        this.attendeeCapacityRatio = attendeeCapacityRatio;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getReservations() {
+        return reservations;
+    }
+
+    public long getBookedMinutes() {
+        return bookedMinutes;
+    }
+
+    public long getOpenMinutes() {
+        return openMinutes;
+    }
+
+    public double getOccupancyRate() {
+        return occupancyRate;
+    }
+
+    public double getAttendeeCapacityRatio() {
+        return attendeeCapacityRatio;
+    }
+}
@@ -2,6 +2,8 @@ package app.pinjamruang.room.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
@@ -13,7 +15,12 @@ import java.time.LocalTime;
 @Entity
 public class Room {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "room_seq")
+    @GenericGenerator(
+            name = "room_seq",
+            strategy = "app.pinjamruang.persistence.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "room_seq")
+    )
     private Long id;
 
     @Column(name = "name")
@@ -39,6 +46,10 @@ public class Room {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     public Room() {
     }
 
@@ -92,4 +103,8 @@ public class Room {
     public void setCloseTime(LocalTime closeTime) {
         this.closeTime = closeTime;
     }
+
+    public Long getVersion() {
+        return version;
+    }
 }
@@ -1,8 +1,23 @@
 package app.pinjamruang.room.repository;
 
 import app.pinjamruang.room.model.Room;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface RoomRepository extends JpaRepository<Room, Long> { }
+public interface RoomRepository extends JpaRepository<Room, Long> {
+    List<Room> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+    /**
+     * Deletes the room only if it is still at the given version, and returns the number of rows deleted.
+     */
+    @Modifying
+    @Query("delete from Room r where r.id = :id and r.version = :version")
+    int deleteByIdAndVersion(@Param("id") Long id, @Param("version") Long version);
+}
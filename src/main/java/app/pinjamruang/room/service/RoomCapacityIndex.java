@@ -0,0 +1,88 @@
+package app.pinjamruang.room.service;
+
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.repository.RoomRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory snapshot of all rooms sorted by capacity. Rooms change rarely, so every change rebuilds an
+ * immutable sorted array (copy-on-write) and readers binary search it without locking.
+ */
+@Component
+public class RoomCapacityIndex {
+    private static final Comparator<Room> BY_CAPACITY = Comparator
+            .comparing(Room::getCapacity)
+            .thenComparing(Room::getId);
+
+    @Autowired
+    private RoomRepository repository;
+
+    private final Map<Long, Room> roomsById = new ConcurrentHashMap<>();
+
+    private volatile Room[] roomsByCapacity = new Room[0];
+
+    @PostConstruct
+    public void load() {
+        this.roomsById.clear();
+
+        for (Room room : this.repository.findAll()) {
+            this.roomsById.put(room.getId(), room);
+        }
+
+        rebuild();
+    }
+
+    public void put(Room room) {
+        if (room.getId() == null) {
+            return;
+        }
+
+        this.roomsById.put(room.getId(), room);
+        rebuild();
+    }
+
+    public void remove(Long roomId) {
+        if (this.roomsById.remove(roomId) != null) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns every room whose capacity is at least {@code attendees}, smallest capacity first.
+     */
+    public Room[] withCapacityAtLeast(int attendees) {
+        Room[] rooms = this.roomsByCapacity;
+        int low = 0;
+        int high = rooms.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (rooms[middle].getCapacity() < attendees) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return Arrays.copyOfRange(rooms, low, rooms.length);
+    }
+
+    public Room[] all() {
+        return this.roomsByCapacity.clone();
+    }
+
+    private synchronized void rebuild() {
+        Room[] rooms = this.roomsById.values().toArray(new Room[0]);
+        Arrays.sort(rooms, BY_CAPACITY);
+
+        this.roomsByCapacity = rooms;
+    }
+}
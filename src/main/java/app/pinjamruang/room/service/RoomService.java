@@ -1,55 +1,308 @@
 package app.pinjamruang.room.service;
 
+import app.pinjamruang.json.FixedFormatDates;
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.persistence.KeysetPage;
+import app.pinjamruang.persistence.OptimisticRetry;
+import app.pinjamruang.persistence.PrimaryRead;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.persistence.StaleWriteException;
+import app.pinjamruang.persistence.Tagged;
+import app.pinjamruang.reservation.dto.RoomCalendarDto;
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+import app.pinjamruang.reservation.service.OccupancyGrid;
+import app.pinjamruang.reservation.service.RoomCalendar;
+import app.pinjamruang.reservation.service.RoomUtilization;
 import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.dto.RoomCacheStatsDto;
+import app.pinjamruang.room.dto.RoomUtilizationDto;
+import app.pinjamruang.room.exception.InvalidDateRangeException;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.repository.RoomRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class RoomService {
-    private static DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-
     @Autowired
     private RoomRepository repository;
 
+    @Autowired
+    private RoomCapacityIndex roomCapacityIndex;
+
+    @Autowired
+    private OccupancyGrid occupancyGrid;
+
+    @Autowired
+    private RoomCalendar roomCalendar;
+
+    @Autowired
+    private RoomUtilization roomUtilization;
+
+    @Autowired
+    private BookingMetrics bookingMetrics;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${pinjamruang.room.utilization.max-days:366}")
+    private long utilizationMaxDays = 366;
+
+    @Value("${pinjamruang.room.cache.maximum-size:1000}")
+    private long cacheMaximumSize = 1000;
+
+    @Value("${pinjamruang.room.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds = 300;
+
+    private Cache<Long, Room> roomCache = buildRoomCache();
+
+    @PostConstruct
+    public void initRoomCache() {
+        this.roomCache = buildRoomCache();
+    }
+
+    @Transactional(readOnly = true)
     public List<Room> getAllRooms() {
         return this.repository.findAll();
     }
 
+    /**
+     * Pages through the rooms, tagged with the rooms version read just before.
+     */
+    @Transactional(readOnly = true)
+    public Tagged<KeysetPage<Room>> getRooms(Long after, Integer limit) {
+        String tag = this.resourceVersions.tag(ResourceVersions.ROOMS);
+        int pageSize = KeysetPage.clampLimit(limit);
+        List<Room> rows = this.repository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, PageRequest.of(0, pageSize + 1));
+
+        return new Tagged<>(tag, KeysetPage.of(rows, pageSize, Room::getId));
+    }
+
+    public List<Long> getRoomIds() {
+        List<Long> roomIds = new ArrayList<>();
+
+        for (Room room : this.roomCapacityIndex.all()) {
+            roomIds.add(room.getId());
+        }
+
+        Collections.sort(roomIds);
+
+        return roomIds;
+    }
+
     public Room getRoomById(Long id) {
-        Room result = this.repository.getOne(id);
-        if (result == null) {
-            throw new ResourceNotFoundException(String.format("Can\'t found room with id %d", id));
+        return this.bookingMetrics.timed("room.lookup", () -> this.roomCache.get(id, this::loadRoom));
+    }
+
+    public List<Room> getAvailableRooms(LocalDateTime startDate, LocalDateTime endDate, int attendees) {
+        return this.bookingMetrics.timed("room.available", () -> findAvailableRooms(startDate, endDate, attendees));
+    }
+
+    private List<Room> findAvailableRooms(LocalDateTime startDate, LocalDateTime endDate, int attendees) {
+        List<Room> availableRooms = new ArrayList<>();
+
+        if (!startDate.isBefore(endDate) || !startDate.toLocalDate().equals(endDate.toLocalDate())) {
+            return availableRooms;
+        }
+
+        LocalTime startTime = startDate.toLocalTime();
+        LocalTime endTime = endDate.toLocalTime();
+
+        for (Room room : this.roomCapacityIndex.withCapacityAtLeast(attendees)) {
+            if (room.getOpenTime().isBefore(startTime)
+                    && room.getCloseTime().isAfter(endTime)
+                    && this.occupancyGrid.isFree(room.getId(), startDate, endDate, null)) {
+                availableRooms.add(room);
+            }
+        }
+
+        return availableRooms;
+    }
+
+    /**
+     * Returns the room's reservations and free gaps for the week containing {@code week}. Read from the
+     * primary: a week read from a lagging replica would stay cached after its invalidation.
+     */
+    @PrimaryRead
+    @Transactional(readOnly = true)
+    public RoomCalendarDto getCalendar(Long roomId, LocalDate week) {
+        Room room = getRoomById(roomId);
+
+        return this.bookingMetrics.timed("room.calendar", () -> this.roomCalendar.getWeek(room, week));
+    }
+
+    /**
+     * Returns the utilization of every room on every day from {@code from} to {@code to}, both inclusive,
+     * ordered by room and date. Days without reservations are included with zero totals.
+     */
+    public List<RoomUtilizationDto> getUtilization(LocalDate from, LocalDate to) throws InvalidDateRangeException {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+
+        if (days < 1 || days > this.utilizationMaxDays) {
+            throw new InvalidDateRangeException(String.format(
+                    "Utilization range must cover between 1 and %d days.", this.utilizationMaxDays));
         }
-        return result;
+
+        return this.bookingMetrics.timed("room.utilization", () -> {
+            Room[] rooms = this.roomCapacityIndex.all();
+            Arrays.sort(rooms, Comparator.comparing(Room::getId));
+            List<RoomUtilizationDto> utilization = new ArrayList<>((int) (rooms.length * days));
+
+            for (Room room : rooms) {
+                for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                    utilization.add(utilizationOf(room, date));
+                }
+            }
+
+            return utilization;
+        });
+    }
+
+    private RoomUtilizationDto utilizationOf(Room room, LocalDate date) {
+        RoomDayUtilization day = this.roomUtilization.get(room.getId(), date);
+        long openMinutes = ChronoUnit.MINUTES.between(room.getOpenTime(), room.getCloseTime());
+
+        if (day == null || day.getBookedMinutes() <= 0) {
+            return new RoomUtilizationDto(room.getId(), date, 0, 0L, openMinutes, 0.0, 0.0);
+        }
+
+        return new RoomUtilizationDto(
+                room.getId(),
+                date,
+                day.getReservations(),
+                day.getBookedMinutes(),
+                openMinutes,
+                openMinutes > 0 ? (double) day.getBookedMinutes() / openMinutes : 0.0,
+                room.getCapacity() > 0 ? (double) day.getAttendeeMinutes() / (day.getBookedMinutes() * room.getCapacity()) : 0.0
+        );
     }
 
     public Room createRoom(CreateRoomDto roomDto) {
         Room newRoom = createRoomFromDto(roomDto);
 
-        return this.repository.save(newRoom);
+        Room savedRoom = saveAndBump(newRoom);
+        this.roomCapacityIndex.put(savedRoom);
+
+        return savedRoom;
     }
 
-    public Room updateRoom(Long roomId, CreateRoomDto roomDto) {
-        Room room = getRoomById(roomId);
+    /**
+     * Updates the room, applying a DTO that carries the version the client read at most once; see
+     * {@link app.pinjamruang.reservation.service.ReservationService#updateReservation}.
+     */
+    public Room updateRoom(Long roomId, CreateRoomDto roomDto) throws StaleWriteException {
+        return roomDto.getVersion() != null
+                ? this.optimisticRetry.runOnce(() -> saveRoomUpdate(roomId, roomDto))
+                : this.optimisticRetry.run(() -> saveRoomUpdate(roomId, roomDto));
+    }
+
+    private Room saveRoomUpdate(Long roomId, CreateRoomDto roomDto) {
+        Room room = loadRoom(roomId);
+
+        if (roomDto.getVersion() != null && !roomDto.getVersion().equals(room.getVersion())) {
+            throw new StaleWriteException(String.format(
+                    "Room %d is at version %d, not %d.", roomId, room.getVersion(), roomDto.getVersion()));
+        }
+
         updateRoomFromDto(room, roomDto);
 
-        return this.repository.save(room);
+        Room savedRoom = saveAndBump(room);
+        this.roomCache.invalidate(roomId);
+        this.roomCalendar.invalidateRoom(roomId);
+        this.roomCapacityIndex.put(savedRoom);
+
+        return savedRoom;
     }
 
-    public void deleteRoom(Long roomId) {
-        getRoomById(roomId);
+    /**
+     * Deletes the room as it was last read; a delete that loses to a concurrent update is retried on the fresh
+     * row.
+     */
+    public void deleteRoom(Long roomId) throws StaleWriteException {
+        this.optimisticRetry.run(() -> {
+            Room room = loadRoom(roomId);
+
+            this.transactionTemplate.execute(status -> {
+                if (this.repository.deleteByIdAndVersion(roomId, room.getVersion()) == 0) {
+                    throw new ObjectOptimisticLockingFailureException(Room.class, roomId);
+                }
+
+                this.resourceVersions.bump(ResourceVersions.ROOMS);
+
+                return null;
+            });
+
+            return null;
+        });
+        this.roomCache.invalidate(roomId);
+        this.roomCalendar.invalidateRoom(roomId);
+        this.roomCapacityIndex.remove(roomId);
+        this.bookingMetrics.untrackRoom(roomId);
+    }
+
+    private Room saveAndBump(Room room) {
+        return this.transactionTemplate.execute(status -> {
+            Room savedRoom = this.repository.save(room);
+            this.resourceVersions.bump(ResourceVersions.ROOMS);
+
+            return savedRoom;
+        });
+    }
+
+    public RoomCacheStatsDto getRoomCacheStats() {
+        CacheStats stats = this.roomCache.stats();
+
+        return new RoomCacheStatsDto(
+                this.roomCache.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount()
+        );
+    }
+
+    private Cache<Long, Room> buildRoomCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(this.cacheMaximumSize)
+                .expireAfterWrite(this.cacheTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
 
-        this.repository.deleteById(roomId);
+    private Room loadRoom(Long id) {
+        return this.repository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(String.format("Can\'t found room with id %d", id)));
     }
 
-    private Room createRoomFromDto(CreateRoomDto dto) {
+    Room createRoomFromDto(CreateRoomDto dto) {
         Room room = new Room();
         updateRoomFromDto(room, dto);
 
@@ -59,7 +312,7 @@ public class RoomService {
     private void updateRoomFromDto(Room room, CreateRoomDto dto) {
         room.setName(dto.getName());
         room.setCapacity(dto.getCapacity());
-        room.setOpenTime(LocalTime.parse(dto.getOpenTime(), formatter));
-        room.setCloseTime(LocalTime.parse(dto.getCloseTime(), formatter));
+        room.setOpenTime(FixedFormatDates.parseTime(dto.getOpenTime()));
+        room.setCloseTime(FixedFormatDates.parseTime(dto.getCloseTime()));
     }
 }
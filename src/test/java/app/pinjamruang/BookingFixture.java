@@ -0,0 +1,68 @@
+package app.pinjamruang;
+
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.persistence.OptimisticRetry;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.reservation.service.BookingCoordinator;
+import app.pinjamruang.reservation.service.OccupancyGrid;
+import app.pinjamruang.reservation.service.ReservationIndex;
+import app.pinjamruang.reservation.service.RoomCalendar;
+import app.pinjamruang.reservation.service.RoomUtilization;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+/**
+ * The indexes and infrastructure beans the booking services share, set up for unit tests: real indexes and
+ * coordinator behind spies, mocked utilization and resource versions, and a transaction template that runs
+ * callbacks without a database.
+ */
+public class BookingFixture {
+    public final ReservationIndex reservationIndex = spy(new ReservationIndex());
+    public final OccupancyGrid occupancyGrid = spy(new OccupancyGrid());
+    public final RoomCalendar roomCalendar = spy(new RoomCalendar());
+    public final RoomUtilization roomUtilization = mock(RoomUtilization.class);
+    public final BookingCoordinator bookingCoordinator = spy(new BookingCoordinator());
+    public final BookingMetrics bookingMetrics = spy(new BookingMetrics());
+    public final ResourceVersions resourceVersions = mock(ResourceVersions.class);
+    public final TransactionTemplate transactionTemplate = spy(new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    public final OptimisticRetry optimisticRetry = spy(new OptimisticRetry());
+
+    public BookingFixture() {
+        ReflectionTestUtils.setField(this.occupancyGrid, "reservationIndex", this.reservationIndex);
+    }
+
+    /**
+     * Sets the fixture's beans on every field of {@code subject} still left empty, so {@code @InjectMocks}
+     * can wire the mocks a test declares itself first.
+     */
+    public <T> T wire(T subject) {
+        List<Object> beans = Arrays.asList(this.reservationIndex, this.occupancyGrid, this.roomCalendar,
+                this.roomUtilization, this.bookingCoordinator, this.bookingMetrics, this.resourceVersions,
+                this.transactionTemplate, this.optimisticRetry);
+
+        for (Class<?> type = subject.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()
+                        || ReflectionTestUtils.getField(subject, field.getName()) != null) {
+                    continue;
+                }
+
+                beans.stream()
+                        .filter(field.getType()::isInstance)
+                        .findFirst()
+                        .ifPresent(bean -> ReflectionTestUtils.setField(subject, field.getName(), bean));
+            }
+        }
+
+        return subject;
+    }
+}
@@ -2,15 +2,66 @@ package app.pinjamruang;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
+@AutoConfigureMockMvc
 public class PinjamruangApplicationTests {
+    @Autowired
+    MockMvc mvc;
 
     @Test
     public void contextLoads() {
     }
 
+    @Test
+    public void prometheusEndpoint_exposesBookingMetrics() throws Exception {
+        mvc.perform(post("/rooms/")
+                .content("{\"name\":\"Room 1\",\"capacity\":10,\"openTime\":\"09:00\",\"closeTime\":\"18:00\"}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(get("/rooms/available").param("start", "2019-06-12 10:00").param("end", "2019-06-12 12:00"))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("pinjamruang_booking_operation_seconds_count")));
+    }
+
+    @Test
+    public void roomEvents_streamReservationChanges() throws Exception {
+        MvcResult events = mvc.perform(get("/rooms/events")).andReturn();
+        String room = mvc.perform(post("/rooms/")
+                .content("{\"name\":\"Room 2\",\"capacity\":10,\"openTime\":\"08:00\",\"closeTime\":\"18:00\"}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        String roomId = room.replaceAll(".*\"id\":(\\d+).*", "$1");
+
+        mvc.perform(post("/reservations/")
+                .content("{\"startDate\":\"2019-06-13 10:00\",\"endDate\":\"2019-06-13 11:00\",\"attendees\":5,\"agenda\":\"Standup\",\"roomId\":" + roomId + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!events.getResponse().getContentAsString().contains("Standup") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(events.getResponse().getContentAsString(), containsString("event:created"));
+        assertThat(events.getResponse().getContentAsString(), containsString("\"agenda\":\"Standup\""));
+    }
 }
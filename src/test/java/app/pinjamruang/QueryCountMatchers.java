@@ -0,0 +1,28 @@
+package app.pinjamruang;
+
+import app.pinjamruang.persistence.SqlBudgetFilter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Asserts the SQL statement count {@link SqlBudgetFilter} reports for a request. Needs the filter's header
+ * enabled, as the dev profile does.
+ */
+public class QueryCountMatchers {
+    public static ResultMatcher queryCount(int expected) {
+        return result -> {
+            MockHttpServletRequest request = result.getRequest();
+            String count = result.getResponse().getHeader(SqlBudgetFilter.QUERY_COUNT_HEADER);
+
+            assertNotNull(SqlBudgetFilter.QUERY_COUNT_HEADER + " header missing, is the dev profile active?", count);
+            assertEquals(
+                    String.format("SQL statements issued by %s %s", request.getMethod(), request.getRequestURI()),
+                    expected,
+                    Integer.parseInt(count)
+            );
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package app.pinjamruang;
 
+import app.pinjamruang.persistence.ResourceVersion;
+import app.pinjamruang.persistence.ResourceVersionRepository;
 import app.pinjamruang.reservation.dto.CreateReservationDto;
 import app.pinjamruang.reservation.model.Reservation;
 import app.pinjamruang.room.dto.CreateRoomDto;
@@ -8,6 +10,14 @@ import app.pinjamruang.room.model.Room;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
 
 public class TestUtils {
     public static final DateTimeFormatter DTO_DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
@@ -49,4 +59,21 @@ public class TestUtils {
                 "18:00"
         );
     }
+
+    /**
+     * Makes a mocked {@link ResourceVersionRepository} keep its counters in memory, for tests without a database.
+     */
+    public static void stubResourceVersions(ResourceVersionRepository repository) {
+        Map<String, Long> versions = new ConcurrentHashMap<>();
+
+        when(repository.increment(any(), anyInt())).thenAnswer(invocation -> {
+            Collection<String> collections = invocation.getArgument(0);
+            collections.forEach(collection -> versions.merge(collection, 1L, Long::sum));
+
+            return collections.size();
+        });
+        when(repository.findByCollectionIn(any())).thenAnswer(invocation -> versions.entrySet().stream()
+                .map(version -> new ResourceVersion(version.getKey(), 0, version.getValue()))
+                .collect(Collectors.toList()));
+    }
 }
@@ -0,0 +1,85 @@
+package app.pinjamruang.csv;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CsvReaderTests {
+    @Test
+    public void next_quotedFields_commasQuotesAndLineBreaksKept() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+                "a,b,c\r\n\"x, y\",\"say \"\"hi\"\"\",\"two\nlines\"\n\nlast,,\n"));
+
+        assertEquals(Arrays.asList("a", "b", "c"), reader.next());
+        assertEquals(1L, reader.getLineNumber());
+        assertEquals(Arrays.asList("x, y", "say \"hi\"", "two\nlines"), reader.next());
+        assertEquals(2L, reader.getLineNumber());
+        assertEquals(Arrays.asList("last", "", ""), reader.next());
+        assertEquals(5L, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void next_noTrailingLineBreak_lastRecordRead() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b\r1,2"));
+
+        assertEquals(Arrays.asList("a", "b"), reader.next());
+        assertEquals(Arrays.asList("1", "2"), reader.next());
+        assertEquals(2L, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void next_unterminatedQuote_rejectedAndFollowingLinesRead() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("h\r\na,\"b\r\nc,d\n"));
+
+        assertEquals(Arrays.asList("h"), reader.next());
+
+        try {
+            reader.next();
+            fail("Expected a MalformedRecordException.");
+        } catch (MalformedRecordException e) {
+            assertEquals(2L, e.getLineNumber());
+            assertEquals("a,\"b", e.getText());
+        }
+
+        assertEquals(Arrays.asList("c", "d"), reader.next());
+        assertEquals(3L, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void next_recordTooLong_rejectedAndFollowingLinesRead() throws IOException {
+        char[] field = new char[CsvReader.MAX_RECORD_LENGTH + 1];
+        Arrays.fill(field, 'x');
+        CsvReader reader = new CsvReader(new StringReader(new String(field) + "\r\nc,d"));
+
+        try {
+            reader.next();
+            fail("Expected a MalformedRecordException.");
+        } catch (MalformedRecordException e) {
+            assertEquals(1L, e.getLineNumber());
+        }
+
+        assertEquals(Arrays.asList("c", "d"), reader.next());
+        assertEquals(2L, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void write_thenRead_sameFields() throws IOException {
+        List<String> fields = Arrays.asList("plain", "with, comma", "with \"quote\"", "with\nline", "");
+        StringWriter output = new StringWriter();
+
+        new CsvWriter(output).write(fields);
+
+        assertEquals("plain,\"with, comma\",\"with \"\"quote\"\"\",\"with\nline\",\n", output.toString());
+        assertEquals(fields, new CsvReader(new StringReader(output.toString())).next());
+    }
+}
@@ -0,0 +1,73 @@
+package app.pinjamruang.json;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedFormatDatesTests {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static String printDateTime(LocalDateTime dateTime) {
+        char[] buffer = new char[FixedFormatDates.MAX_DATE_TIME_LENGTH];
+
+        return new String(buffer, 0, FixedFormatDates.printDateTime(dateTime, buffer));
+    }
+
+    private static String printTime(LocalTime time) {
+        char[] buffer = new char[FixedFormatDates.MAX_TIME_LENGTH];
+
+        return new String(buffer, 0, FixedFormatDates.printTime(time, buffer));
+    }
+
+    @Test
+    public void parseDateTime_sameAsFormatter() {
+        for (String text : new String[]{"2019-06-12 10:00", "2020-02-29 23:59", "0001-01-01 00:00", "2019-02-30 10:00", "2019-06-12 24:00"}) {
+            assertEquals(LocalDateTime.parse(text, DATE_TIME), FixedFormatDates.parseDateTime(text));
+        }
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseDateTime_isoFormat_throwsDateTimeParseException() {
+        FixedFormatDates.parseDateTime("2019-06-12T10:00");
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseDateTime_monthOutOfRange_throwsDateTimeParseException() {
+        FixedFormatDates.parseDateTime("2019-13-01 10:00");
+    }
+
+    @Test
+    public void parseTime_sameAsFormatter() {
+        assertEquals(LocalTime.of(9, 0), FixedFormatDates.parseTime("09:00"));
+        assertEquals(LocalTime.of(23, 59), FixedFormatDates.parseTime("23:59"));
+    }
+
+    @Test(expected = DateTimeParseException.class)
+    public void parseTime_notDigits_throwsDateTimeParseException() {
+        FixedFormatDates.parseTime("9a:00");
+    }
+
+    @Test
+    public void print_sameAsIsoFormatters() {
+        Random random = new Random(42);
+        int[] nanos = {0, 100_000_000, 120_000_000, 123_000_000, 123_400_000, 123_456_000, 123_456_789, 1};
+
+        for (int i = 0; i < 1000; i++) {
+            LocalDateTime dateTime = LocalDateTime.of(1 + random.nextInt(9999), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60), nanos[random.nextInt(nanos.length)]);
+
+            assertEquals(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime), printDateTime(dateTime));
+            assertEquals(DateTimeFormatter.ISO_LOCAL_TIME.format(dateTime.toLocalTime()), printTime(dateTime.toLocalTime()));
+        }
+
+        assertEquals("+10000-01-01T00:00:00", printDateTime(LocalDateTime.of(10000, 1, 1, 0, 0)));
+        assertEquals(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.MAX), printDateTime(LocalDateTime.MAX));
+        assertEquals(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.MIN), printDateTime(LocalDateTime.MIN));
+    }
+}
@@ -0,0 +1,90 @@
+package app.pinjamruang.json;
+
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static app.pinjamruang.TestUtils.createDummyReservation;
+import static app.pinjamruang.TestUtils.createDummyRoom;
+import static org.junit.Assert.*;
+
+public class PinjamruangJsonModuleTests {
+    private final ObjectMapper reflective = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .modulesToInstall(new ParameterNamesModule())
+            .build();
+
+    private final ObjectMapper module = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .modulesToInstall(new ParameterNamesModule(), new PinjamruangJsonModule())
+            .build();
+
+    private Reservation reservation() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 3L);
+        ReflectionTestUtils.setField(room, "createdAt", LocalDateTime.of(2019, 6, 1, 8, 30, 15, 123_000_000));
+        ReflectionTestUtils.setField(room, "version", 2L);
+        room.setCloseTime(LocalTime.of(17, 45, 30));
+
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 7L);
+        ReflectionTestUtils.setField(reservation, "createdAt", LocalDateTime.of(2019, 6, 2, 9, 0, 0, 456_789));
+        reservation.setAgenda("Quarterly \"review\"\n");
+
+        return reservation;
+    }
+
+    @Test
+    public void serialize_sameJsonAsBeanSerializer() throws Exception {
+        Reservation reservation = reservation();
+
+        assertEquals(reflective.readTree(reflective.writeValueAsString(reservation)),
+                module.readTree(module.writeValueAsString(reservation)));
+        assertEquals(reflective.writeValueAsString(reservation.getRoom()), module.writeValueAsString(reservation.getRoom()));
+    }
+
+    @Test
+    public void serialize_nullFields_writtenAsNull() throws Exception {
+        Reservation reservation = new Reservation();
+
+        assertEquals(reflective.readTree(reflective.writeValueAsString(reservation)),
+                module.readTree(module.writeValueAsString(reservation)));
+    }
+
+    @Test
+    public void deserializeReservationDto_sameAsBeanDeserializer() throws Exception {
+        String json = "{\"startDate\":\"2019-06-12 10:00\",\"endDate\":\"2019-06-12 12:00\",\"attendees\":\"10\","
+                + "\"agenda\":\"Testing\",\"roomId\":1,\"version\":4,\"unknown\":{\"nested\":[1,2]}}";
+
+        CreateReservationDto expected = reflective.readValue(json, CreateReservationDto.class);
+        CreateReservationDto dto = module.readValue(json, CreateReservationDto.class);
+
+        assertEquals(expected.getStartDate(), dto.getStartDate());
+        assertEquals(expected.getEndDate(), dto.getEndDate());
+        assertEquals(Integer.valueOf(10), dto.getAttendees());
+        assertEquals(expected.getAgenda(), dto.getAgenda());
+        assertEquals(Long.valueOf(1L), dto.getRoomId());
+        assertEquals(Long.valueOf(4L), dto.getVersion());
+    }
+
+    @Test
+    public void deserializeRoomDto_nullsAndMissingFields() throws Exception {
+        CreateRoomDto dto = module.readValue("{\"name\":null,\"capacity\":10,\"openTime\":\"09:00\"}", CreateRoomDto.class);
+
+        assertNull(dto.getName());
+        assertEquals(Integer.valueOf(10), dto.getCapacity());
+        assertEquals("09:00", dto.getOpenTime());
+        assertNull(dto.getCloseTime());
+        assertNull(dto.getVersion());
+    }
+}
@@ -0,0 +1,55 @@
+package app.pinjamruang.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BookingMetricsTests {
+    private MeterRegistry registry;
+
+    private BookingMetrics metrics;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new BookingMetrics(registry);
+    }
+
+    @Test
+    public void timed_recordsEvenWhenActionThrows() {
+        try {
+            metrics.timed("reservation.create", () -> {
+                throw new IllegalStateException();
+            });
+            fail("Expected the action's exception");
+        } catch (IllegalStateException e) {
+            assertEquals(1L, registry.get(BookingMetrics.OPERATION_TIMER).tag("operation", "reservation.create").timer().count());
+        }
+    }
+
+    @Test
+    public void trackRoom_registersOneGaugePerRoom() {
+        AtomicInteger reservations = new AtomicInteger(3);
+
+        metrics.trackRoom(1L, reservations, AtomicInteger::get);
+        metrics.trackRoom(1L, reservations, AtomicInteger::get);
+        reservations.incrementAndGet();
+
+        assertEquals(1, registry.find(BookingMetrics.ROOM_RESERVATIONS_GAUGE).gauges().size());
+        assertEquals(4.0, registry.get(BookingMetrics.ROOM_RESERVATIONS_GAUGE).tag("roomId", "1").gauge().value(), 0.0);
+    }
+
+    @Test
+    public void untrackRoom_removesGauge() {
+        metrics.trackRoom(1L, new AtomicInteger(), AtomicInteger::get);
+
+        metrics.untrackRoom(1L);
+
+        assertNull(registry.find(BookingMetrics.ROOM_RESERVATIONS_GAUGE).gauge());
+    }
+}
@@ -0,0 +1,67 @@
+package app.pinjamruang.persistence;
+
+import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OptimisticRetryTests {
+    private final OptimisticRetry retry = new OptimisticRetry();
+
+    private String failTimes(AtomicInteger attempts, int failures) {
+        if (attempts.incrementAndGet() <= failures) {
+            throw new OptimisticLockingFailureException("stale");
+        }
+
+        return "saved";
+    }
+
+    @Test
+    public void run_conflictThenSuccess_retries() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("saved", retry.run(() -> failTimes(attempts, 2)));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void run_conflictOnEveryAttempt_givesUpWithStaleWriteException() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            retry.run(() -> failTimes(attempts, Integer.MAX_VALUE));
+            fail("Expected the retry to give up");
+        } catch (StaleWriteException e) {
+            assertEquals(3, attempts.get());
+            assertTrue(e.getCause() instanceof OptimisticLockingFailureException);
+        }
+    }
+
+    @Test
+    public void runOnce_conflict_notRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            retry.runOnce(() -> failTimes(attempts, 1));
+            fail("Expected a StaleWriteException");
+        } catch (StaleWriteException e) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void backoffMillis_growsExponentiallyWithJitter() {
+        ReflectionTestUtils.setField(retry, "backoffMillis", 100L);
+
+        for (int i = 0; i < 100; i++) {
+            long first = retry.backoffMillis(1);
+            long third = retry.backoffMillis(3);
+
+            assertTrue(first >= 50 && first <= 100);
+            assertTrue(third >= 200 && third <= 400);
+        }
+    }
+}
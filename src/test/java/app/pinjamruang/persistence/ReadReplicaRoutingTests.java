@@ -0,0 +1,187 @@
+package app.pinjamruang.persistence;
+
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.service.RoomService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static app.pinjamruang.TestUtils.createDummyRoomDto;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the application on a primary and two replica H2 databases. The replicas get the primary's schema but
+ * none of its rows, so every row a request returns shows which database it was read from.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTests.PRIMARY_URL,
+        "pinjamruang.datasource.replicas[0].url=" + ReadReplicaRoutingTests.REPLICA_URL + "0;DB_CLOSE_DELAY=-1",
+        "pinjamruang.datasource.replicas[1].url=" + ReadReplicaRoutingTests.REPLICA_URL + "1;DB_CLOSE_DELAY=-1"
+})
+public class ReadReplicaRoutingTests {
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate primary = jdbc(PRIMARY_URL);
+
+    private final List<JdbcTemplate> replicas = Arrays.asList(
+            jdbc(REPLICA_URL + "0;DB_CLOSE_DELAY=-1"),
+            jdbc(REPLICA_URL + "1;DB_CLOSE_DELAY=-1")
+    );
+
+    private static JdbcTemplate jdbc(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", "sa"));
+    }
+
+    @Before
+    public void setUp() {
+        List<String> schema = primary.queryForList("script nodata", String.class);
+
+        for (int i = 0; i < replicas.size(); i++) {
+            JdbcTemplate replica = replicas.get(i);
+            replica.execute("drop all objects");
+            schema.forEach(replica::execute);
+            replica.update("insert into room (id, name, capacity, open_time, close_time, version) values (?, ?, 10, '09:00:00', '18:00:00', 0)",
+                    1000 + i, "replica-" + i);
+        }
+    }
+
+    private String postJson(String path, Object body) throws Exception {
+        return mvc.perform(post(path)
+                .content(objectMapper.writeValueAsString(body))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private Long createRoom() throws Exception {
+        return objectMapper.readValue(postJson("/rooms/", createDummyRoomDto()), Room.class).getId();
+    }
+
+    private CreateReservationDto reservationDto(Long roomId) {
+        return new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", roomId);
+    }
+
+    private String onlyRoomName() {
+        List<Room> rooms = roomService.getAllRooms();
+        assertEquals(1, rooms.size());
+
+        return rooms.get(0).getName();
+    }
+
+    @Test
+    public void readOnlyServiceMethods_alternateBetweenReplicas() throws Exception {
+        createRoom();
+
+        assertEquals(
+                new HashSet<>(Arrays.asList("replica-0", "replica-1")),
+                new HashSet<>(Arrays.asList(onlyRoomName(), onlyRoomName()))
+        );
+    }
+
+    @Test
+    public void eTaggedReads_tagAndRowsFromTheSameReplica() throws Exception {
+        createRoom();
+
+        for (int i = 0; i < replicas.size(); i++) {
+            replicas.get(i).update("insert into resource_version_stripe (collection, stripe, version) values ('rooms', 0, ?)", 10 + i);
+        }
+
+        Map<String, String> roomNamesByTag = new HashMap<>();
+
+        for (int i = 0; i < replicas.size(); i++) {
+            MockHttpServletResponse response = mvc.perform(get("/rooms/"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1))
+                    .andReturn().getResponse();
+            Room[] rooms = objectMapper.readValue(response.getContentAsString(), Room[].class);
+
+            roomNamesByTag.put(response.getHeader(HttpHeaders.ETAG), rooms[0].getName());
+        }
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("\"10\"", "replica-0");
+        expected.put("\"11\"", "replica-1");
+        assertEquals(expected, roomNamesByTag);
+    }
+
+    @Test
+    public void writes_goToPrimaryAndReadTheirOwnRows() throws Exception {
+        Long roomId = createRoom();
+        Long reservationId = objectMapper.readValue(postJson("/reservations/", reservationDto(roomId)), Reservation.class).getId();
+
+        mvc.perform(put("/reservations/" + reservationId)
+                .content(objectMapper.writeValueAsString(reservationDto(roomId)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        assertEquals(Integer.valueOf(1), primary.queryForObject("select count(*) from reservation where id = ?", Integer.class, reservationId));
+
+        for (JdbcTemplate replica : replicas) {
+            assertEquals(Integer.valueOf(0), replica.queryForObject("select count(*) from reservation", Integer.class));
+        }
+
+        mvc.perform(get("/rooms/" + roomId + "/calendar").param("week", "2019-06-12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.days[2].reservations[0].reservationId").value(reservationId));
+    }
+
+    @Test
+    public void openSession_writeAfterReplicaRead_goesToPrimary() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+
+        try {
+            assertTrue(roomService.getAllRooms().get(0).getName().startsWith("replica-"));
+
+            Room room = roomService.createRoom(createDummyRoomDto());
+
+            assertEquals(Integer.valueOf(1), primary.queryForObject("select count(*) from room where id = ?", Integer.class, room.getId()));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package app.pinjamruang.persistence;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(ResourceVersions.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ResourceVersionsTests {
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Autowired
+    ResourceVersionRepository repository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void tag_bumpedByAnotherInstance_changesHere() {
+        ResourceVersions otherInstance = new ResourceVersions();
+        ReflectionTestUtils.setField(otherInstance, "repository", repository);
+        String tag = resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS);
+
+        otherInstance.bump(ResourceVersions.ROOMS);
+
+        assertNotEquals(tag, resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+        assertEquals(otherInstance.tag(ResourceVersions.ROOMS), resourceVersions.tag(ResourceVersions.ROOMS));
+    }
+
+    @Test
+    public void bump_writeRolledBack_tagUnchanged() {
+        String tag = resourceVersions.tag(ResourceVersions.RESERVATIONS);
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            resourceVersions.bump(ResourceVersions.RESERVATIONS);
+            status.setRollbackOnly();
+
+            return null;
+        });
+
+        assertEquals(tag, resourceVersions.tag(ResourceVersions.RESERVATIONS));
+    }
+
+    @Test
+    public void bump_fromSeveralThreads_summedIntoOneVersion() throws InterruptedException {
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 8; i++) {
+            writers.execute(() -> resourceVersions.bump(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+        }
+
+        writers.shutdown();
+        writers.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals("8.8", resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+        assertEquals(2 * 16, repository.count());
+    }
+
+    @Test
+    public void cachedTag_writeCommittedHere_dropped() {
+        String tag = resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS);
+
+        assertEquals(tag, resourceVersions.cachedTag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            resourceVersions.bump(ResourceVersions.ROOMS);
+
+            return null;
+        });
+
+        assertNull(resourceVersions.cachedTag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+        assertEquals("0", resourceVersions.cachedTag(ResourceVersions.RESERVATIONS));
+    }
+
+    @Test
+    public void cachedTag_bumpedByAnotherInstance_keptUntilExpired() throws InterruptedException {
+        ResourceVersions otherInstance = new ResourceVersions();
+        ReflectionTestUtils.setField(otherInstance, "repository", repository);
+        ReflectionTestUtils.setField(resourceVersions, "cacheMillis", 100L);
+        String tag = resourceVersions.tag(ResourceVersions.ROOMS);
+
+        otherInstance.bump(ResourceVersions.ROOMS);
+
+        assertEquals(tag, resourceVersions.cachedTag(ResourceVersions.ROOMS));
+        Thread.sleep(150);
+        assertNull(resourceVersions.cachedTag(ResourceVersions.ROOMS));
+    }
+}
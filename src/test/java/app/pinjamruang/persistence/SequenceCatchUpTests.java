@@ -0,0 +1,53 @@
+package app.pinjamruang.persistence;
+
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.repository.RoomRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static app.pinjamruang.TestUtils.createDummyRoom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(SequenceCatchUp.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class SequenceCatchUpTests {
+    @Autowired
+    SequenceCatchUp sequenceCatchUp;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void catchUp_existingIdsAboveSequence_restartsAboveMaxId() {
+        jdbcTemplate.update("insert into room (id, name, capacity, open_time, close_time) values (1000, 'Legacy', 10, '09:00:00', '18:00:00')");
+
+        sequenceCatchUp.catchUp();
+
+        Room room = roomRepository.save(createDummyRoom());
+
+        assertTrue(room.getId() > 1000L);
+    }
+
+    @Test
+    public void save_manyRooms_consecutiveIdsFromOneBlock() {
+        Room first = roomRepository.save(createDummyRoom());
+        Room second = roomRepository.save(createDummyRoom());
+
+        assertEquals(first.getId() + 1, (long) second.getId());
+    }
+}
@@ -0,0 +1,212 @@
+package app.pinjamruang.reservation.controller;
+
+import app.pinjamruang.reservation.dto.CreateRecurringReservationDto;
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static app.pinjamruang.QueryCountMatchers.queryCount;
+import static app.pinjamruang.TestUtils.createDummyRoomDto;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the number of SQL statements each reservation endpoint issues against a real database, so a lazy
+ * {@code room} association loaded once per row shows up as a failing count. An allocation size of one makes
+ * every insert fetch its id, so counts do not depend on where the id pool happens to be.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycount;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.pinjamruang.id.allocation-size=1"
+})
+public class ReservationControllerQueryCountTests {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Long createRoom() throws Exception {
+        String body = mvc.perform(post("/rooms/")
+                .content(objectMapper.writeValueAsString(createDummyRoomDto()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return objectMapper.readValue(body, Room.class).getId();
+    }
+
+    private Long createReservation(Long roomId, String startDate, String endDate) throws Exception {
+        String body = mvc.perform(post("/reservations/")
+                .content(objectMapper.writeValueAsString(new CreateReservationDto(startDate, endDate, 10, "Testing", roomId)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private Long createSeries(Long roomId) throws Exception {
+        CreateRecurringReservationDto dto = new CreateRecurringReservationDto(
+                "2019-06-12 10:00", "2019-06-12 11:00", 10, "Testing", roomId, RecurrenceFrequency.WEEKLY, 1, null, 10);
+
+        String body = mvc.perform(post("/reservations/recurring")
+                .content(objectMapper.writeValueAsString(dto))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    @Test
+    public void getAllReservations_severalRooms_roomsFetchedWithReservations() throws Exception {
+        Long firstRoomId = createRoom();
+        Long secondRoomId = createRoom();
+        createReservation(firstRoomId, "2019-06-12 10:00", "2019-06-12 11:00");
+        createReservation(secondRoomId, "2019-06-12 10:00", "2019-06-12 11:00");
+        createReservation(secondRoomId, "2019-06-12 12:00", "2019-06-12 13:00");
+
+        mvc.perform(get("/reservations/"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(2));
+    }
+
+    @Test
+    public void getReservationById_roomFetchedWithReservation() throws Exception {
+        Long reservationId = createReservation(createRoom(), "2019-06-12 10:00", "2019-06-12 11:00");
+
+        mvc.perform(get("/reservations/{reservationId}", reservationId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(2));
+    }
+
+    @Test
+    public void getReservationById_currentETag_servedFromMemory() throws Exception {
+        Long reservationId = createReservation(createRoom(), "2019-06-12 10:00", "2019-06-12 11:00");
+        String etag = mvc.perform(get("/reservations/{reservationId}", reservationId))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/reservations/{reservationId}", reservationId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(queryCount(0));
+    }
+
+    @Test
+    public void getAllReservations_filteredByRoomWithCurrentETag_servedFromMemory() throws Exception {
+        Long roomId = createRoom();
+        createReservation(roomId, "2019-06-12 10:00", "2019-06-12 11:00");
+        String etag = mvc.perform(get("/reservations/").param("roomId", String.valueOf(roomId)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/reservations/").param("roomId", String.valueOf(roomId)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(queryCount(0));
+    }
+
+    @Test
+    public void getOccupancy_servedFromMemory() throws Exception {
+        Long roomId = createRoom();
+        createReservation(roomId, "2019-06-12 10:00", "2019-06-12 11:00");
+
+        mvc.perform(get("/reservations/occupancy").param("date", "2019-06-12").param("roomId", String.valueOf(roomId)))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(0));
+    }
+
+    @Test
+    public void createReservation_roomLookupIdAndInsert() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(post("/reservations/")
+                .content(objectMapper.writeValueAsString(new CreateReservationDto("2019-06-12 10:00", "2019-06-12 11:00", 10, "Testing", roomId)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(5));
+    }
+
+    @Test
+    public void createReservations_batchOfThree_insertsBatched() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(post("/reservations/batch")
+                .content(objectMapper.writeValueAsString(Arrays.asList(
+                        new CreateReservationDto("2019-06-12 10:00", "2019-06-12 11:00", 10, "Testing", roomId),
+                        new CreateReservationDto("2019-06-12 11:00", "2019-06-12 12:00", 10, "Testing", roomId),
+                        new CreateReservationDto("2019-06-12 12:00", "2019-06-12 13:00", 10, "Testing", roomId)
+                )))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(7));
+    }
+
+    @Test
+    public void updateReservation_selectAndUpdate() throws Exception {
+        Long roomId = createRoom();
+        Long reservationId = createReservation(roomId, "2019-06-12 10:00", "2019-06-12 11:00");
+
+        mvc.perform(put("/reservations/{reservationId}", reservationId)
+                .content(objectMapper.writeValueAsString(new CreateReservationDto("2019-06-12 14:00", "2019-06-12 15:00", 10, "Testing", roomId)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(3));
+    }
+
+    @Test
+    public void deleteReservation_selectAndDelete() throws Exception {
+        Long reservationId = createReservation(createRoom(), "2019-06-12 10:00", "2019-06-12 11:00");
+
+        mvc.perform(delete("/reservations/{reservationId}", reservationId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(5));
+    }
+
+    @Test
+    public void createRecurringReservation_roomLookupIdAndInserts() throws Exception {
+        Long roomId = createRoom();
+        createReservation(roomId, "2019-06-13 10:00", "2019-06-13 11:00");
+
+        mvc.perform(post("/reservations/recurring")
+                .content(objectMapper.writeValueAsString(new CreateRecurringReservationDto(
+                        "2019-06-12 10:00", "2019-06-12 11:00", 10, "Testing", roomId, RecurrenceFrequency.WEEKLY, 1, null, 10)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(3));
+    }
+
+    @Test
+    public void getRecurringReservationById_roomAndExceptionsFetchedWithSeries() throws Exception {
+        Long seriesId = createSeries(createRoom());
+
+        mvc.perform(get("/reservations/recurring/{seriesId}", seriesId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(1));
+    }
+
+    @Test
+    public void getOccurrences_expandedFromRule() throws Exception {
+        Long seriesId = createSeries(createRoom());
+
+        mvc.perform(get("/reservations/recurring/{seriesId}/occurrences", seriesId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(1));
+    }
+}
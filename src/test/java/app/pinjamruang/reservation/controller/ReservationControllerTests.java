@@ -1,28 +1,54 @@
 package app.pinjamruang.reservation.controller;
 
+import app.pinjamruang.persistence.KeysetPage;
+import app.pinjamruang.persistence.KeysetPages;
+import app.pinjamruang.persistence.ResourceVersionRepository;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.persistence.Tagged;
+import app.pinjamruang.reservation.dto.CreateRecurringReservationDto;
 import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.dto.ReservationBatchResultDto;
+import app.pinjamruang.reservation.dto.ReservationOccurrenceDto;
+import app.pinjamruang.reservation.dto.RoomOccupancyDto;
+import app.pinjamruang.reservation.exception.InvalidBatchException;
 import app.pinjamruang.reservation.exception.RoomNotAvailableException;
+import app.pinjamruang.reservation.model.ArchivedReservation;
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.reservation.model.RecurringReservation;
 import app.pinjamruang.reservation.model.Reservation;
 import app.pinjamruang.reservation.service.ReservationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static app.pinjamruang.TestUtils.*;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -39,9 +65,24 @@ public class ReservationControllerTests {
     @MockBean
     private ReservationService service;
 
+    @SpyBean
+    private ResourceVersions resourceVersions;
+
+    @MockBean
+    private ResourceVersionRepository resourceVersionRepository;
+
+    @Before
+    public void setUp() {
+        stubResourceVersions(resourceVersionRepository);
+    }
+
+    private <T> Tagged<T> tagged(T value, String... collections) {
+        return new Tagged<>(resourceVersions.tag(collections), value);
+    }
+
     @Test
     public void getAllReservations_noReservation_success() throws Exception {
-        when(service.getAllReservations()).thenReturn(new ArrayList<>());
+        when(service.getReservations(any(), any(), any(), any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(new ArrayList<>(), null), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
 
         mvc.perform(get("/reservations/"))
                 .andExpect(status().isOk())
@@ -55,20 +96,106 @@ public class ReservationControllerTests {
         reservations.add(createDummyReservation(createDummyRoom()));
         reservations.add(createDummyReservation(createDummyRoom()));
 
-        when(service.getAllReservations()).thenReturn(reservations);
+        when(service.getReservations(any(), any(), any(), any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(reservations, null), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
 
         mvc.perform(get("/reservations/"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].agenda", is(reservations.get(0).getAgenda())))
-                .andExpect(jsonPath("$[1].agenda", is(reservations.get(1).getAgenda())));
+                .andExpect(jsonPath("$[1].agenda", is(reservations.get(1).getAgenda())))
+                .andExpect(header().doesNotExist(KeysetPages.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void getArchivedReservations_fromRequired() throws Exception {
+        mvc.perform(get("/reservations/archive"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getArchivedReservations_success() throws Exception {
+        ArchivedReservation archived = new ArchivedReservation();
+        ReflectionTestUtils.setField(archived, "id", 7L);
+        ReflectionTestUtils.setField(archived, "roomId", 2L);
+
+        when(service.getArchivedReservations(
+                ArgumentMatchers.isNull(),
+                ArgumentMatchers.isNull(),
+                ArgumentMatchers.eq(2L),
+                ArgumentMatchers.eq(LocalDateTime.parse("2019-01-01 00:00", DTO_DATETIME_FORMATTER)),
+                ArgumentMatchers.isNull()
+        )).thenAnswer(invocation -> tagged(new KeysetPage<>(Collections.singletonList(archived), null), ResourceVersions.RESERVATIONS));
+
+        mvc.perform(get("/reservations/archive")
+                .param("roomId", "2")
+                .param("from", "2019-01-01 00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(7)))
+                .andExpect(jsonPath("$[0].roomId", is(2)));
+    }
+
+    @Test
+    public void getAllReservations_morePages_returnsNextCursor() throws Exception {
+        List<Reservation> reservations = new ArrayList<>();
+        reservations.add(createDummyReservation(createDummyRoom()));
+
+        when(service.getReservations(
+                ArgumentMatchers.eq(10L),
+                ArgumentMatchers.eq(1),
+                ArgumentMatchers.eq(2L),
+                ArgumentMatchers.eq(LocalDateTime.parse("2019-06-12 00:00", DTO_DATETIME_FORMATTER)),
+                ArgumentMatchers.eq(LocalDateTime.parse("2019-06-13 00:00", DTO_DATETIME_FORMATTER))
+        )).thenAnswer(invocation -> tagged(new KeysetPage<>(reservations, 11L), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        mvc.perform(get("/reservations/")
+                .param("after", "10")
+                .param("limit", "1")
+                .param("roomId", "2")
+                .param("from", "2019-06-12 00:00")
+                .param("to", "2019-06-13 00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().string(KeysetPages.NEXT_CURSOR_HEADER, "11"))
+                .andExpect(header().string("Link", containsString("after=11")));
+    }
+
+    @Test
+    public void exportReservations_streamsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(3);
+            outputStream.write("{\"agenda\":\"Testing\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(service).exportReservations(ArgumentMatchers.eq(1L), ArgumentMatchers.isNull(), ArgumentMatchers.isNull(), any(OutputStream.class));
+
+        MvcResult result = mvc.perform(get("/reservations/export").param("roomId", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"agenda\":\"Testing\"}\n"));
+    }
+
+    @Test
+    public void getOccupancy_success() throws Exception {
+        RoomOccupancyDto occupancy = new RoomOccupancyDto(1L, LocalDate.of(2019, 6, 12), 5, 1, "1", new long[]{1L});
+        when(service.getOccupancy(LocalDate.of(2019, 6, 12), null)).thenReturn(Collections.singletonList(occupancy));
+
+        mvc.perform(get("/reservations/occupancy").param("date", "2019-06-12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].roomId", is(1)))
+                .andExpect(jsonPath("$[0].date", is("2019-06-12")))
+                .andExpect(jsonPath("$[0].occupiedSlots", is(1)));
     }
 
     @Test
     public void getReservationById_success() throws Exception {
         Reservation dummyReservation = createDummyReservation(createDummyRoom());
-        when(service.getReservationById(1L)).thenReturn(dummyReservation);
+        when(service.getTaggedReservationById(1L)).thenAnswer(invocation -> tagged(dummyReservation, ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
 
         mvc.perform(get("/reservations/1").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -80,9 +207,96 @@ public class ReservationControllerTests {
         ;
     }
 
+    @Test
+    public void getReservationById_currentETag_notModifiedWithoutLookup() throws Exception {
+        when(service.getTaggedReservationById(1L)).thenAnswer(invocation -> tagged(createDummyReservation(createDummyRoom()), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        String etag = mvc.perform(get("/reservations/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/reservations/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        verify(service, times(1)).getTaggedReservationById(1L);
+    }
+
+    @Test
+    public void getReservationById_otherReservationChanged_notModifiedWithRefreshedETag() throws Exception {
+        when(service.getTaggedReservationById(1L)).thenAnswer(invocation -> tagged(createDummyReservation(createDummyRoom()), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        String etag = mvc.perform(get("/reservations/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        resourceVersions.bump(ResourceVersions.RESERVATIONS);
+
+        String refreshedEtag = mvc.perform(get("/reservations/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(etag, refreshedEtag);
+        verify(service, times(2)).getTaggedReservationById(1L);
+    }
+
+    @Test
+    public void getReservationById_reservationChangedWithinClockTick_returnsBody() throws Exception {
+        Reservation reservation = createDummyReservation(createDummyRoom());
+        ReflectionTestUtils.setField(reservation, "updatedAt", LocalDateTime.parse("2019-06-12T09:00"));
+        when(service.getTaggedReservationById(1L)).thenAnswer(invocation -> tagged(reservation, ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        String etag = mvc.perform(get("/reservations/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        ReflectionTestUtils.setField(reservation, "version", 1L);
+        resourceVersions.bump(ResourceVersions.RESERVATIONS);
+
+        mvc.perform(get("/reservations/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.agenda", is(reservation.getAgenda())));
+    }
+
+    @Test
+    public void getReservationById_roomChanged_returnsBody() throws Exception {
+        Reservation reservation = createDummyReservation(createDummyRoom());
+        when(service.getTaggedReservationById(1L)).thenAnswer(invocation -> tagged(reservation, ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        String etag = mvc.perform(get("/reservations/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        ReflectionTestUtils.setField(reservation.getRoom(), "version", 1L);
+        resourceVersions.bump(ResourceVersions.ROOMS);
+
+        mvc.perform(get("/reservations/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void getAllReservations_currentETag_notModifiedWithoutLookup() throws Exception {
+        when(service.getReservations(any(), any(), any(), any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(new ArrayList<>(), null), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        String etag = mvc.perform(get("/reservations/").param("roomId", "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/reservations/").param("roomId", "1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        verify(service, times(1)).getReservations(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void getAllReservations_roomChanged_staleETag() throws Exception {
+        when(service.getReservations(any(), any(), any(), any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(new ArrayList<>(), null), ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS));
+
+        String etag = mvc.perform(get("/reservations/"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        resourceVersions.bump(ResourceVersions.ROOMS);
+
+        mvc.perform(get("/reservations/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     public void getReservationById_reservationNotFound_throwsResourceNotFoundException() throws Exception {
-        when(service.getReservationById(1L)).thenThrow(new ResourceNotFoundException());
+        when(service.getTaggedReservationById(1L)).thenThrow(new ResourceNotFoundException());
 
         mvc.perform(get("/reservations/1").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
@@ -150,6 +364,84 @@ public class ReservationControllerTests {
                 .andExpect(jsonPath("$.endDate", is(dummyReservation.getEndDate().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))));
     }
 
+    @Test
+    public void createRecurringReservation_success() throws Exception {
+        CreateRecurringReservationDto dto = new CreateRecurringReservationDto(
+                "2019-06-12 10:00", "2019-06-12 12:00", 10, "Standup", 1L, RecurrenceFrequency.WEEKLY, 1, null, 52);
+        RecurringReservation series = new RecurringReservation(
+                createDummyReservation(createDummyRoom()), RecurrenceFrequency.WEEKLY, 1, null, 52);
+        when(service.createRecurringReservation(ArgumentMatchers.any(CreateRecurringReservationDto.class))).thenReturn(series);
+
+        mvc.perform(
+                post("/reservations/recurring")
+                        .content(objectMapper.writeValueAsString(dto))
+                        .contentType(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.frequency", is("WEEKLY")))
+                .andExpect(jsonPath("$.count", is(52)))
+                .andExpect(jsonPath("$.startDate", is(series.getStartDate().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))));
+
+        verify(service).createRecurringReservation(argThat(argument ->
+                argument.getFrequency() == RecurrenceFrequency.WEEKLY && argument.getCount() == 52));
+    }
+
+    @Test
+    public void getOccurrences_success() throws Exception {
+        LocalDateTime startDate = LocalDateTime.parse("2019-06-19 10:00", DTO_DATETIME_FORMATTER);
+        when(service.getOccurrences(1L, startDate, null, 1)).thenReturn(Collections.singletonList(
+                new ReservationOccurrenceDto(1L, 1L, startDate, startDate.plusHours(2))));
+
+        mvc.perform(get("/reservations/recurring/1/occurrences").param("from", "2019-06-19 10:00").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].recurringReservationId", is(1)))
+                .andExpect(jsonPath("$[0].startDate", is("2019-06-19T10:00:00")));
+    }
+
+    @Test
+    public void cancelOccurrence_success() throws Exception {
+        RecurringReservation series = new RecurringReservation(
+                createDummyReservation(createDummyRoom()), RecurrenceFrequency.WEEKLY, 1, null, 52);
+        when(service.cancelOccurrence(1L, LocalDate.of(2019, 6, 19))).thenReturn(series);
+
+        mvc.perform(delete("/reservations/recurring/1/occurrences/2019-06-19"))
+                .andExpect(status().isOk());
+
+        verify(service).cancelOccurrence(1L, LocalDate.of(2019, 6, 19));
+    }
+
+    @Test
+    public void createReservations_success() throws Exception {
+        List<CreateReservationDto> dtos = new ArrayList<>();
+        dtos.add(createDummyReservationDto());
+        dtos.add(createDummyReservationDto());
+
+        List<ReservationBatchResultDto> results = new ArrayList<>();
+        results.add(ReservationBatchResultDto.created(0, createDummyReservation(createDummyRoom())));
+        results.add(ReservationBatchResultDto.rejected(1, "Given room is already reserved at given time."));
+
+        when(service.createReservations(ArgumentMatchers.anyList())).thenReturn(results);
+
+        mvc.perform(post("/reservations/batch").content(objectMapper.writeValueAsString(dtos)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].created", is(true)))
+                .andExpect(jsonPath("$[0].reservation.agenda", is("Testing")))
+                .andExpect(jsonPath("$[1].created", is(false)))
+                .andExpect(jsonPath("$[1].index", is(1)))
+                .andExpect(jsonPath("$[1].error", is("Given room is already reserved at given time.")));
+    }
+
+    @Test
+    public void createReservations_tooManyItems_badRequest() throws Exception {
+        when(service.createReservations(ArgumentMatchers.anyList())).thenThrow(new InvalidBatchException("Batches can not have more than 500 reservations."));
+
+        mvc.perform(post("/reservations/batch").content("[]").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
 // =========================================================================================================
 
     @Test
@@ -0,0 +1,54 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.reservation.model.RecurringReservation;
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.repository.RoomRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Optional;
+
+import static app.pinjamruang.TestUtils.createDummyReservation;
+import static app.pinjamruang.TestUtils.createDummyRoom;
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class RecurringReservationRepositoryTests {
+    @Autowired
+    RecurringReservationRepository recurringReservationRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    public void findWithRoomById_loadsRuleAndExceptionDates() {
+        Room room = roomRepository.save(createDummyRoom());
+        RecurringReservation series = new RecurringReservation(
+                createDummyReservation(room), RecurrenceFrequency.WEEKLY, 2, LocalDate.of(2019, 12, 31), null);
+        series.getExceptionDates().add(LocalDate.of(2019, 6, 26));
+        Long id = recurringReservationRepository.saveAndFlush(series).getId();
+        entityManager.clear();
+
+        RecurringReservation found = recurringReservationRepository.findWithRoomById(id).orElseThrow(AssertionError::new);
+
+        assertEquals(RecurrenceFrequency.WEEKLY, found.getFrequency());
+        assertEquals(Integer.valueOf(2), found.getInterval());
+        assertEquals(LocalDate.of(2019, 12, 31), found.getUntil());
+        assertNull(found.getCount());
+        assertEquals(room.getId(), found.getRoom().getId());
+        assertEquals(Collections.singleton(LocalDate.of(2019, 6, 26)), found.getExceptionDates());
+        assertEquals(Optional.of(room.getId()), recurringReservationRepository.findRoomIdById(id));
+        assertEquals(Optional.empty(), recurringReservationRepository.findRoomIdById(id + 1));
+    }
+}
@@ -1,22 +1,33 @@
 package app.pinjamruang.reservation.repository;
 
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.model.ArchivedReservation;
 import app.pinjamruang.reservation.model.Reservation;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.repository.RoomRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static app.pinjamruang.TestUtils.createDummyReservation;
 import static app.pinjamruang.TestUtils.createDummyRoom;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
@@ -28,15 +39,21 @@ public class ReservationRepositoryTests {
     @Autowired
     RoomRepository roomRepository;
 
+    @Autowired
+    ArchivedReservationRepository archivedReservationRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    private Room room;
+
     @Before
     public void setUp() {
-        roomRepository.save(createDummyRoom());
+        room = roomRepository.save(createDummyRoom());
     }
 
     @Test
     public void jpaRepositoryBasicTest() {
-        Room room = roomRepository.getOne(1L);
-
         Reservation reservation = reservationRepository.save(createDummyReservation(room));
 
         assertEquals(reservationRepository.getOne(reservation.getId()), reservation);
@@ -44,8 +61,6 @@ public class ReservationRepositoryTests {
 
     @Test
     public void findByStartDateBetweenAndEndDateBetween_foundAnOverlappingReservation_success() {
-        Room room = roomRepository.getOne(1L);
-
         Reservation existingReservation = reservationRepository.save(createDummyReservation(room));
 
         LocalDateTime startDate = existingReservation.getStartDate();
@@ -59,8 +74,6 @@ public class ReservationRepositoryTests {
 
     @Test
     public void findByStartDateBetweenAndEndDateBetween_noOverlappingReservation_success() {
-        Room room = roomRepository.getOne(1L);
-
         Reservation existingReservation = reservationRepository.save(createDummyReservation(room));
 
         LocalDateTime startDate = existingReservation.getStartDate().minusMinutes(2L);
@@ -70,4 +83,192 @@ public class ReservationRepositoryTests {
 
         assertEquals(result.size(), 0);
     }
+
+    @Test
+    public void findOverlapping_partialOverlap_success() {
+        Reservation existingReservation = reservationRepository.save(createDummyReservation(room));
+
+        LocalDateTime startDate = existingReservation.getStartDate().minusMinutes(30L);
+        LocalDateTime endDate = existingReservation.getStartDate().plusMinutes(30L);
+
+        List<Reservation> result = reservationRepository.findOverlapping(room.getId(), startDate, endDate);
+
+        assertEquals(1, result.size());
+        assertEquals(existingReservation, result.get(0));
+    }
+
+    @Test
+    public void findOverlapping_adjacentReservation_noResult() {
+        Reservation existingReservation = reservationRepository.save(createDummyReservation(room));
+
+        LocalDateTime startDate = existingReservation.getEndDate();
+        LocalDateTime endDate = existingReservation.getEndDate().plusHours(1L);
+
+        List<Reservation> result = reservationRepository.findOverlapping(room.getId(), startDate, endDate);
+
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void findOverlapping_otherRoom_noResult() {
+        Room otherRoom = roomRepository.save(createDummyRoom());
+        Reservation existingReservation = reservationRepository.save(createDummyReservation(room));
+
+        List<Reservation> result = reservationRepository.findOverlapping(
+                otherRoom.getId(), existingReservation.getStartDate(), existingReservation.getEndDate());
+
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void deleteByIdAndVersion_updatedSinceRead_nothingDeleted() {
+        Reservation reservation = reservationRepository.saveAndFlush(createDummyReservation(room));
+        Long readVersion = reservation.getVersion();
+        reservation.setAttendees(reservation.getAttendees() + 1);
+        reservationRepository.saveAndFlush(reservation);
+
+        assertEquals(0, reservationRepository.deleteByIdAndVersion(reservation.getId(), readVersion));
+        assertEquals(1, reservationRepository.deleteByIdAndVersion(reservation.getId(), reservation.getVersion()));
+    }
+
+    @Test
+    public void findAfter_keysetAndFilters_success() {
+        Room otherRoom = roomRepository.save(createDummyRoom());
+        Reservation first = reservationRepository.save(createDummyReservation(room));
+        Reservation second = createDummyReservation(room);
+        second.setStartDate(first.getStartDate().plusDays(1L));
+        second.setEndDate(first.getEndDate().plusDays(1L));
+        second = reservationRepository.save(second);
+        Reservation third = reservationRepository.save(createDummyReservation(otherRoom));
+
+        assertEquals(Arrays.asList(first, second), reservationRepository.findAfter(null, null, null, null, 2));
+        assertEquals(Arrays.asList(second, third), reservationRepository.findAfter(first.getId(), null, null, null, 10));
+        assertEquals(Arrays.asList(first, second), reservationRepository.findAfter(null, room.getId(), null, null, 10));
+        assertEquals(
+                Collections.singletonList(second),
+                reservationRepository.findAfter(null, room.getId(), second.getStartDate(), second.getEndDate(), 10)
+        );
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void scroll_filteredByRoom_visitsEveryMatchingReservation() {
+        Room otherRoom = roomRepository.save(createDummyRoom());
+        Reservation first = reservationRepository.save(createDummyReservation(room));
+        reservationRepository.save(createDummyReservation(otherRoom));
+
+        List<Reservation> visited = new ArrayList<>();
+        reservationRepository.scroll(room.getId(), null, null, 1, visited::add);
+
+        assertEquals(1, visited.size());
+        assertEquals(first.getId(), visited.get(0).getId());
+        assertEquals(room.getName(), visited.get(0).getRoom().getName());
+    }
+
+    @Test
+    public void insertAll_severalBatches_idsAssignedAndDetached() {
+        List<Reservation> reservations = Arrays.asList(
+                createDummyReservation(room), createDummyReservation(room), createDummyReservation(room));
+
+        reservationRepository.insertAll(reservations, 2);
+
+        for (Reservation reservation : reservations) {
+            assertNotNull(reservation.getId());
+            assertFalse(entityManager.getEntityManager().contains(reservation));
+        }
+
+        assertEquals(3L, reservationRepository.count());
+    }
+
+    private Statistics saveReservationsInDistinctRoomsAndResetStatistics(int count) {
+        for (int i = 0; i < count; i++) {
+            reservationRepository.save(createDummyReservation(roomRepository.save(createDummyRoom())));
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager()
+                .getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        return statistics;
+    }
+
+    @Test
+    public void findAll_reservationsInDistinctRooms_singleStatement() {
+        Statistics statistics = saveReservationsInDistinctRoomsAndResetStatistics(5);
+
+        List<Reservation> result = reservationRepository.findAll();
+        result.forEach(reservation -> reservation.getRoom().getName());
+
+        assertEquals(5, result.size());
+        assertEquals(1L, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findAfter_reservationsInDistinctRooms_singleStatement() {
+        Statistics statistics = saveReservationsInDistinctRoomsAndResetStatistics(5);
+
+        List<Reservation> result = reservationRepository.findAfter(null, null, null, null, 10);
+        result.forEach(reservation -> reservation.getRoom().getName());
+
+        assertEquals(5, result.size());
+        assertEquals(1L, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findWithRoomById_singleStatement() {
+        Statistics statistics = saveReservationsInDistinctRoomsAndResetStatistics(1);
+        Long id = reservationRepository.findAllIntervals().get(0).getId();
+        statistics.clear();
+
+        Reservation reservation = reservationRepository.findWithRoomById(id).get();
+        reservation.getRoom().getName();
+
+        assertEquals(1L, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findWithRoomById_missingReservation_empty() {
+        assertFalse(reservationRepository.findWithRoomById(-1L).isPresent());
+    }
+
+    @Test
+    public void moveToArchive_reservationsEndingBeforeHorizon_movedWithTheirIds() {
+        Reservation old = reservationRepository.save(createDummyReservation(room));
+        Reservation current = createDummyReservation(room);
+        current.setStartDate(current.getStartDate().plusYears(1));
+        current.setEndDate(current.getEndDate().plusYears(1));
+        current = reservationRepository.save(current);
+        reservationRepository.flush();
+
+        LocalDateTime horizon = old.getEndDate().plusDays(1);
+        List<ReservationIntervalDto> batch = reservationRepository.findIntervalsEndingBefore(0L, horizon, PageRequest.of(0, 10));
+
+        assertEquals(1, batch.size());
+        assertEquals(old.getId(), batch.get(0).getId());
+
+        int moved = reservationRepository.moveToArchive(
+                Arrays.asList(old.getId(), current.getId()), horizon, LocalDateTime.parse("2020-01-01T00:00"));
+        entityManager.clear();
+
+        assertEquals(1, moved);
+        assertEquals(1, reservationRepository.count());
+        assertTrue(reservationRepository.existsById(current.getId()));
+
+        ArchivedReservation archived = archivedReservationRepository.findById(old.getId()).orElseThrow(AssertionError::new);
+        assertEquals(old.getStartDate(), archived.getStartDate());
+        assertEquals(room.getId(), archived.getRoomId());
+        assertEquals(1, archivedReservationRepository.findAfter(0L, room.getId(), old.getStartDate(), horizon, PageRequest.of(0, 10)).size());
+        assertEquals(0, archivedReservationRepository.findAfter(0L, room.getId(), old.getEndDate(), horizon, PageRequest.of(0, 10)).size());
+
+        List<Long> roomIds = Collections.singletonList(room.getId());
+        assertEquals(1, archivedReservationRepository.findOverlapping(roomIds, old.getStartDate().minusHours(1), old.getStartDate().plusMinutes(1)).size());
+        assertEquals(0, archivedReservationRepository.findOverlapping(roomIds, old.getEndDate(), horizon).size());
+        assertEquals(0, archivedReservationRepository.findOverlapping(Collections.singletonList(room.getId() + 1), old.getStartDate(), old.getEndDate()).size());
+    }
 }
@@ -0,0 +1,81 @@
+package app.pinjamruang.reservation.repository;
+
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class RoomDayUtilizationRepositoryTests {
+    private static final LocalDate DATE = LocalDate.of(2019, 6, 12);
+
+    @Autowired
+    RoomDayUtilizationRepository repository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    public void add_missingRowsInsertedExistingRowsIncremented() {
+        repository.add(Arrays.asList(
+                new RoomDayUtilization(1L, DATE, 1, 60L, 300L),
+                new RoomDayUtilization(1L, DATE.plusDays(1), 1, 30L, 60L)
+        ));
+        repository.add(Collections.singletonList(new RoomDayUtilization(1L, DATE, 1, 90L, 180L)));
+        entityManager.clear();
+
+        RoomDayUtilization day = repository.findById(new RoomDayUtilization.Key(1L, DATE)).orElseThrow(AssertionError::new);
+
+        assertEquals(2, day.getReservations());
+        assertEquals(150L, day.getBookedMinutes());
+        assertEquals(480L, day.getAttendeeMinutes());
+        assertEquals(2L, repository.count());
+    }
+
+    @Test
+    public void add_rowWrittenElsewhere_incrementedInsteadOfInsertedAgain() {
+        entityManager.persistAndFlush(new RoomDayUtilization(1L, DATE, 2, 120L, 240L));
+        entityManager.clear();
+
+        repository.add(Collections.singletonList(new RoomDayUtilization(1L, DATE, -1, -60L, -120L)));
+        entityManager.clear();
+
+        RoomDayUtilization day = repository.findById(new RoomDayUtilization.Key(1L, DATE)).orElseThrow(AssertionError::new);
+
+        assertEquals(1, day.getReservations());
+        assertEquals(60L, day.getBookedMinutes());
+        assertEquals(1L, repository.count());
+    }
+
+    @Test
+    public void replace_sameTotalsTwice_rowsSetNotAdded() {
+        entityManager.persistAndFlush(new RoomDayUtilization(1L, DATE, 5, 300L, 900L));
+        entityManager.clear();
+
+        for (int i = 0; i < 2; i++) {
+            repository.replace(Arrays.asList(
+                    new RoomDayUtilization(1L, DATE, 2, 120L, 240L),
+                    new RoomDayUtilization(2L, DATE, 1, 30L, 90L)
+            ));
+        }
+
+        entityManager.clear();
+
+        RoomDayUtilization day = repository.findById(new RoomDayUtilization.Key(1L, DATE)).orElseThrow(AssertionError::new);
+
+        assertEquals(2, day.getReservations());
+        assertEquals(120L, day.getBookedMinutes());
+        assertEquals(240L, day.getAttendeeMinutes());
+        assertEquals(2L, repository.count());
+    }
+}
@@ -0,0 +1,61 @@
+package app.pinjamruang.reservation.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BookingCoordinatorTests {
+    private static final int THREADS = 32;
+
+    BookingCoordinator bookingCoordinator = new BookingCoordinator();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void withRoomLocks_sameRoomWrites_neverInterleave() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> bookingCoordinator.runWithRoomLocks(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.yield();
+                active.decrementAndGet();
+            }, 1L)));
+        }
+
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void stripeOf_consecutiveRooms_differentStripes() {
+        for (long roomId = 1; roomId < BookingCoordinator.DEFAULT_STRIPES; roomId++) {
+            assertNotEquals(bookingCoordinator.stripeOf(roomId), bookingCoordinator.stripeOf(roomId + 1));
+        }
+    }
+}
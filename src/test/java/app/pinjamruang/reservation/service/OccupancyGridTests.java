@@ -0,0 +1,101 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.model.Room;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static app.pinjamruang.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class OccupancyGridTests {
+    private ReservationIndex reservationIndex;
+
+    private OccupancyGrid grid;
+
+    private Room room;
+
+    @Before
+    public void setUp() {
+        reservationIndex = new ReservationIndex();
+        grid = new OccupancyGrid();
+        ReflectionTestUtils.setField(grid, "reservationIndex", reservationIndex);
+
+        room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+    }
+
+    private LocalDateTime parse(String dateTime) {
+        return LocalDateTime.parse(dateTime, DTO_DATETIME_FORMATTER);
+    }
+
+    private void reserve(Long id, String startDate, String endDate) {
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", id);
+        reservation.setStartDate(parse(startDate));
+        reservation.setEndDate(parse(endDate));
+
+        reservationIndex.put(reservation);
+        grid.invalidate(1L, reservation.getStartDate(), reservation.getEndDate());
+    }
+
+    @Test
+    public void day_fitsInFiveWords() {
+        assertEquals(288, OccupancyGrid.SLOTS_PER_DAY);
+        assertEquals(5, OccupancyGrid.WORDS_PER_DAY);
+        assertEquals(5, grid.getDay(1L, LocalDate.of(2019, 6, 12)).length);
+    }
+
+    @Test
+    public void setRange_acrossWordBoundary_setsExactlyThoseSlots() {
+        long[] words = new long[OccupancyGrid.WORDS_PER_DAY];
+
+        OccupancyGrid.setRange(words, 60, 70);
+
+        assertEquals(0xFL << 60, words[0]);
+        assertEquals(0x3FL, words[1]);
+        assertTrue(OccupancyGrid.anySet(words, 69, 100));
+        assertFalse(OccupancyGrid.anySet(words, 70, 288));
+        assertFalse(OccupancyGrid.anySet(words, 0, 60));
+    }
+
+    @Test
+    public void isFree_alignedReservation_decidedByGrid() {
+        reserve(1L, "2019-06-12 10:00", "2019-06-12 12:00");
+
+        assertFalse(grid.isFree(1L, parse("2019-06-12 11:00"), parse("2019-06-12 13:00"), null));
+        assertTrue(grid.isFree(1L, parse("2019-06-12 12:00"), parse("2019-06-12 13:00"), null));
+        assertTrue(grid.isFree(1L, parse("2019-06-12 09:00"), parse("2019-06-12 10:00"), null));
+        assertTrue(grid.isFree(2L, parse("2019-06-12 10:00"), parse("2019-06-12 12:00"), null));
+    }
+
+    @Test
+    public void isFree_unalignedReservation_fallsBackToExactIndex() {
+        reserve(1L, "2019-06-12 10:00", "2019-06-12 10:02");
+
+        assertTrue(grid.isFree(1L, parse("2019-06-12 10:03"), parse("2019-06-12 10:05"), null));
+        assertFalse(grid.isFree(1L, parse("2019-06-12 10:01"), parse("2019-06-12 10:05"), null));
+    }
+
+    @Test
+    public void isFree_excludedReservation_true() {
+        reserve(1L, "2019-06-12 10:00", "2019-06-12 12:00");
+
+        assertTrue(grid.isFree(1L, parse("2019-06-12 10:00"), parse("2019-06-12 12:00"), 1L));
+    }
+
+    @Test
+    public void invalidate_removedReservation_slotsCleared() {
+        reserve(1L, "2019-06-12 10:00", "2019-06-12 12:00");
+        assertFalse(grid.isFree(1L, parse("2019-06-12 10:00"), parse("2019-06-12 12:00"), null));
+
+        reservationIndex.remove(1L);
+        grid.invalidate(1L, parse("2019-06-12 10:00"), parse("2019-06-12 12:00"));
+
+        assertArrayEquals(new long[OccupancyGrid.WORDS_PER_DAY], grid.getDay(1L, LocalDate.of(2019, 6, 12)));
+    }
+}
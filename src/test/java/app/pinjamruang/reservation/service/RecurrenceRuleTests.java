@@ -0,0 +1,116 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static app.pinjamruang.TestUtils.DTO_DATETIME_FORMATTER;
+import static org.junit.Assert.*;
+
+public class RecurrenceRuleTests {
+    private LocalDateTime parse(String dateTime) {
+        return LocalDateTime.parse(dateTime, DTO_DATETIME_FORMATTER);
+    }
+
+    private RecurrenceRule rule(RecurrenceFrequency frequency, int interval, String startDate, String endDate,
+                                String until, Integer count, LocalDate... exceptionDates) {
+        return new RecurrenceRule(
+                1L,
+                1L,
+                frequency,
+                interval,
+                parse(startDate),
+                parse(endDate),
+                until == null ? null : LocalDate.parse(until),
+                count,
+                new HashSet<>(Arrays.asList(exceptionDates))
+        );
+    }
+
+    private List<LocalDateTime> startDates(RecurrenceRule rule, String from) {
+        List<LocalDateTime> startDates = new ArrayList<>();
+        Iterator<LocalDateTime> iterator = rule.startDatesFrom(parse(from));
+        iterator.forEachRemaining(startDates::add);
+
+        return startDates;
+    }
+
+    @Test
+    public void weeklyWithCount_expandsCountOccurrences() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.WEEKLY, 1, "2019-06-12 10:00", "2019-06-12 10:30", null, 52);
+
+        List<LocalDateTime> startDates = startDates(rule, "2019-06-12 00:00");
+
+        assertEquals(52, rule.size());
+        assertEquals(52, startDates.size());
+        assertEquals(parse("2019-06-19 10:00"), startDates.get(1));
+        assertEquals(parse("2020-06-03 10:30"), rule.getLastEndDate());
+    }
+
+    @Test
+    public void dailyWithUntil_untilIsInclusive() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.DAILY, 2, "2019-06-12 10:00", "2019-06-12 11:00", "2019-06-20", null);
+
+        assertEquals(5, rule.size());
+        assertEquals(parse("2019-06-20 11:00"), rule.getLastEndDate());
+        assertTrue(rule.occursOn(LocalDate.parse("2019-06-14")));
+        assertFalse(rule.occursOn(LocalDate.parse("2019-06-15")));
+        assertFalse(rule.occursOn(LocalDate.parse("2019-06-22")));
+    }
+
+    @Test
+    public void monthly_clampsToEndOfShorterMonths() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.MONTHLY, 1, "2019-01-31 10:00", "2019-01-31 11:00", null, 3);
+
+        assertEquals(
+                Arrays.asList(parse("2019-01-31 10:00"), parse("2019-02-28 10:00"), parse("2019-03-31 10:00")),
+                startDates(rule, "2019-01-01 00:00")
+        );
+    }
+
+    @Test
+    public void startDatesFrom_seeksToFirstOccurrenceEndingAfterFrom() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.WEEKLY, 1, "2019-06-12 10:00", "2019-06-12 12:00", null, 52);
+
+        Iterator<LocalDateTime> startDates = rule.startDatesFrom(parse("2019-12-11 11:00"));
+
+        assertEquals(parse("2019-12-11 10:00"), startDates.next());
+        assertEquals(parse("2019-12-18 10:00"), startDates.next());
+    }
+
+    @Test
+    public void exceptionDates_skipped() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.DAILY, 1, "2019-06-12 10:00", "2019-06-12 11:00", null, 3,
+                LocalDate.parse("2019-06-13"));
+
+        assertEquals(Arrays.asList(parse("2019-06-12 10:00"), parse("2019-06-14 10:00")), startDates(rule, "2019-06-12 00:00"));
+        assertFalse(rule.hasOverlap(parse("2019-06-13 10:00"), parse("2019-06-13 11:00")));
+        assertTrue(rule.occursOn(LocalDate.parse("2019-06-13")));
+    }
+
+    @Test
+    public void hasOverlap_betweenOccurrences_false() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.WEEKLY, 1, "2019-06-12 10:00", "2019-06-12 12:00", null, 52);
+
+        assertTrue(rule.hasOverlap(parse("2019-08-07 11:00"), parse("2019-08-07 13:00")));
+        assertFalse(rule.hasOverlap(parse("2019-08-07 12:00"), parse("2019-08-07 13:00")));
+        assertFalse(rule.hasOverlap(parse("2019-08-08 10:00"), parse("2019-08-08 12:00")));
+        assertFalse(rule.hasOverlap(parse("2020-06-10 10:00"), parse("2020-06-10 12:00")));
+    }
+
+    @Test
+    public void untilBeforeFirstOccurrence_empty() {
+        RecurrenceRule rule = rule(RecurrenceFrequency.DAILY, 1, "2019-06-12 10:00", "2019-06-12 11:00", "2019-06-11", null);
+
+        assertEquals(0, rule.size());
+        assertEquals(Collections.emptyList(), startDates(rule, "2019-06-01 00:00"));
+    }
+}
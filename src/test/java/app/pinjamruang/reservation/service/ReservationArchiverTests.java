@@ -0,0 +1,104 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.BookingFixture;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static app.pinjamruang.TestUtils.DTO_DATETIME_FORMATTER;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ReservationArchiverTests {
+    private static final LocalDateTime HORIZON = LocalDateTime.parse("2019-07-01 00:00", DTO_DATETIME_FORMATTER);
+
+    @InjectMocks
+    ReservationArchiver archiver;
+
+    final BookingFixture booking = new BookingFixture();
+
+    @Mock
+    ReservationRepository reservationRepository;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        booking.wire(archiver);
+        ReflectionTestUtils.setField(archiver, "batchSize", 2);
+    }
+
+    private ReservationIntervalDto interval(Long id, String day) {
+        LocalDateTime startDate = LocalDateTime.parse(day + " 10:00", DTO_DATETIME_FORMATTER);
+        booking.reservationIndex.put(id, 1L, startDate, startDate.plusHours(2));
+
+        return new ReservationIntervalDto(id, 1L, startDate, startDate.plusHours(2));
+    }
+
+    @Test
+    public void archive_severalBatches_resumesAfterLastIdOfEachBatch() {
+        List<ReservationIntervalDto> first = Arrays.asList(interval(1L, "2019-06-10"), interval(2L, "2019-06-11"));
+        List<ReservationIntervalDto> second = Collections.singletonList(interval(5L, "2019-06-12"));
+        interval(9L, "2019-07-15");
+
+        when(reservationRepository.findIntervalsEndingBefore(0L, HORIZON, PageRequest.of(0, 2))).thenReturn(first);
+        when(reservationRepository.findIntervalsEndingBefore(2L, HORIZON, PageRequest.of(0, 2))).thenReturn(second);
+        when(reservationRepository.moveToArchive(anyList(), eq(HORIZON), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        int moved = archiver.archive(HORIZON);
+
+        assertEquals(3, moved);
+        verify(reservationRepository).moveToArchive(eq(Arrays.asList(1L, 2L)), eq(HORIZON), any(LocalDateTime.class));
+        verify(reservationRepository).moveToArchive(eq(Collections.singletonList(5L)), eq(HORIZON), any(LocalDateTime.class));
+        assertEquals(1, booking.reservationIndex.size());
+        verify(booking.resourceVersions, times(2)).bump(ResourceVersions.RESERVATIONS);
+    }
+
+    @Test
+    public void getArchivedUntil_horizonDaysBeforeNow() {
+        ReflectionTestUtils.setField(archiver, "horizonDays", 30L);
+        LocalDateTime before = LocalDateTime.now().minusDays(30);
+
+        LocalDateTime archivedUntil = archiver.getArchivedUntil();
+
+        assertFalse(archivedUntil.isBefore(before));
+        assertFalse(archivedUntil.isAfter(LocalDateTime.now().minusDays(30)));
+    }
+
+    @Test
+    public void archive_reservationMovedPastHorizonMeanwhile_keptInIndex() {
+        ReservationIntervalDto selected = interval(1L, "2019-06-10");
+        LocalDateTime movedTo = LocalDateTime.parse("2019-07-15 10:00", DTO_DATETIME_FORMATTER);
+        booking.reservationIndex.put(1L, 1L, movedTo, movedTo.plusHours(1));
+
+        when(reservationRepository.findIntervalsEndingBefore(0L, HORIZON, PageRequest.of(0, 2)))
+                .thenReturn(Collections.singletonList(selected));
+        when(reservationRepository.moveToArchive(anyList(), eq(HORIZON), any(LocalDateTime.class))).thenReturn(0);
+
+        assertEquals(0, archiver.archive(HORIZON));
+        assertTrue(booking.reservationIndex.hasOverlap(1L, movedTo, movedTo.plusMinutes(30), null));
+        verify(booking.resourceVersions, never()).bump(ResourceVersions.RESERVATIONS);
+    }
+
+    @Test
+    public void archiveOnSchedule_disabled_doesNothing() {
+        archiver.archiveOnSchedule();
+
+        verifyZeroInteractions(reservationRepository);
+    }
+}
@@ -0,0 +1,252 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.ReservationEventDto;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.room.model.Room;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static app.pinjamruang.TestUtils.createDummyReservation;
+import static app.pinjamruang.TestUtils.createDummyRoom;
+import static org.junit.Assert.*;
+
+public class ReservationEventBroadcasterTests {
+    private ReservationEventBroadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        broadcaster = new ReservationEventBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "bufferSize", 2);
+        broadcaster.initSender();
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    private ReservationEventDto createdEvent(Long reservationId, Long roomId) {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", roomId);
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", reservationId);
+
+        return ReservationEventDto.created(reservation);
+    }
+
+    @Test
+    public void publish_roomAndAllRoomsSubscribers_receiveOnlyTheirEvents() throws Exception {
+        RecordingEmitter roomOne = new RecordingEmitter(1);
+        RecordingEmitter roomTwo = new RecordingEmitter(1);
+        RecordingEmitter allRooms = new RecordingEmitter(2);
+        broadcaster.subscribe(1L, roomOne);
+        broadcaster.subscribe(2L, roomTwo);
+        broadcaster.subscribe(ReservationEventBroadcaster.ALL_ROOMS, allRooms);
+
+        broadcaster.publish(createdEvent(1L, 1L));
+        broadcaster.publish(createdEvent(2L, 2L));
+
+        assertTrue(roomOne.awaitSends());
+        assertTrue(roomTwo.awaitSends());
+        assertTrue(allRooms.awaitSends());
+        assertEquals(1, roomOne.sends.size());
+        assertEquals(1, roomTwo.sends.size());
+        assertEquals(2, allRooms.sends.size());
+    }
+
+    @Test
+    public void publish_movedReservation_reachesBothRooms() throws Exception {
+        RecordingEmitter previousRoom = new RecordingEmitter(1);
+        broadcaster.subscribe(1L, previousRoom);
+
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 2L);
+        broadcaster.publish(ReservationEventDto.updated(createDummyReservation(room), 1L));
+
+        assertTrue(previousRoom.awaitSends());
+    }
+
+    @Test
+    public void publish_slowSubscriber_droppedWithoutHoldingBackOthers() throws Exception {
+        RecordingEmitter slow = new RecordingEmitter(1);
+        RecordingEmitter fast = new RecordingEmitter(4);
+        slow.blockSends();
+        broadcaster.subscribe(1L, slow);
+        broadcaster.subscribe(1L, fast);
+
+        // The first event gets stuck in the slow send, two more fill its buffer and the fourth overflows it.
+        for (long reservationId = 1; reservationId <= 4; reservationId++) {
+            broadcaster.publish(createdEvent(reservationId, 1L));
+            assertTrue(fast.awaitSendCount((int) reservationId));
+        }
+
+        assertEquals(1, broadcaster.subscriberCount(1L));
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+
+        slow.unblockSends();
+        assertEquals(1, slow.sends.size());
+    }
+
+    @Test
+    public void publish_sendTimesOut_subscriberDroppedAndPoolFreed() throws Exception {
+        broadcaster.shutdown();
+        broadcaster = new ReservationEventBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "senderThreads", 1);
+        ReflectionTestUtils.setField(broadcaster, "sendTimeoutMillis", 50L);
+        broadcaster.initSender();
+
+        RecordingEmitter stalled = new RecordingEmitter(1);
+        RecordingEmitter otherRoom = new RecordingEmitter(1);
+        stalled.blockSends();
+        broadcaster.subscribe(1L, stalled);
+        broadcaster.subscribe(2L, otherRoom);
+
+        broadcaster.publish(createdEvent(1L, 1L));
+        assertTrue(stalled.awaitSends());
+        broadcaster.publish(createdEvent(2L, 2L));
+
+        assertTrue(otherRoom.awaitSends());
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, broadcaster.subscriberCount(1L));
+        stalled.unblockSends();
+    }
+
+    @Test
+    public void publish_noFreeWriterThread_subscriberCompleted() throws Exception {
+        broadcaster.shutdown();
+        broadcaster = new ReservationEventBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "writerThreads", 1);
+        broadcaster.initSender();
+
+        RecordingEmitter stalled = new RecordingEmitter(1);
+        RecordingEmitter waiting = new RecordingEmitter(1);
+        stalled.blockSends();
+        broadcaster.subscribe(1L, stalled);
+        broadcaster.subscribe(2L, waiting);
+
+        broadcaster.publish(createdEvent(1L, 1L));
+        assertTrue(stalled.awaitSends());
+        broadcaster.publish(createdEvent(2L, 2L));
+
+        assertTrue(waiting.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, waiting.sendCount());
+        assertEquals(0, broadcaster.subscriberCount(2L));
+        assertEquals(1, broadcaster.subscriberCount(1L));
+        stalled.unblockSends();
+    }
+
+    @Test
+    public void heartbeat_idleSubscriber_sentCommentWithoutEventId() throws Exception {
+        RecordingEmitter idle = new RecordingEmitter(1);
+        broadcaster.subscribe(1L, idle);
+
+        broadcaster.heartbeat();
+
+        assertTrue(idle.awaitSends());
+        String heartbeat = idle.sends.get(0).build().iterator().next().getData().toString();
+        assertEquals(":heartbeat\n\n", heartbeat);
+    }
+
+    @Test
+    public void heartbeat_deadConnection_subscriberDropped() throws Exception {
+        RecordingEmitter dead = new RecordingEmitter(1);
+        dead.failSends();
+        broadcaster.subscribe(1L, dead);
+
+        broadcaster.heartbeat();
+
+        assertTrue(dead.failed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, broadcaster.subscriberCount(1L));
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<SseEventBuilder> sends = new ArrayList<>();
+
+        private final CountDownLatch sent;
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private final CountDownLatch failed = new CountDownLatch(1);
+
+        private CountDownLatch blocked = new CountDownLatch(0);
+
+        private boolean failing;
+
+        private RecordingEmitter(int expectedSends) {
+            this.sent = new CountDownLatch(expectedSends);
+        }
+
+        private void blockSends() {
+            this.blocked = new CountDownLatch(1);
+        }
+
+        private void unblockSends() {
+            this.blocked.countDown();
+        }
+
+        private void failSends() {
+            this.failing = true;
+        }
+
+        private boolean awaitSends() throws InterruptedException {
+            return this.sent.await(5, TimeUnit.SECONDS);
+        }
+
+        private boolean awaitSendCount(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+            while (sendCount() < count) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+
+                Thread.sleep(1);
+            }
+
+            return true;
+        }
+
+        private int sendCount() {
+            synchronized (this.sends) {
+                return this.sends.size();
+            }
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (this.failing) {
+                throw new IOException("Broken pipe");
+            }
+
+            synchronized (this.sends) {
+                this.sends.add(builder);
+            }
+            this.sent.countDown();
+
+            try {
+                this.blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            this.completed.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            this.failed.countDown();
+        }
+    }
+}
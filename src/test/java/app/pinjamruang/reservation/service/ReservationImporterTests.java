@@ -0,0 +1,230 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.BookingFixture;
+import app.pinjamruang.reservation.dto.ReservationImportResultDto;
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.exception.RoomNotAvailableException;
+import app.pinjamruang.reservation.exception.RoomNotAvailableException.Reason;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.ArchivedReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationExclusionConstraint;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.service.RoomService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static app.pinjamruang.TestUtils.createDummyRoom;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ReservationImporterTests {
+    private static final String HEADER = "startDate,endDate,attendees,agenda,room\n";
+
+    private static final LocalDateTime HORIZON = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    @InjectMocks
+    ReservationImporter importer;
+
+    final BookingFixture booking = new BookingFixture();
+
+    @Mock
+    ReservationRepository reservationRepository;
+
+    @Mock
+    ReservationService reservationService;
+
+    @Mock
+    ArchivedReservationRepository archivedReservationRepository;
+
+    @Mock
+    RoomService roomService;
+
+    @Mock
+    OccupancyGrid occupancyGrid;
+
+    @Mock
+    RoomCalendar roomCalendar;
+
+    @Mock
+    ReservationArchiver reservationArchiver;
+
+    private StringWriter rejects;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        booking.wire(importer);
+        ReflectionTestUtils.setField(importer, "batchSize", 2);
+        rejects = new StringWriter();
+
+        Room first = room(1L, "Room 1");
+        Room second = room(2L, "Board room");
+        when(roomService.getAllRooms()).thenReturn(Arrays.asList(first, second));
+        when(reservationArchiver.getArchivedUntil()).thenReturn(HORIZON);
+
+        AtomicLong ids = new AtomicLong();
+        doAnswer(invocation -> {
+            List<Reservation> reservations = invocation.getArgument(0);
+            reservations.forEach(reservation -> ReflectionTestUtils.setField(reservation, "id", ids.incrementAndGet()));
+            return null;
+        }).when(reservationRepository).insertAll(anyList(), anyInt());
+    }
+
+    private Room room(Long id, String name) {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", id);
+        room.setName(name);
+
+        return room;
+    }
+
+    private ReservationImportResultDto importCsv(String csv) throws IOException {
+        return importer.importCsv(new StringReader(csv), rejects);
+    }
+
+    private List<String> rejectLines() {
+        return Arrays.asList(rejects.toString().split("\n"));
+    }
+
+    @Test
+    public void importCsv_validRows_insertedPerBatchAndIndexed() throws IOException {
+        ReservationImportResultDto result = importCsv(HEADER
+                + "2019-06-12 10:00,2019-06-12 11:00,4,Standup,1\n"
+                + "2019-06-12 10:00,2019-06-12 11:00,4,Standup,Board room\n"
+                + "2019-06-13 10:00,2019-06-13 11:00,4,\"Review, final\",1\n");
+
+        assertEquals(3L, result.getImported());
+        assertEquals(0L, result.getRejected());
+        assertEquals(Arrays.asList("line,reason,startDate,endDate,attendees,agenda,room"), rejectLines());
+        verify(reservationRepository, times(2)).insertAll(anyList(), eq(2));
+        verify(booking.roomUtilization, times(2)).apply(any(UtilizationChange.class));
+        verify(roomService, times(1)).getAllRooms();
+        assertEquals(2, booking.reservationIndex.count(1L));
+        assertEquals(1, booking.reservationIndex.count(2L));
+    }
+
+    @Test
+    public void importCsv_conflictsWithIndexAndEarlierRows_rejected() throws IOException {
+        booking.reservationIndex.put(100L, 1L, LocalDateTime.of(2019, 6, 12, 10, 0), LocalDateTime.of(2019, 6, 12, 11, 0));
+
+        ReservationImportResultDto result = importCsv(HEADER
+                + "2019-06-12 10:30,2019-06-12 11:30,4,Clash with stored,1\n"
+                + "2019-06-12 13:00,2019-06-12 14:00,4,First,2\n"
+                + "2019-06-12 13:30,2019-06-12 14:30,4,Clash with earlier batch,2\n"
+                + "2019-06-12 15:00,2019-06-12 16:00,4,Second,2\n"
+                + "2019-06-12 16:00,2019-06-12 17:00,4,Third,2\n"
+                + "2019-06-12 16:30,2019-06-12 17:00,4,Clash within batch,2\n");
+
+        List<String> lines = rejectLines();
+
+        assertEquals(3L, result.getImported());
+        assertEquals(3L, result.getRejected());
+        assertEquals("2,Given room is already reserved at given time.,2019-06-12 10:30,2019-06-12 11:30,4,Clash with stored,1", lines.get(1));
+        assertTrue(lines.get(2).startsWith("4,Given room is already reserved"));
+        assertTrue(lines.get(3).startsWith("7,Given room is already reserved"));
+        assertEquals(3, booking.reservationIndex.count(2L));
+        verify(reservationService, never()).validateReservation(any(Reservation.class));
+    }
+
+    @Test
+    public void importCsv_rowsEndingBeforeHorizon_archivedAndNotIndexed() throws IOException {
+        when(archivedReservationRepository.findOverlapping(anyCollection(), any(), any())).thenReturn(Collections.singletonList(
+                new ReservationIntervalDto(50L, 1L, LocalDateTime.of(2018, 6, 12, 10, 0), LocalDateTime.of(2018, 6, 12, 11, 0))));
+
+        ReservationImportResultDto result = importCsv(HEADER
+                + "2018-06-12 10:30,2018-06-12 11:30,4,Clash with archived,1\n"
+                + "2018-06-13 10:00,2018-06-13 11:00,4,Old,1\n"
+                + "2019-06-12 10:00,2019-06-12 11:00,4,Current,1\n");
+
+        assertEquals(2L, result.getImported());
+        assertTrue(rejectLines().get(1).startsWith("2,Given room is already reserved"));
+        verify(archivedReservationRepository, times(1)).findOverlapping(
+                eq(Collections.singleton(1L)), eq(LocalDateTime.of(2018, 6, 12, 10, 30)), eq(LocalDateTime.of(2018, 6, 13, 11, 0)));
+        verify(reservationRepository, times(1)).moveToArchive(eq(Collections.singletonList(1L)), eq(HORIZON), any(LocalDateTime.class));
+        verify(reservationRepository, times(1)).moveToArchive(eq(Collections.emptyList()), eq(HORIZON), any(LocalDateTime.class));
+        assertEquals(1, booking.reservationIndex.count(1L));
+        assertTrue(booking.reservationIndex.hasOverlap(1L, LocalDateTime.of(2019, 6, 12, 10, 0), LocalDateTime.of(2019, 6, 12, 11, 0), null));
+    }
+
+    @Test
+    public void importCsv_batchRefusedByDatabase_retriedRowByRow() throws IOException {
+        doThrow(new DataIntegrityViolationException("could not execute batch",
+                new RuntimeException("ERROR: conflicting key value violates exclusion constraint \""
+                        + ReservationExclusionConstraint.CONSTRAINT_NAME + "\"\n  Detail: Key (...) conflicts")))
+                .when(reservationRepository).insertAll(argThat(reservations -> reservations.stream()
+                        .anyMatch(reservation -> "Booked elsewhere".equals(reservation.getAgenda()))), anyInt());
+
+        ReservationImportResultDto result = importCsv(HEADER
+                + "2019-06-12 10:00,2019-06-12 11:00,4,Standup,1\n"
+                + "2019-06-12 13:00,2019-06-12 14:00,4,Booked elsewhere,1\n");
+
+        List<String> lines = rejectLines();
+
+        assertEquals(1L, result.getImported());
+        assertEquals(1L, result.getRejected());
+        assertEquals("3,Given room is already reserved at given time.,2019-06-12 13:00,2019-06-12 14:00,4,Booked elsewhere,1", lines.get(1));
+        verify(reservationRepository, times(3)).insertAll(anyList(), eq(2));
+        verify(booking.roomUtilization, times(1)).apply(any(UtilizationChange.class));
+        assertEquals(1, booking.reservationIndex.count(1L));
+        assertTrue(booking.reservationIndex.hasOverlap(1L, LocalDateTime.of(2019, 6, 12, 10, 0), LocalDateTime.of(2019, 6, 12, 11, 0), null));
+    }
+
+    @Test
+    public void importCsv_malformedRows_rejectedWithReason() throws IOException {
+        doThrow(new RoomNotAvailableException(Reason.CAPACITY, "Given room do not have enough capacity."))
+                .when(reservationService).validateReservationRules(argThat(reservation -> reservation.getAttendees() > 10));
+
+        ReservationImportResultDto result = importCsv(HEADER
+                + "2019-06-12 10:00,2019-06-12 11:00,four,Standup,1\n"
+                + "2019-06-12 10:00,2019-06-12 11:00,4,Standup,Missing room\n"
+                + "2019-06-12T10:00,2019-06-12 11:00,4,Standup,1\n"
+                + "2019-06-12 10:00,2019-06-12 11:00,4\n"
+                + "2019-06-12 10:00,2019-06-12 11:00,40,Standup,1\n");
+
+        List<String> lines = rejectLines();
+
+        assertEquals(0L, result.getImported());
+        assertEquals(5L, result.getRejected());
+        assertEquals("2,\"Attendees must be a whole number, not 'four'.\",2019-06-12 10:00,2019-06-12 11:00,four,Standup,1", lines.get(1));
+        assertTrue(lines.get(2).startsWith("3,Can't find any room with id or name 'Missing room'."));
+        assertTrue(lines.get(3).startsWith("4,Text '2019-06-12T10:00' could not be parsed"));
+        assertTrue(lines.get(4).startsWith("5,\"Expected 5 columns, found 3.\""));
+        assertTrue(lines.get(5).startsWith("6,Given room do not have enough capacity."));
+        verify(reservationRepository, never()).insertAll(anyList(), anyInt());
+    }
+
+    @Test
+    public void importCsv_unterminatedQuote_rejectedAndImportGoesOn() throws IOException {
+        ReservationImportResultDto result = importCsv(HEADER
+                + "2019-06-12 10:00,2019-06-12 11:00,4,\"Standup,1\n"
+                + "2019-06-12 13:00,2019-06-12 14:00,4,Review,1\n");
+
+        List<String> lines = rejectLines();
+
+        assertEquals(1L, result.getImported());
+        assertEquals(1L, result.getRejected());
+        assertEquals("2,Unterminated quoted field in the record starting at line 2.,\"2019-06-12 10:00,2019-06-12 11:00,4,\"\"Standup,1\"", lines.get(1));
+        assertEquals(1, booking.reservationIndex.count(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importCsv_headerWithoutRoom_throwsIllegalArgument() throws IOException {
+        importCsv("startDate,endDate,attendees\n");
+    }
+}
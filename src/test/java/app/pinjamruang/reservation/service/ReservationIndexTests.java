@@ -0,0 +1,202 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.ReservationIntervalDto;
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.RecurringReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.room.model.Room;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static app.pinjamruang.TestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ReservationIndexTests {
+    @InjectMocks
+    ReservationIndex index;
+
+    @Mock
+    ReservationRepository reservationRepository;
+
+    @Mock
+    RecurringReservationRepository recurringReservationRepository;
+
+    private Room room;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+    }
+
+    private Reservation createReservation(Long id, Room room, String startDate, String endDate) {
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", id);
+        reservation.setStartDate(LocalDateTime.parse(startDate, DTO_DATETIME_FORMATTER));
+        reservation.setEndDate(LocalDateTime.parse(endDate, DTO_DATETIME_FORMATTER));
+
+        return reservation;
+    }
+
+    private boolean hasOverlap(Long roomId, String startDate, String endDate, Long excludedId) {
+        return index.hasOverlap(
+                roomId,
+                LocalDateTime.parse(startDate, DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse(endDate, DTO_DATETIME_FORMATTER),
+                excludedId
+        );
+    }
+
+    private RecurrenceRule createWeeklyRule(Long seriesId, String startDate, String endDate, int count) {
+        return new RecurrenceRule(
+                seriesId,
+                1L,
+                RecurrenceFrequency.WEEKLY,
+                1,
+                LocalDateTime.parse(startDate, DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse(endDate, DTO_DATETIME_FORMATTER),
+                null,
+                count,
+                Collections.<LocalDate>emptySet()
+        );
+    }
+
+    @Test
+    public void load_indexesExistingReservations() {
+        when(reservationRepository.findAllIntervals()).thenReturn(Collections.singletonList(new ReservationIntervalDto(
+                1L,
+                1L,
+                LocalDateTime.parse("2019-06-12 10:00", DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse("2019-06-12 12:00", DTO_DATETIME_FORMATTER)
+        )));
+
+        index.load();
+
+        assertEquals(1, index.size());
+        assertTrue(hasOverlap(1L, "2019-06-12 11:00", "2019-06-12 11:30", null));
+    }
+
+    @Test
+    public void hasOverlap_partialAndContainingOverlaps_true() {
+        index.put(createReservation(1L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+
+        assertTrue(hasOverlap(1L, "2019-06-12 09:00", "2019-06-12 10:30", null));
+        assertTrue(hasOverlap(1L, "2019-06-12 11:30", "2019-06-12 13:00", null));
+        assertTrue(hasOverlap(1L, "2019-06-12 09:00", "2019-06-12 13:00", null));
+        assertTrue(hasOverlap(1L, "2019-06-12 10:30", "2019-06-12 11:00", null));
+    }
+
+    @Test
+    public void hasOverlap_adjacentReservations_false() {
+        index.put(createReservation(1L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+
+        assertFalse(hasOverlap(1L, "2019-06-12 09:00", "2019-06-12 10:00", null));
+        assertFalse(hasOverlap(1L, "2019-06-12 12:00", "2019-06-12 13:00", null));
+    }
+
+    @Test
+    public void hasOverlap_otherRoom_false() {
+        index.put(createReservation(1L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+
+        assertFalse(hasOverlap(2L, "2019-06-12 10:00", "2019-06-12 12:00", null));
+    }
+
+    @Test
+    public void hasOverlap_longReservationBeforeShortOne_true() {
+        index.put(createReservation(1L, room, "2019-06-12 09:00", "2019-06-12 17:00"));
+        index.put(createReservation(2L, room, "2019-06-12 10:00", "2019-06-12 10:30"));
+
+        assertTrue(hasOverlap(1L, "2019-06-12 15:00", "2019-06-12 16:00", null));
+    }
+
+    @Test
+    public void hasOverlap_excludedReservation_false() {
+        index.put(createReservation(1L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+
+        assertFalse(hasOverlap(1L, "2019-06-12 11:00", "2019-06-12 13:00", 1L));
+    }
+
+    @Test
+    public void put_movedReservation_replacesPreviousInterval() {
+        index.put(createReservation(1L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+        index.put(createReservation(1L, room, "2019-06-12 14:00", "2019-06-12 15:00"));
+
+        assertEquals(1, index.size());
+        assertFalse(hasOverlap(1L, "2019-06-12 10:00", "2019-06-12 12:00", null));
+        assertTrue(hasOverlap(1L, "2019-06-12 14:30", "2019-06-12 16:00", null));
+    }
+
+    @Test
+    public void remove_reservation_noLongerOverlaps() {
+        index.put(createReservation(1L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+
+        index.remove(1L);
+
+        assertEquals(0, index.size());
+        assertFalse(hasOverlap(1L, "2019-06-12 10:00", "2019-06-12 12:00", null));
+    }
+
+    @Test
+    public void remove_longestReservation_shrinksLongest() {
+        index.put(createReservation(1L, room, "2019-06-10 08:00", "2019-06-12 08:00"));
+        index.put(createReservation(2L, room, "2019-06-12 10:00", "2019-06-12 12:00"));
+        index.put(createReservation(3L, room, "2019-06-13 10:00", "2019-06-13 12:00"));
+
+        assertEquals(Duration.ofDays(2), index.longest(1L));
+
+        index.remove(1L);
+        assertEquals(Duration.ofHours(2), index.longest(1L));
+
+        index.remove(2L);
+        assertEquals(Duration.ofHours(2), index.longest(1L));
+
+        index.remove(3L);
+        assertEquals(Duration.ZERO, index.longest(1L));
+    }
+
+    @Test
+    public void hasOverlap_recurringOccurrence_true() {
+        index.putSeries(createWeeklyRule(1L, "2019-06-12 10:00", "2019-06-12 11:00", 52));
+
+        assertTrue(hasOverlap(1L, "2019-09-04 10:30", "2019-09-04 12:00", null));
+        assertFalse(hasOverlap(1L, "2019-09-05 10:30", "2019-09-05 12:00", null));
+    }
+
+    @Test
+    public void removeSeries_noLongerOverlaps() {
+        index.putSeries(createWeeklyRule(1L, "2019-06-12 10:00", "2019-06-12 11:00", 52));
+
+        index.removeSeries(1L);
+
+        assertFalse(hasOverlap(1L, "2019-09-04 10:30", "2019-09-04 12:00", null));
+    }
+
+    @Test
+    public void findConflicts_reservationsAndOtherSeries_reportsEachConflictingOccurrence() {
+        index.put(createReservation(1L, room, "2019-06-19 10:30", "2019-06-19 11:30"));
+        index.put(createReservation(2L, room, "2019-06-26 11:00", "2019-06-26 12:00"));
+        index.putSeries(createWeeklyRule(1L, "2019-07-03 09:00", "2019-07-03 10:01", 1));
+
+        List<LocalDateTime> conflicts = index.findConflicts(createWeeklyRule(2L, "2019-06-12 10:00", "2019-06-12 11:00", 5));
+
+        assertEquals(Arrays.asList(
+                LocalDateTime.parse("2019-06-19 10:00", DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse("2019-07-03 10:00", DTO_DATETIME_FORMATTER)
+        ), conflicts);
+    }
+}
@@ -1,38 +1,108 @@
 package app.pinjamruang.reservation.service;
 
+import app.pinjamruang.BookingFixture;
+import app.pinjamruang.metrics.BookingMetrics;
+import app.pinjamruang.persistence.KeysetPage;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.persistence.StaleWriteException;
+import app.pinjamruang.persistence.Tagged;
+import app.pinjamruang.reservation.dto.CreateRecurringReservationDto;
 import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.reservation.dto.ReservationBatchResultDto;
+import app.pinjamruang.reservation.dto.ReservationEventDto;
+import app.pinjamruang.reservation.dto.RoomOccupancyDto;
+import app.pinjamruang.reservation.exception.InvalidBatchException;
+import app.pinjamruang.reservation.exception.InvalidRecurrenceException;
 import app.pinjamruang.reservation.exception.RoomNotAvailableException;
+import app.pinjamruang.reservation.model.ArchivedReservation;
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.reservation.model.RecurringReservation;
 import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.ArchivedReservationRepository;
+import app.pinjamruang.reservation.repository.RecurringReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationExclusionConstraint;
 import app.pinjamruang.reservation.repository.ReservationRepository;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.service.RoomService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static app.pinjamruang.TestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class ReservationServiceTests {
+    private static final long LOAD_TIMEOUT_SECONDS = 1;
+    private static final int ROOMS = 8;
+    private static final int THREADS_PER_ROOM = 8;
+    private static final long SAVE_LATENCY_MILLIS = 50L;
+    private static final long OVERLAP_TIMEOUT_SECONDS = 5L;
+
     @InjectMocks
     ReservationService service;
 
+    final BookingFixture booking = new BookingFixture();
+
     @Mock
     ReservationRepository reservationRepository;
 
+    @Mock
+    RecurringReservationRepository recurringReservationRepository;
+
+    @Mock
+    ArchivedReservationRepository archivedReservationRepository;
+
+    @Mock
+    ReservationArchiver reservationArchiver;
+
     @Mock
     RoomService roomService;
 
+    @Mock
+    ReservationEventBroadcaster reservationEventBroadcaster;
+
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
     @Before
     public void setUp() {
         initMocks(this);
+        booking.wire(service);
     }
 
     @Test
@@ -42,10 +112,106 @@ public class ReservationServiceTests {
         verify(reservationRepository).findAll();
     }
 
+    @Test
+    public void getReservations_lastPage_noNextCursor() {
+        Reservation reservation = createDummyReservation(createDummyRoom());
+        when(reservationRepository.findAfter(null, 1L, null, null, KeysetPage.DEFAULT_LIMIT + 1))
+                .thenReturn(Collections.singletonList(reservation));
+
+        when(booking.resourceVersions.tag(ResourceVersions.RESERVATIONS, ResourceVersions.ROOMS)).thenReturn("3.2");
+
+        Tagged<KeysetPage<Reservation>> tagged = service.getReservations(null, null, 1L, null, null);
+        KeysetPage<Reservation> page = tagged.getValue();
+
+        assertEquals("3.2", tagged.getTag());
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void getArchivedReservations_rangeAfterArchive_skipsQuery() {
+        when(reservationArchiver.getArchivedUntil()).thenReturn(LocalDateTime.parse("2019-06-12 12:00", DTO_DATETIME_FORMATTER));
+
+        KeysetPage<ArchivedReservation> page = service.getArchivedReservations(
+                null, null, null, LocalDateTime.parse("2019-06-12 12:00", DTO_DATETIME_FORMATTER), null).getValue();
+
+        assertTrue(page.getItems().isEmpty());
+        verifyZeroInteractions(archivedReservationRepository);
+        verify(booking.resourceVersions).tag(ResourceVersions.RESERVATIONS);
+    }
+
+    @Test
+    public void getArchivedReservations_rangeReachingIntoArchive_queriesUpToArchiveEnd() {
+        LocalDateTime archivedUntil = LocalDateTime.parse("2019-06-12 12:00", DTO_DATETIME_FORMATTER);
+        LocalDateTime from = LocalDateTime.parse("2019-06-01 00:00", DTO_DATETIME_FORMATTER);
+        when(reservationArchiver.getArchivedUntil()).thenReturn(archivedUntil);
+
+        service.getArchivedReservations(5L, 10, 1L, from, null);
+
+        verify(archivedReservationRepository).findAfter(eq(5L), eq(1L), eq(from), eq(archivedUntil), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportReservations_writesOneJsonLinePerReservation() throws Exception {
+        Room room = createDummyRoom();
+        Reservation first = createDummyReservation(room);
+        Reservation second = createDummyReservation(room);
+        second.setAgenda("Retro");
+        doAnswer(invocation -> {
+            Consumer<Reservation> consumer = invocation.getArgument(4);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(reservationRepository).scroll(eq(1L), isNull(), isNull(), anyInt(), any(Consumer.class));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        service.exportReservations(1L, null, null, outputStream);
+
+        assertEquals(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n",
+                outputStream.toString("UTF-8"));
+    }
+
+    @Test
+    public void getOccupancy_singleRoom_marksReservedSlots() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        booking.reservationIndex.put(reservation);
+
+        List<RoomOccupancyDto> occupancy = service.getOccupancy(LocalDate.of(2019, 6, 12), 1L);
+
+        assertEquals(1, occupancy.size());
+        assertEquals(24, occupancy.get(0).getOccupiedSlots());
+        assertEquals('0', occupancy.get(0).getSlots().charAt(119));
+        assertEquals('1', occupancy.get(0).getSlots().charAt(120));
+        assertEquals('1', occupancy.get(0).getSlots().charAt(143));
+        assertEquals('0', occupancy.get(0).getSlots().charAt(144));
+    }
+
+    @Test
+    public void createReservation_afterOccupancyRead_gridInvalidated() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            ReflectionTestUtils.setField(reservation, "id", 1L);
+            return reservation;
+        });
+
+        assertEquals(0, service.getOccupancy(LocalDate.of(2019, 6, 12), 1L).get(0).getOccupiedSlots());
+
+        service.createReservation(createDummyReservationDto());
+
+        assertEquals(24, service.getOccupancy(LocalDate.of(2019, 6, 12), 1L).get(0).getOccupiedSlots());
+    }
+
     @Test(expected = ResourceNotFoundException.class)
     public void getReservationById_idNotFound_throwsResourceNotFoundException() {
         Reservation reservation = new Reservation();
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
 
         service.getReservationById(2L);
     }
@@ -53,7 +219,7 @@ public class ReservationServiceTests {
     @Test
     public void getReservationById_success() {
         Reservation reservation = new Reservation();
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
 
         service.getReservationById(1L);
     }
@@ -97,30 +263,44 @@ public class ReservationServiceTests {
     @Test(expected = RoomNotAvailableException.class)
     public void createReservation_roomIsAlreadyReserved_throwsRoomNotAvailableException() {
         Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
         when(roomService.getRoomById(1L)).thenReturn(room);
 
+        Reservation existingReservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(existingReservation, "id", 2L);
+        booking.reservationIndex.put(existingReservation);
+
         CreateReservationDto dto = new CreateReservationDto(
-                "2019-06-12 09:00",
-                "2019-06-12 09:10",
+                "2019-06-12 11:00",
+                "2019-06-12 13:00",
                 10,
                 "Testing",
                 1L
         );
-        LocalDateTime startDate = LocalDateTime.parse("2019-06-12 09:00", DTO_DATETIME_FORMATTER);
-        LocalDateTime endDate = LocalDateTime.parse("2019-06-12 09:10", DTO_DATETIME_FORMATTER);
-
-        List<Reservation> dummy = new ArrayList<>();
-        dummy.add(new Reservation());
-
-        when(
-                reservationRepository.findByStartDateBetweenAndEndDateBetween(eq(startDate), eq(endDate), eq(startDate), eq(endDate))
-        ).thenReturn(dummy);
 
         service.createReservation(dto);
 
         verifyZeroInteractions(reservationRepository);
     }
 
+    @Test(expected = RoomNotAvailableException.class)
+    public void createReservation_exclusionConstraintViolated_throwsRoomNotAvailableException() {
+        Room room = createDummyRoom();
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        when(reservationRepository.save(any(Reservation.class))).thenThrow(new DataIntegrityViolationException(
+                "conflicting key value violates exclusion constraint \"" + ReservationExclusionConstraint.CONSTRAINT_NAME + "\""));
+
+        CreateReservationDto dto = new CreateReservationDto(
+                "2019-06-12 10:00",
+                "2019-06-12 12:00",
+                10,
+                "Testing",
+                1L
+        );
+
+        service.createReservation(dto);
+    }
+
     @Test(expected = RoomNotAvailableException.class)
     public void createReservation_reservationWithinOneDay_throwsRoomNotAvailableException() {
         Room room = createDummyRoom();
@@ -164,13 +344,222 @@ public class ReservationServiceTests {
         verify(reservationRepository).save(any(Reservation.class));
     }
 
+    @Test
+    public void createReservation_rejected_countsRejectionReasonAndTimesOperation() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        MeterRegistry registry = booking.bookingMetrics.getMeterRegistry();
+
+        try {
+            service.createReservation(new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 11, "Testing", 1L));
+            fail("Expected the capacity check to reject the reservation");
+        } catch (RoomNotAvailableException e) {
+            assertEquals(RoomNotAvailableException.Reason.CAPACITY, e.getReason());
+        }
+
+        assertEquals(1.0, registry.get(BookingMetrics.REJECTION_COUNTER).tag("reason", "capacity").counter().count(), 0.0);
+        assertEquals(1L, registry.get(BookingMetrics.OPERATION_TIMER).tag("operation", "reservation.create").timer().count());
+    }
+
+    @Test
+    public void createReservation_success_gaugesReservationsPerRoom() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            ReflectionTestUtils.setField(reservation, "id", 1L);
+            return reservation;
+        });
+
+        service.createReservation(createDummyReservationDto());
+
+        assertEquals(1.0, booking.bookingMetrics.getMeterRegistry().get(BookingMetrics.ROOM_RESERVATIONS_GAUGE).tag("roomId", "1").gauge().value(), 0.0);
+        assertEquals(1L, booking.bookingMetrics.getMeterRegistry().get(BookingMetrics.OPERATION_TIMER).tag("operation", "reservation.conflict_check").timer().count());
+    }
+
+    @Test
+    public void createReservation_success_publishesCreatedEvent() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            ReflectionTestUtils.setField(reservation, "id", 7L);
+            return reservation;
+        });
+
+        service.createReservation(createDummyReservationDto());
+
+        verify(reservationEventBroadcaster).publish(argThat(event -> event.getType() == ReservationEventDto.Type.CREATED
+                && event.getReservationId().equals(7L)
+                && event.getRoomId().equals(1L)));
+    }
+
+    @Test
+    public void createReservation_concurrentRequestsForSameSlot_onlyOneSucceeds() throws Exception {
+        List<CreateReservationDto> dtos = new ArrayList<>();
+
+        for (long roomId = 1; roomId <= ROOMS; roomId++) {
+            for (int i = 0; i < THREADS_PER_ROOM; i++) {
+                dtos.add(new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", roomId));
+            }
+        }
+
+        AtomicInteger saves = new AtomicInteger();
+        stubSlowSaves(saves, null, null);
+
+        int succeeded = bookConcurrently(dtos);
+
+        assertEquals(ROOMS, succeeded);
+        assertEquals(ROOMS, saves.get());
+        assertEquals(ROOMS, booking.reservationIndex.size());
+    }
+
+    @Test
+    public void createReservation_differentRooms_proceedInParallel() throws Exception {
+        List<CreateReservationDto> dtos = new ArrayList<>();
+
+        for (long roomId = 1; roomId <= ROOMS; roomId++) {
+            dtos.add(new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", roomId));
+        }
+
+        AtomicInteger overlappingSaves = new AtomicInteger();
+        stubSlowSaves(new AtomicInteger(), new CountDownLatch(ROOMS), overlappingSaves);
+
+        int succeeded = bookConcurrently(dtos);
+
+        assertEquals(ROOMS, succeeded);
+        assertEquals("Saves of different rooms did not all run at the same time", ROOMS, overlappingSaves.get());
+    }
+
+    @Test
+    public void createReservations_conflictsInsideBatch_rejectsLaterItems() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        when(reservationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<CreateReservationDto> dtos = Arrays.asList(
+                new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "First", 1L),
+                new CreateReservationDto("2019-06-12 11:00", "2019-06-12 13:00", 10, "Overlaps first", 1L),
+                new CreateReservationDto("2019-06-12 12:00", "2019-06-12 13:00", 100, "Too many attendees", 1L),
+                new CreateReservationDto("2019-06-12 12:00", "2019-06-12 13:00", 10, "After first", 1L)
+        );
+
+        List<ReservationBatchResultDto> results = service.createReservations(dtos);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isCreated());
+        assertFalse(results.get(1).isCreated());
+        assertEquals("Given room is already reserved at given time.", results.get(1).getError());
+        assertFalse(results.get(2).isCreated());
+        assertEquals("Given room do not have enough capacity.", results.get(2).getError());
+        assertTrue(results.get(3).isCreated());
+        assertEquals("After first", results.get(3).getReservation().getAgenda());
+
+        verify(reservationRepository, times(1)).saveAll(anyList());
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    public void createReservations_batchRefusedByDatabase_savesItemsOneByOne() {
+        Room room = stubRoom();
+        DataIntegrityViolationException conflict = new DataIntegrityViolationException(
+                "conflicting key value violates exclusion constraint \"" + ReservationExclusionConstraint.CONSTRAINT_NAME + "\"");
+        when(reservationRepository.saveAll(anyList())).thenThrow(conflict);
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+
+            // Booked on another instance since the index was loaded.
+            if (reservation.getAgenda().equals("Booked elsewhere")) {
+                throw conflict;
+            }
+
+            ReflectionTestUtils.setField(reservation, "id", reservation.getStartDate().getHour() + 0L);
+            return reservation;
+        });
+
+        List<ReservationBatchResultDto> results = service.createReservations(Arrays.asList(
+                new CreateReservationDto("2019-06-12 10:00", "2019-06-12 11:00", 10, "First", 1L),
+                new CreateReservationDto("2019-06-12 12:00", "2019-06-12 13:00", 10, "Booked elsewhere", 1L),
+                new CreateReservationDto("2019-06-12 14:00", "2019-06-12 15:00", 10, "Last", 1L)
+        ));
+
+        assertTrue(results.get(0).isCreated());
+        assertEquals("Given room is already reserved at given time.", results.get(1).getError());
+        assertTrue(results.get(2).isCreated());
+        assertEquals(2, booking.reservationIndex.count(room.getId()));
+        verify(booking.roomUtilization, times(2)).apply(any(UtilizationChange.class));
+        verify(reservationEventBroadcaster, times(2)).publish(any(ReservationEventDto.class));
+    }
+
+    @Test
+    public void createReservations_conflictWithExistingReservation_rejected() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+
+        Reservation existingReservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(existingReservation, "id", 2L);
+        booking.reservationIndex.put(existingReservation);
+
+        List<ReservationBatchResultDto> results = service.createReservations(Collections.singletonList(
+                new CreateReservationDto("2019-06-12 11:00", "2019-06-12 13:00", 10, "Testing", 1L)
+        ));
+
+        assertFalse(results.get(0).isCreated());
+        verify(reservationRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    public void createReservations_roomNotFound_rejected() {
+        when(roomService.getRoomById(1L)).thenThrow(new ResourceNotFoundException("Can't found room with id 1"));
+
+        List<ReservationBatchResultDto> results = service.createReservations(Collections.singletonList(
+                new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", 1L)
+        ));
+
+        assertFalse(results.get(0).isCreated());
+        assertEquals("Can't found room with id 1", results.get(0).getError());
+    }
+
+    @Test
+    public void createReservations_missingFields_rejectedIndividually() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+        when(reservationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<ReservationBatchResultDto> results = service.createReservations(Arrays.asList(
+                new CreateReservationDto(null, "2019-06-12 12:00", 10, "No start", 1L),
+                new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", null, "No attendees", 1L),
+                new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "No room", null),
+                null,
+                new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Complete", 1L)
+        ));
+
+        assertEquals("Missing startDate.", results.get(0).getError());
+        assertEquals("Missing attendees.", results.get(1).getError());
+        assertEquals("Missing roomId.", results.get(2).getError());
+        assertEquals("Missing reservation.", results.get(3).getError());
+        assertTrue(results.get(4).isCreated());
+        verify(roomService, times(1)).getRoomById(1L);
+    }
+
+    @Test(expected = InvalidBatchException.class)
+    public void createReservations_tooManyItems_throwsInvalidBatchException() {
+        service.createReservations(Collections.nCopies(ReservationService.MAX_BATCH_SIZE + 1, createDummyReservationDto()));
+    }
+
     @Test(expected = RoomNotAvailableException.class)
     public void updateReservation_notEnoughCapacity_throwsResourceNotFoundException() {
         Room room = createDummyRoom();
         when(roomService.getRoomById(1L)).thenReturn(room);
 
         Reservation reservation = createDummyReservation(room);
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
 
         CreateReservationDto dto = new CreateReservationDto(
                 "2019-06-12 10:00",
@@ -191,7 +580,7 @@ public class ReservationServiceTests {
         when(roomService.getRoomById(1L)).thenReturn(room);
 
         Reservation reservation = createDummyReservation(room);
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
 
         CreateReservationDto dto = new CreateReservationDto(
                 "2019-06-12 01:00",
@@ -209,32 +598,55 @@ public class ReservationServiceTests {
     @Test(expected = RoomNotAvailableException.class)
     public void updateReservation_roomIsAlreadyReserved_throwsResourceNotFoundException() {
         Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
         when(roomService.getRoomById(1L)).thenReturn(room);
 
         Reservation reservation = createDummyReservation(room);
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+
+        Reservation otherReservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(otherReservation, "id", 2L);
+        otherReservation.setStartDate(LocalDateTime.parse("2019-06-12 14:00", DTO_DATETIME_FORMATTER));
+        otherReservation.setEndDate(LocalDateTime.parse("2019-06-12 15:00", DTO_DATETIME_FORMATTER));
+        booking.reservationIndex.put(otherReservation);
 
         CreateReservationDto dto = new CreateReservationDto(
-                "2019-06-12 09:00",
-                "2019-06-12 09:10",
+                "2019-06-12 13:30",
+                "2019-06-12 14:30",
                 10,
                 "Testing",
                 1L
         );
 
-        LocalDateTime startDate = LocalDateTime.parse("2019-06-12 09:00", DTO_DATETIME_FORMATTER);
-        LocalDateTime endDate = LocalDateTime.parse("2019-06-12 09:10", DTO_DATETIME_FORMATTER);
+        service.updateReservation(1L, dto);
 
-        List<Reservation> dummy = new ArrayList<>();
-        dummy.add(new Reservation());
+        verifyZeroInteractions(reservationRepository);
+    }
 
-        when(
-                reservationRepository.findByStartDateBetweenAndEndDateBetween(eq(startDate), eq(endDate), eq(startDate), eq(endDate))
-        ).thenReturn(dummy);
+    @Test
+    public void updateReservation_overlapsOnlyItself_success() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        booking.reservationIndex.put(reservation);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(reservation);
+
+        CreateReservationDto dto = new CreateReservationDto(
+                "2019-06-12 11:00",
+                "2019-06-12 13:00",
+                10,
+                "Testing",
+                1L
+        );
 
         service.updateReservation(1L, dto);
 
-        verifyZeroInteractions(reservationRepository);
+        verify(reservationRepository).save(any(Reservation.class));
     }
 
     @Test
@@ -243,7 +655,7 @@ public class ReservationServiceTests {
         when(roomService.getRoomById(1L)).thenReturn(room);
 
         Reservation reservation = createDummyReservation(room);
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
 
         CreateReservationDto dto = new CreateReservationDto(
                 "2019-06-12 10:00",
@@ -260,22 +672,449 @@ public class ReservationServiceTests {
         verify(reservationRepository).save(any(Reservation.class));
     }
 
+    @Test
+    public void updateReservation_concurrentWrite_retriesOnFreshRow() {
+        Room room = createDummyRoom();
+        when(roomService.getRoomById(1L)).thenReturn(room);
+
+        Reservation reservation = createDummyReservation(room);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(any(Reservation.class)))
+                .thenThrow(new OptimisticLockingFailureException("stale"))
+                .thenReturn(reservation);
+
+        service.updateReservation(1L, new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", 1L));
+
+        verify(reservationRepository, times(2)).findWithRoomById(1L);
+        verify(reservationRepository, times(2)).save(any(Reservation.class));
+    }
+
+    @Test(expected = StaleWriteException.class)
+    public void updateReservation_staleClientVersion_throwsStaleWriteException() {
+        Reservation reservation = createDummyReservation(createDummyRoom());
+        ReflectionTestUtils.setField(reservation, "version", 2L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+
+        CreateReservationDto dto = new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", 1L);
+        dto.setVersion(1L);
+
+        try {
+            service.updateReservation(1L, dto);
+        } finally {
+            verify(reservationRepository, never()).save(any(Reservation.class));
+        }
+    }
+
+    @Test
+    public void updateReservation_clientVersionLosesRace_notRetried() {
+        Room room = createDummyRoom();
+        when(roomService.getRoomById(1L)).thenReturn(room);
+
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "version", 1L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(any(Reservation.class))).thenThrow(new OptimisticLockingFailureException("stale"));
+
+        CreateReservationDto dto = new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", 1L);
+        dto.setVersion(1L);
+
+        try {
+            service.updateReservation(1L, dto);
+            fail("A write against a client version must not be replayed");
+        } catch (StaleWriteException e) {
+            verify(reservationRepository, times(1)).save(any(Reservation.class));
+        }
+    }
+
+    private CreateRecurringReservationDto createWeeklyDto(Integer count) {
+        return new CreateRecurringReservationDto(
+                "2019-06-12 10:00",
+                "2019-06-12 12:00",
+                10,
+                "Standup",
+                1L,
+                RecurrenceFrequency.WEEKLY,
+                1,
+                null,
+                count
+        );
+    }
+
+    private Room stubRoom() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+
+        return room;
+    }
+
+    private Reservation stubReservation(Room room, Long version) {
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        ReflectionTestUtils.setField(reservation, "version", version);
+        when(reservationRepository.findRoomIdById(1L)).thenReturn(Optional.of(room.getId()));
+
+        return reservation;
+    }
+
+    private int bookConcurrently(List<CreateReservationDto> dtos) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(dtos.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (CreateReservationDto dto : dtos) {
+            results.add(executor.submit(() -> {
+                start.await();
+
+                try {
+                    service.createReservation(dto);
+                    return true;
+                } catch (RoomNotAvailableException e) {
+                    return false;
+                }
+            }));
+        }
+
+        start.countDown();
+
+        int succeeded = 0;
+
+        try {
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    succeeded++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return succeeded;
+    }
+
+    /**
+     * Serves every room and makes saves slow: each save sleeps, or, given {@code savesInFlight}, waits until that
+     * many saves are running and counts itself in {@code overlappingSaves} if they all were.
+     */
+    private void stubSlowSaves(AtomicInteger saves, CountDownLatch savesInFlight, AtomicInteger overlappingSaves) {
+        AtomicLong ids = new AtomicLong();
+
+        when(roomService.getRoomById(anyLong())).thenAnswer(invocation -> {
+            Room room = createDummyRoom();
+            ReflectionTestUtils.setField(room, "id", invocation.getArgument(0));
+            return room;
+        });
+
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+
+            if (savesInFlight == null) {
+                Thread.sleep(SAVE_LATENCY_MILLIS);
+            } else {
+                savesInFlight.countDown();
+
+                if (savesInFlight.await(OVERLAP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    overlappingSaves.incrementAndGet();
+                }
+            }
+
+            ReflectionTestUtils.setField(reservation, "id", ids.incrementAndGet());
+            saves.incrementAndGet();
+            return reservation;
+        });
+    }
+
+    private void stubSeriesSave() {
+        when(recurringReservationRepository.save(any(RecurringReservation.class))).thenAnswer(invocation -> {
+            RecurringReservation series = invocation.getArgument(0);
+            ReflectionTestUtils.setField(series, "id", 1L);
+            return series;
+        });
+    }
+
+    private void stubSeries(RecurringReservation series) {
+        when(recurringReservationRepository.findRoomIdById(1L)).thenReturn(Optional.of(series.getRoom().getId()));
+        when(recurringReservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(series));
+    }
+
+    @Test
+    public void createRecurringReservation_success_blocksEveryOccurrence() {
+        stubRoom();
+        stubSeriesSave();
+
+        service.createRecurringReservation(createWeeklyDto(52));
+
+        verify(recurringReservationRepository).save(any(RecurringReservation.class));
+        verify(reservationRepository, never()).save(any(Reservation.class));
+
+        try {
+            service.createReservation(new CreateReservationDto("2019-12-11 11:00", "2019-12-11 13:00", 10, "Testing", 1L));
+            fail("Expected the series to block its 27th occurrence");
+        } catch (RoomNotAvailableException e) {
+            verify(reservationRepository, never()).save(any(Reservation.class));
+        }
+    }
+
+    @Test
+    public void createRecurringReservation_conflictWithExistingReservation_throwsRoomNotAvailableException() {
+        Room room = stubRoom();
+        Reservation existing = createDummyReservation(room);
+        ReflectionTestUtils.setField(existing, "id", 1L);
+        existing.setStartDate(LocalDateTime.parse("2019-06-26 11:00", DTO_DATETIME_FORMATTER));
+        existing.setEndDate(LocalDateTime.parse("2019-06-26 11:30", DTO_DATETIME_FORMATTER));
+        booking.reservationIndex.put(existing);
+
+        try {
+            service.createRecurringReservation(createWeeklyDto(4));
+            fail("Expected the third occurrence to conflict");
+        } catch (RoomNotAvailableException e) {
+            assertTrue(e.getMessage().contains("2019-06-26 10:00"));
+        }
+
+        verify(recurringReservationRepository, never()).save(any(RecurringReservation.class));
+    }
+
+    @Test(expected = InvalidRecurrenceException.class)
+    public void createRecurringReservation_withoutUntilOrCount_throwsInvalidRecurrenceException() {
+        stubRoom();
+
+        service.createRecurringReservation(createWeeklyDto(null));
+    }
+
+    @Test(expected = InvalidRecurrenceException.class)
+    public void createRecurringReservation_tooManyOccurrences_throwsInvalidRecurrenceException() {
+        stubRoom();
+
+        service.createRecurringReservation(createWeeklyDto(ReservationService.MAX_SERIES_OCCURRENCES + 1));
+    }
+
+    @Test
+    public void cancelOccurrence_freesThatDateOnly() {
+        stubRoom();
+        stubSeriesSave();
+        RecurringReservation series = service.createRecurringReservation(createWeeklyDto(4));
+        stubSeries(series);
+
+        service.cancelOccurrence(1L, LocalDate.of(2019, 6, 19));
+
+        assertTrue(series.getExceptionDates().contains(LocalDate.of(2019, 6, 19)));
+        assertTrue(booking.occupancyGrid.isFree(1L,
+                LocalDateTime.parse("2019-06-19 10:00", DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse("2019-06-19 12:00", DTO_DATETIME_FORMATTER), null));
+        assertFalse(booking.occupancyGrid.isFree(1L,
+                LocalDateTime.parse("2019-06-26 10:00", DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse("2019-06-26 12:00", DTO_DATETIME_FORMATTER), null));
+        assertEquals(3, service.getOccurrences(1L, null, null, null).size());
+        verify(reservationEventBroadcaster).publish(argThat(event -> event.getType() == ReservationEventDto.Type.SERIES_CREATED
+                && event.getSeriesId().equals(1L)));
+        verify(reservationEventBroadcaster).publish(argThat(event -> event.getType() == ReservationEventDto.Type.OCCURRENCE_CANCELLED
+                && event.getStartDate().equals(LocalDateTime.parse("2019-06-19 10:00", DTO_DATETIME_FORMATTER))
+                && event.getEndDate().equals(LocalDateTime.parse("2019-06-19 12:00", DTO_DATETIME_FORMATTER))));
+    }
+
+    @Test
+    public void deleteRecurringReservation_freesEveryOccurrenceAndPublishes() {
+        stubRoom();
+        stubSeriesSave();
+        RecurringReservation series = service.createRecurringReservation(createWeeklyDto(4));
+        stubSeries(series);
+
+        service.deleteRecurringReservation(1L);
+
+        verify(recurringReservationRepository).deleteById(1L);
+        assertTrue(booking.occupancyGrid.isFree(1L,
+                LocalDateTime.parse("2019-06-26 10:00", DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse("2019-06-26 12:00", DTO_DATETIME_FORMATTER), null));
+        verify(reservationEventBroadcaster).publish(argThat(event -> event.getType() == ReservationEventDto.Type.SERIES_DELETED
+                && event.getSeriesId().equals(1L) && event.getReservationId() == null));
+    }
+
+    @Test
+    public void cancelOccurrence_concurrentCancellations_keepEveryDate() throws Exception {
+        stubRoom();
+        stubSeriesSave();
+        RecurringReservation created = service.createRecurringReservation(createWeeklyDto(4));
+        AtomicReference<Set<LocalDate>> storedExceptionDates = new AtomicReference<>(new HashSet<>());
+        CountDownLatch loads = new CountDownLatch(2);
+
+        when(recurringReservationRepository.findRoomIdById(1L)).thenReturn(Optional.of(1L));
+        when(recurringReservationRepository.findWithRoomById(1L)).thenAnswer(invocation -> {
+            // A copy per caller, as each transaction reads the series into its own persistence context.
+            RecurringReservation series = new RecurringReservation(
+                    new Reservation(created.getStartDate(), created.getEndDate(), created.getAttendees(), created.getAgenda(), created.getRoom()),
+                    created.getFrequency(), created.getInterval(), created.getUntil(), created.getCount());
+            ReflectionTestUtils.setField(series, "id", 1L);
+            series.getExceptionDates().addAll(storedExceptionDates.get());
+
+            // Lets both cancellations read the series before either saves, unless the lock keeps one out.
+            loads.countDown();
+            loads.await(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            return Optional.of(series);
+        });
+        when(recurringReservationRepository.save(any(RecurringReservation.class))).thenAnswer(invocation -> {
+            RecurringReservation series = invocation.getArgument(0);
+            storedExceptionDates.set(new HashSet<>(series.getExceptionDates()));
+            return series;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> first = executor.submit(() -> service.cancelOccurrence(1L, LocalDate.of(2019, 6, 19)));
+            Future<?> second = executor.submit(() -> service.cancelOccurrence(1L, LocalDate.of(2019, 6, 26)));
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList(LocalDate.of(2019, 6, 19), LocalDate.of(2019, 6, 26))), storedExceptionDates.get());
+        assertEquals(2, service.getOccurrences(1L, null, null, null).size());
+    }
+
+    @Test
+    public void cancelOccurrence_cancelledTwice_subtractsUtilizationOnce() {
+        stubRoom();
+        stubSeriesSave();
+        RecurringReservation series = service.createRecurringReservation(createWeeklyDto(4));
+        stubSeries(series);
+
+        service.cancelOccurrence(1L, LocalDate.of(2019, 6, 19));
+        service.cancelOccurrence(1L, LocalDate.of(2019, 6, 19));
+
+        // Once for creating the series and once for the first cancellation.
+        verify(booking.roomUtilization, times(2)).apply(any(UtilizationChange.class));
+        verify(recurringReservationRepository, times(2)).save(any(RecurringReservation.class));
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void cancelOccurrence_dateWithoutOccurrence_throwsResourceNotFoundException() {
+        stubRoom();
+        stubSeriesSave();
+        RecurringReservation series = service.createRecurringReservation(createWeeklyDto(4));
+        stubSeries(series);
+
+        service.cancelOccurrence(1L, LocalDate.of(2019, 6, 20));
+    }
+
+    @Test
+    public void updateReservation_movedToAnotherRoom_publishesPreviousRoom() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        Room otherRoom = createDummyRoom();
+        ReflectionTestUtils.setField(otherRoom, "id", 2L);
+        when(roomService.getRoomById(2L)).thenReturn(otherRoom);
+
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(reservation);
+
+        service.updateReservation(1L, new CreateReservationDto("2019-06-12 10:00", "2019-06-12 12:00", 10, "Testing", 2L));
+
+        verify(reservationEventBroadcaster).publish(argThat(event -> event.getType() == ReservationEventDto.Type.UPDATED
+                && event.getRoomId().equals(2L)
+                && event.getPreviousRoomId().equals(1L)));
+    }
+
+    @Test
+    public void updateReservation_movedToAnotherRoom_invalidatesBothCalendarWeeks() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        Room otherRoom = createDummyRoom();
+        ReflectionTestUtils.setField(otherRoom, "id", 2L);
+        when(roomService.getRoomById(2L)).thenReturn(otherRoom);
+
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        LocalDateTime previousStartDate = reservation.getStartDate();
+        LocalDateTime previousEndDate = reservation.getEndDate();
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(reservation);
+
+        service.updateReservation(1L, new CreateReservationDto("2019-06-19 10:00", "2019-06-19 12:00", 10, "Testing", 2L));
+
+        verify(booking.roomCalendar).invalidate(1L, previousStartDate, previousEndDate);
+        verify(booking.roomCalendar).invalidate(2L, LocalDateTime.of(2019, 6, 19, 10, 0), LocalDateTime.of(2019, 6, 19, 12, 0));
+        verify(booking.roomCalendar, never()).invalidateRoom(anyLong());
+    }
+
+    @Test
+    public void updateReservation_movedWithinDay_utilizationNetsOut() {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(roomService.getRoomById(1L)).thenReturn(room);
+
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(reservation);
+
+        service.updateReservation(1L, new CreateReservationDto("2019-06-12 14:00", "2019-06-12 16:00", 10, "Testing", 1L));
+
+        verify(booking.roomUtilization).apply(argThat(UtilizationChange::isEmpty));
+    }
+
     @Test(expected = ResourceNotFoundException.class)
     public void deleteReservation_reservationNotExist_throwsResourceNotFoundException() {
-        when(reservationRepository.getOne(1L)).thenReturn(null);
+        when(reservationRepository.findRoomIdById(1L)).thenReturn(Optional.empty());
+
+        try {
+            service.deleteReservation(1L);
+        } finally {
+            verify(reservationRepository, never()).deleteByIdAndVersion(any(), any());
+        }
+    }
+
+    @Test
+    public void deleteReservation_success() {
+        Reservation reservation = stubReservation(stubRoom(), 1L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.deleteByIdAndVersion(1L, 1L)).thenReturn(1);
 
         service.deleteReservation(1L);
 
-        verifyNoMoreInteractions(reservationRepository);
+        verify(reservationRepository).deleteByIdAndVersion(1L, 1L);
+        verify(booking.reservationIndex).remove(1L);
+        verify(reservationEventBroadcaster).publish(argThat(event -> event.getType() == ReservationEventDto.Type.DELETED));
+        verify(booking.roomUtilization).apply(argThat(change -> change.deltas().size() == 1
+                && change.deltas().get(0).getReservations() == -1
+                && change.deltas().get(0).getBookedMinutes() == -120
+                && change.deltas().get(0).getAttendeeMinutes() == -1200));
     }
 
     @Test
-    public void deleteReservation_success() {
-        Reservation reservation = createDummyReservation(createDummyRoom());
-        when(reservationRepository.getOne(1L)).thenReturn(reservation);
+    public void deleteReservation_racesUpdate_deletesUpdatedRow() {
+        Room room = stubRoom();
+        Reservation read = stubReservation(room, 1L);
+        Reservation updated = stubReservation(room, 2L);
+        updated.setAttendees(20);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(read), Optional.of(updated));
+        // The update commits between the delete's read and its write.
+        when(reservationRepository.deleteByIdAndVersion(1L, 1L)).thenReturn(0);
+        when(reservationRepository.deleteByIdAndVersion(1L, 2L)).thenReturn(1);
 
         service.deleteReservation(1L);
 
-        verify(reservationRepository).deleteById(1L);
+        verify(booking.roomUtilization).apply(argThat(change -> change.deltas().get(0).getAttendeeMinutes() == -2400));
+        verify(booking.roomUtilization, times(1)).apply(any(UtilizationChange.class));
+        verify(reservationEventBroadcaster, times(1)).publish(any(ReservationEventDto.class));
+    }
+
+    @Test
+    public void deleteReservation_alwaysLosesToUpdates_throwsStaleWriteException() {
+        Reservation reservation = stubReservation(stubRoom(), 1L);
+        when(reservationRepository.findWithRoomById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.deleteByIdAndVersion(1L, 1L)).thenReturn(0);
+
+        try {
+            service.deleteReservation(1L);
+            fail("A delete that never matches the current version must not succeed");
+        } catch (StaleWriteException e) {
+            verify(reservationRepository, times(3)).deleteByIdAndVersion(1L, 1L);
+            verify(booking.roomUtilization, never()).apply(any(UtilizationChange.class));
+            verify(booking.reservationIndex, never()).remove(1L);
+        }
     }
 }
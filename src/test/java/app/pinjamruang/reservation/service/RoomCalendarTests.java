@@ -0,0 +1,157 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.dto.CalendarDayDto;
+import app.pinjamruang.reservation.dto.FreeSlotDto;
+import app.pinjamruang.reservation.dto.RoomCalendarDto;
+import app.pinjamruang.reservation.model.RecurrenceFrequency;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.room.model.Room;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static app.pinjamruang.TestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RoomCalendarTests {
+    private static final LocalDate MONDAY = LocalDate.of(2019, 6, 10);
+
+    @InjectMocks
+    RoomCalendar calendar;
+
+    @Mock
+    ReservationRepository reservationRepository;
+
+    @Spy
+    ReservationIndex reservationIndex = new ReservationIndex();
+
+    private Room room;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "id", 1L);
+        when(reservationRepository.findOverlapping(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.emptyList());
+    }
+
+    private LocalDateTime parse(String dateTime) {
+        return LocalDateTime.parse(dateTime, DTO_DATETIME_FORMATTER);
+    }
+
+    private Reservation reservation(Long id, String startDate, String endDate) {
+        Reservation reservation = createDummyReservation(room);
+        ReflectionTestUtils.setField(reservation, "id", id);
+        reservation.setStartDate(parse(startDate));
+        reservation.setEndDate(parse(endDate));
+
+        return reservation;
+    }
+
+    private void assertSlot(FreeSlotDto slot, String startDate, String endDate) {
+        assertEquals(parse(startDate), slot.getStartDate());
+        assertEquals(parse(endDate), slot.getEndDate());
+    }
+
+    @Test
+    public void getWeek_anyDayOfWeek_startsOnMondayWithSevenDays() {
+        RoomCalendarDto week = calendar.getWeek(room, LocalDate.of(2019, 6, 16));
+
+        assertEquals(MONDAY, week.getWeekStart());
+        assertEquals(7, week.getDays().size());
+        assertEquals(LocalDate.of(2019, 6, 16), week.getDays().get(6).getDate());
+        verify(reservationRepository).findOverlapping(1L, MONDAY.atStartOfDay(), MONDAY.plusWeeks(1).atStartOfDay());
+    }
+
+    @Test
+    public void getWeek_reservationsAndSeries_freeSlotsBetweenOpenAndClose() {
+        when(reservationRepository.findOverlapping(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(Arrays.asList(
+                reservation(1L, "2019-06-12 10:00", "2019-06-12 11:00"),
+                reservation(2L, "2019-06-12 10:30", "2019-06-12 12:00")
+        ));
+        reservationIndex.putSeries(new RecurrenceRule(7L, 1L, RecurrenceFrequency.DAILY, 1,
+                parse("2019-06-11 14:00"), parse("2019-06-11 15:00"), null, 2, Collections.emptySet()));
+
+        CalendarDayDto wednesday = calendar.getWeek(room, MONDAY).getDays().get(2);
+        List<FreeSlotDto> freeSlots = wednesday.getFreeSlots();
+
+        assertEquals(3, wednesday.getReservations().size());
+        assertEquals(Long.valueOf(7L), wednesday.getReservations().get(2).getSeriesId());
+        assertEquals(3, freeSlots.size());
+        assertSlot(freeSlots.get(0), "2019-06-12 09:00", "2019-06-12 10:00");
+        assertSlot(freeSlots.get(1), "2019-06-12 12:00", "2019-06-12 14:00");
+        assertSlot(freeSlots.get(2), "2019-06-12 15:00", "2019-06-12 18:00");
+
+        CalendarDayDto thursday = calendar.getWeek(room, MONDAY).getDays().get(3);
+        assertTrue(thursday.getReservations().isEmpty());
+        assertSlot(thursday.getFreeSlots().get(0), "2019-06-13 09:00", "2019-06-13 18:00");
+    }
+
+    @Test
+    public void getWeek_cached_queriedOnce() {
+        calendar.getWeek(room, MONDAY);
+        calendar.getWeek(room, MONDAY.plusDays(3));
+
+        verify(reservationRepository, times(1)).findOverlapping(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void invalidate_onlyDropsTheWeeksTouched() {
+        calendar.getWeek(room, MONDAY);
+        calendar.getWeek(room, MONDAY.plusWeeks(1));
+
+        calendar.invalidate(1L, parse("2019-06-19 10:00"), parse("2019-06-19 11:00"));
+        calendar.getWeek(room, MONDAY);
+        calendar.getWeek(room, MONDAY.plusWeeks(1));
+
+        verify(reservationRepository, times(1)).findOverlapping(1L, MONDAY.atStartOfDay(), MONDAY.plusWeeks(1).atStartOfDay());
+        verify(reservationRepository, times(2)).findOverlapping(1L, MONDAY.plusWeeks(1).atStartOfDay(), MONDAY.plusWeeks(2).atStartOfDay());
+    }
+
+    @Test
+    public void invalidateRoom_dropsEveryWeekOfTheRoom() {
+        calendar.getWeek(room, MONDAY);
+        calendar.getWeek(room, MONDAY.plusWeeks(1));
+
+        calendar.invalidateRoom(1L);
+        calendar.getWeek(room, MONDAY);
+        calendar.getWeek(room, MONDAY.plusWeeks(1));
+
+        verify(reservationRepository, times(4)).findOverlapping(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void getWeek_builtWithOlderRoom_rebuiltWithNewOpeningHours() {
+        ReflectionTestUtils.setField(room, "version", 0L);
+        // Stands for a week built by a read that loaded the room before the update and outran its invalidation.
+        calendar.getWeek(room, MONDAY);
+
+        Room updated = createDummyRoom();
+        ReflectionTestUtils.setField(updated, "id", 1L);
+        ReflectionTestUtils.setField(updated, "version", 1L);
+        updated.setOpenTime(LocalTime.parse("07:00"));
+
+        RoomCalendarDto week = calendar.getWeek(updated, MONDAY);
+        calendar.getWeek(updated, MONDAY);
+
+        assertSlot(week.getDays().get(0).getFreeSlots().get(0), "2019-06-10 07:00", "2019-06-10 18:00");
+        verify(reservationRepository, times(2)).findOverlapping(1L, MONDAY.atStartOfDay(), MONDAY.plusWeeks(1).atStartOfDay());
+    }
+}
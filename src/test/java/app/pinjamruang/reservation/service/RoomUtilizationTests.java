@@ -0,0 +1,139 @@
+package app.pinjamruang.reservation.service;
+
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.model.RoomDayUtilization;
+import app.pinjamruang.reservation.repository.RecurringReservationRepository;
+import app.pinjamruang.reservation.repository.ReservationRepository;
+import app.pinjamruang.reservation.repository.RoomDayUtilizationRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static app.pinjamruang.TestUtils.DTO_DATETIME_FORMATTER;
+import static app.pinjamruang.TestUtils.createDummyReservation;
+import static app.pinjamruang.TestUtils.createDummyRoom;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RoomUtilizationTests {
+    private static final LocalDate DATE = LocalDate.of(2019, 6, 12);
+
+    @InjectMocks
+    RoomUtilization utilization;
+
+    @Mock
+    RoomDayUtilizationRepository utilizationRepository;
+
+    @Mock
+    ReservationRepository reservationRepository;
+
+    @Mock
+    RecurringReservationRepository recurringReservationRepository;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+    }
+
+    private LocalDateTime parse(String dateTime) {
+        return LocalDateTime.parse(dateTime, DTO_DATETIME_FORMATTER);
+    }
+
+    @Test
+    public void change_acrossMidnight_splitPerDay() {
+        List<RoomDayUtilization> deltas = new UtilizationChange()
+                .add(1L, parse("2019-06-12 23:00"), parse("2019-06-13 01:30"), 4)
+                .deltas();
+
+        assertEquals(2, deltas.size());
+        assertEquals(60L, deltas.get(0).getBookedMinutes());
+        assertEquals(240L, deltas.get(0).getAttendeeMinutes());
+        assertEquals(DATE.plusDays(1), deltas.get(1).getDate());
+        assertEquals(90L, deltas.get(1).getBookedMinutes());
+        assertEquals(1, deltas.get(1).getReservations());
+    }
+
+    @Test
+    public void apply_everyDeltaUpsertedAndAddedUp() {
+        utilization.apply(new UtilizationChange().add(1L, parse("2019-06-12 10:00"), parse("2019-06-12 11:00"), 5));
+        utilization.apply(new UtilizationChange().add(1L, parse("2019-06-12 13:00"), parse("2019-06-12 13:30"), 2));
+
+        verify(utilizationRepository, times(2)).add(argThat(deltas -> deltas.size() == 1));
+
+        RoomDayUtilization day = utilization.get(1L, DATE);
+        assertEquals(2, day.getReservations());
+        assertEquals(90L, day.getBookedMinutes());
+        assertEquals(360L, day.getAttendeeMinutes());
+        assertNull(utilization.get(2L, DATE));
+    }
+
+    @Test
+    public void apply_inTransaction_addedToMemoryOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            utilization.apply(new UtilizationChange().add(1L, parse("2019-06-12 10:00"), parse("2019-06-12 11:00"), 5));
+
+            verify(utilizationRepository).add(argThat(deltas -> deltas.size() == 1));
+            assertNull(utilization.get(1L, DATE));
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(60L, utilization.get(1L, DATE).getBookedMinutes());
+    }
+
+    @Test
+    public void apply_changeNetsOut_nothingWritten() {
+        utilization.apply(new UtilizationChange()
+                .subtract(1L, parse("2019-06-12 10:00"), parse("2019-06-12 11:00"), 5)
+                .add(1L, parse("2019-06-12 15:00"), parse("2019-06-12 16:00"), 5));
+
+        verifyZeroInteractions(utilizationRepository);
+    }
+
+    @Test
+    public void load_storedTotals_noBackfill() {
+        when(utilizationRepository.findAll()).thenReturn(Collections.singletonList(new RoomDayUtilization(1L, DATE, 3, 180L, 900L)));
+
+        utilization.load();
+
+        assertEquals(180L, utilization.get(1L, DATE).getBookedMinutes());
+        verifyZeroInteractions(reservationRepository);
+    }
+
+    @Test
+    public void load_emptyTable_backfilledFromReservationsAndSeries() {
+        when(utilizationRepository.findAll()).thenReturn(Collections.emptyList());
+        when(recurringReservationRepository.findAll()).thenReturn(Collections.emptyList());
+
+        doAnswer(invocation -> {
+            Consumer<Reservation> consumer = invocation.getArgument(4);
+            Reservation reservation = createDummyReservation(createDummyRoom());
+            ReflectionTestUtils.setField(reservation.getRoom(), "id", 1L);
+            consumer.accept(reservation);
+            return null;
+        }).when(reservationRepository).scroll(isNull(), isNull(), isNull(), anyInt(), any());
+
+        utilization.load();
+
+        verify(recurringReservationRepository).findAll();
+        verify(utilizationRepository).replace(argThat(totals -> totals.size() == 1 && totals.get(0).getReservations() == 1));
+        verify(utilizationRepository, never()).add(anyList());
+        assertEquals(1, utilization.get(1L, DATE).getReservations());
+    }
+}
@@ -0,0 +1,170 @@
+package app.pinjamruang.room.controller;
+
+import app.pinjamruang.reservation.dto.CreateReservationDto;
+import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.model.Room;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static app.pinjamruang.QueryCountMatchers.queryCount;
+import static app.pinjamruang.TestUtils.createDummyRoomDto;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the number of SQL statements each room endpoint issues against a real database. An allocation size of
+ * one makes every insert fetch its id, so counts do not depend on where the id pool happens to be.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycount;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.pinjamruang.id.allocation-size=1"
+})
+public class RoomControllerQueryCountTests {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Long createRoom() throws Exception {
+        String body = mvc.perform(post("/rooms/")
+                .content(objectMapper.writeValueAsString(createDummyRoomDto()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return objectMapper.readValue(body, Room.class).getId();
+    }
+
+    @Test
+    public void getAllRooms_severalRooms_oneQueryAndVersionLookup() throws Exception {
+        createRoom();
+        createRoom();
+        createRoom();
+
+        mvc.perform(get("/rooms/"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(2));
+    }
+
+    @Test
+    public void getRoomById_cachedAfterFirstLookup() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(get("/rooms/{roomId}", roomId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(2));
+        mvc.perform(get("/rooms/{roomId}", roomId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(1));
+    }
+
+    @Test
+    public void getRoomById_currentETag_versionLookupOnly() throws Exception {
+        Long roomId = createRoom();
+        String etag = mvc.perform(get("/rooms/{roomId}", roomId))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/rooms/{roomId}", roomId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(queryCount(1));
+    }
+
+    @Test
+    public void getAllRooms_currentETag_servedFromMemory() throws Exception {
+        createRoom();
+        String etag = mvc.perform(get("/rooms/"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/rooms/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(queryCount(0));
+    }
+
+    @Test
+    public void getAvailableRooms_servedFromMemory() throws Exception {
+        createRoom();
+
+        mvc.perform(get("/rooms/available").param("start", "2019-06-12 10:00").param("end", "2019-06-12 12:00"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(0));
+    }
+
+    @Test
+    public void getRoomCalendar_oneRangeQuery_cachedUntilTheWeekChanges() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(get("/rooms/{roomId}/calendar", roomId).param("week", "2019-06-12"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(2));
+        mvc.perform(get("/rooms/{roomId}/calendar", roomId).param("week", "2019-06-14"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(0));
+
+        mvc.perform(post("/reservations/")
+                .content(objectMapper.writeValueAsString(new CreateReservationDto("2019-06-13 10:00", "2019-06-13 12:00", 5, "Testing", roomId)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/rooms/{roomId}/calendar", roomId).param("week", "2019-06-12"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(1));
+    }
+
+    @Test
+    public void getUtilization_servedFromMemory() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(post("/reservations/")
+                .content(objectMapper.writeValueAsString(new CreateReservationDto("2019-06-13 10:00", "2019-06-13 12:00", 5, "Testing", roomId)))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/rooms/utilization").param("from", "2019-06-01").param("to", "2019-06-30"))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(0));
+    }
+
+    @Test
+    public void createRoom_idAndInsert() throws Exception {
+        mvc.perform(post("/rooms/")
+                .content(objectMapper.writeValueAsString(createDummyRoomDto()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(3));
+    }
+
+    @Test
+    public void updateRoom_selectAndUpdate() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(put("/rooms/{roomId}", roomId)
+                .content(objectMapper.writeValueAsString(new CreateRoomDto("Room 2", 20, "08:00", "20:00")))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(3));
+    }
+
+    @Test
+    public void deleteRoom_selectAndDelete() throws Exception {
+        Long roomId = createRoom();
+
+        mvc.perform(delete("/rooms/{roomId}", roomId))
+                .andExpect(status().isOk())
+                .andExpect(queryCount(3));
+    }
+}
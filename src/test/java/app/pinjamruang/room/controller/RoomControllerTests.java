@@ -1,28 +1,52 @@
 package app.pinjamruang.room.controller;
 
+import app.pinjamruang.persistence.KeysetPage;
+import app.pinjamruang.persistence.KeysetPages;
+import app.pinjamruang.persistence.ResourceVersionRepository;
+import app.pinjamruang.persistence.ResourceVersions;
+import app.pinjamruang.persistence.StaleWriteException;
+import app.pinjamruang.persistence.Tagged;
+import app.pinjamruang.reservation.dto.CalendarDayDto;
+import app.pinjamruang.reservation.dto.FreeSlotDto;
+import app.pinjamruang.reservation.dto.RoomCalendarDto;
+import app.pinjamruang.reservation.service.ReservationEventBroadcaster;
 import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.dto.RoomCacheStatsDto;
+import app.pinjamruang.room.dto.RoomUtilizationDto;
+import app.pinjamruang.room.exception.InvalidDateRangeException;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.service.RoomService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import static app.pinjamruang.TestUtils.DTO_DATETIME_FORMATTER;
 import static app.pinjamruang.TestUtils.createDummyRoom;
 import static app.pinjamruang.TestUtils.createDummyRoomDto;
+import static app.pinjamruang.TestUtils.stubResourceVersions;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertNotEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -40,16 +64,34 @@ public class RoomControllerTests {
     @MockBean
     private RoomService service;
 
+    @MockBean
+    private ReservationEventBroadcaster reservationEventBroadcaster;
+
+    @SpyBean
+    private ResourceVersions resourceVersions;
+
+    @MockBean
+    private ResourceVersionRepository resourceVersionRepository;
+
+    @Before
+    public void setUp() {
+        stubResourceVersions(resourceVersionRepository);
+    }
+
+    private <T> Tagged<T> tagged(T value) {
+        return new Tagged<>(resourceVersions.tag(ResourceVersions.ROOMS), value);
+    }
+
     @Test
     public void getAllRooms_emptyRepository_success() throws Exception {
-        when(service.getAllRooms()).thenReturn(new ArrayList<>());
+        when(service.getRooms(any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(new ArrayList<>(), null)));
 
         mvc.perform(get("/rooms/"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(0)));
 
-        verify(service).getAllRooms();
+        verify(service).getRooms(null, null);
     }
 
     @Test
@@ -58,7 +100,7 @@ public class RoomControllerTests {
         rooms.add(createDummyRoom());
         rooms.add(createDummyRoom());
 
-        when(service.getAllRooms()).thenReturn(rooms);
+        when(service.getRooms(any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(rooms, null)));
 
         mvc.perform(get("/rooms/"))
                 .andExpect(status().isOk())
@@ -67,7 +109,186 @@ public class RoomControllerTests {
                 .andExpect(jsonPath("$[0].name", is(rooms.get(0).getName())))
                 .andExpect(jsonPath("$[1].name", is(rooms.get(1).getName())));
 
-        verify(service).getAllRooms();
+        verify(service).getRooms(null, null);
+    }
+
+    @Test
+    public void getAllRooms_morePages_returnsNextCursor() throws Exception {
+        List<Room> rooms = new ArrayList<>();
+        rooms.add(createDummyRoom());
+
+        when(service.getRooms(5L, 1)).thenAnswer(invocation -> tagged(new KeysetPage<>(rooms, 6L)));
+
+        mvc.perform(get("/rooms/").param("after", "5").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().string(KeysetPages.NEXT_CURSOR_HEADER, "6"));
+    }
+
+    @Test
+    public void getAvailableRooms_success() throws Exception {
+        Room room = createDummyRoom();
+        when(service.getAvailableRooms(
+                LocalDateTime.parse("2019-06-12 10:00", DTO_DATETIME_FORMATTER),
+                LocalDateTime.parse("2019-06-12 12:00", DTO_DATETIME_FORMATTER),
+                5
+        )).thenReturn(Collections.singletonList(room));
+
+        mvc.perform(get("/rooms/available")
+                .param("start", "2019-06-12 10:00")
+                .param("end", "2019-06-12 12:00")
+                .param("attendees", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is(room.getName())));
+    }
+
+    @Test
+    public void getUtilization_success() throws Exception {
+        LocalDate date = LocalDate.of(2019, 6, 12);
+        when(service.getUtilization(date, date)).thenReturn(Collections.singletonList(
+                new RoomUtilizationDto(1L, date, 2, 270L, 540L, 0.5, 0.6)));
+
+        mvc.perform(get("/rooms/utilization").param("from", "2019-06-12").param("to", "2019-06-12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].occupancyRate", is(0.5)))
+                .andExpect(jsonPath("$[0].attendeeCapacityRatio", is(0.6)));
+    }
+
+    @Test
+    public void getUtilization_invalidRange_returnsBadRequest() throws Exception {
+        when(service.getUtilization(any(LocalDate.class), any(LocalDate.class)))
+                .thenThrow(new InvalidDateRangeException("Utilization range must cover between 1 and 366 days."));
+
+        mvc.perform(get("/rooms/utilization").param("from", "2019-06-12").param("to", "2019-06-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getRoomCacheStats_success() throws Exception {
+        when(service.getRoomCacheStats()).thenReturn(new RoomCacheStatsDto(1L, 3L, 1L, 0.75, 0L));
+
+        mvc.perform(get("/rooms/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits", is(3)))
+                .andExpect(jsonPath("$.misses", is(1)))
+                .andExpect(jsonPath("$.hitRate", is(0.75)));
+    }
+
+    @Test
+    public void getRoomCalendar_success() throws Exception {
+        LocalDate monday = LocalDate.of(2019, 6, 10);
+        FreeSlotDto freeSlot = new FreeSlotDto(monday.atTime(9, 0), monday.atTime(18, 0));
+        when(service.getCalendar(1L, LocalDate.of(2019, 6, 12))).thenReturn(new RoomCalendarDto(1L, monday,
+                Collections.singletonList(new CalendarDayDto(monday, Collections.emptyList(), Collections.singletonList(freeSlot)))));
+
+        mvc.perform(get("/rooms/1/calendar").param("week", "2019-06-12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roomId", is(1)))
+                .andExpect(jsonPath("$.days", hasSize(1)))
+                .andExpect(jsonPath("$.days[0].freeSlots", hasSize(1)));
+    }
+
+    @Test
+    public void getRoomCalendar_roomNotFound_throwsResourceNotFoundException() throws Exception {
+        when(service.getCalendar(1L, LocalDate.of(2019, 6, 12))).thenThrow(new ResourceNotFoundException());
+
+        mvc.perform(get("/rooms/1/calendar").param("week", "2019-06-12"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getRoomEvents_success() throws Exception {
+        when(service.getRoomById(1L)).thenReturn(createDummyRoom());
+        when(reservationEventBroadcaster.subscribe(1L)).thenReturn(new SseEmitter());
+
+        mvc.perform(get("/rooms/1/events"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(reservationEventBroadcaster).subscribe(1L);
+    }
+
+    @Test
+    public void getRoomEvents_roomNotFound_throwsResourceNotFoundException() throws Exception {
+        when(service.getRoomById(1L)).thenThrow(new ResourceNotFoundException());
+
+        mvc.perform(get("/rooms/1/events"))
+                .andExpect(status().isNotFound());
+
+        verifyZeroInteractions(reservationEventBroadcaster);
+    }
+
+    @Test
+    public void getEvents_subscribesToAllRooms() throws Exception {
+        when(reservationEventBroadcaster.subscribe(ReservationEventBroadcaster.ALL_ROOMS)).thenReturn(new SseEmitter());
+
+        mvc.perform(get("/rooms/events"))
+                .andExpect(request().asyncStarted());
+
+        verify(reservationEventBroadcaster).subscribe(ReservationEventBroadcaster.ALL_ROOMS);
+    }
+
+    @Test
+    public void getRoomById_currentETag_notModified() throws Exception {
+        when(service.getRoomById(1L)).thenReturn(createDummyRoom());
+
+        String etag = mvc.perform(get("/rooms/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/rooms/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        verify(service, times(2)).getRoomById(1L);
+    }
+
+    @Test
+    public void getRoomById_otherRoomChanged_notModifiedWithRefreshedETag() throws Exception {
+        when(service.getRoomById(1L)).thenReturn(createDummyRoom());
+
+        String etag = mvc.perform(get("/rooms/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        resourceVersions.bump(ResourceVersions.ROOMS);
+
+        String refreshedEtag = mvc.perform(get("/rooms/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(etag, refreshedEtag);
+        verify(service, times(2)).getRoomById(1L);
+    }
+
+    @Test
+    public void getRoomById_roomChangedWithinClockTick_returnsBody() throws Exception {
+        Room room = createDummyRoom();
+        ReflectionTestUtils.setField(room, "updatedAt", LocalDateTime.parse("2019-06-12T09:00"));
+        when(service.getRoomById(1L)).thenReturn(room);
+
+        String etag = mvc.perform(get("/rooms/1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        ReflectionTestUtils.setField(room, "version", 1L);
+        resourceVersions.bump(ResourceVersions.ROOMS);
+
+        mvc.perform(get("/rooms/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is(room.getName())));
+    }
+
+    @Test
+    public void getAllRooms_currentETag_notModifiedWithoutLookup() throws Exception {
+        when(service.getRooms(any(), any())).thenAnswer(invocation -> tagged(new KeysetPage<>(new ArrayList<>(), null)));
+
+        String etag = mvc.perform(get("/rooms/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/rooms/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        verify(service, times(1)).getRooms(null, null);
     }
 
     @Test
@@ -150,6 +371,23 @@ public class RoomControllerTests {
         verify(service).updateRoom(ArgumentMatchers.eq(1L), ArgumentMatchers.any(CreateRoomDto.class));
     }
 
+    @Test
+    public void updateRoom_staleVersion_returnsConflict() throws Exception {
+        when(service.updateRoom(ArgumentMatchers.eq(1L), ArgumentMatchers.any(CreateRoomDto.class))).thenThrow(new StaleWriteException("stale"));
+
+        CreateRoomDto dto = createDummyRoomDto();
+        dto.setVersion(1L);
+
+        mvc.perform(
+                put("/rooms/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto))
+        )
+                .andExpect(status().isConflict());
+
+        verify(service).updateRoom(ArgumentMatchers.eq(1L), ArgumentMatchers.argThat(received -> Long.valueOf(1L).equals(received.getVersion())));
+    }
+
     @Test
     public void deleteRoom_success() throws Exception {
         mvc.perform(delete("/rooms/1"))
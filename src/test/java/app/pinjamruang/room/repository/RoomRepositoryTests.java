@@ -5,10 +5,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import static app.pinjamruang.TestUtils.createDummyRoom;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
@@ -22,4 +25,22 @@ public class RoomRepositoryTests {
 
         assertEquals(repository.getOne(room.getId()), room);
     }
+
+    @Test
+    public void save_staleVersion_throwsOptimisticLockingFailure() {
+        Room room = repository.saveAndFlush(createDummyRoom());
+        room.setCapacity(room.getCapacity() + 1);
+        room = repository.saveAndFlush(room);
+
+        Room stale = createDummyRoom();
+        ReflectionTestUtils.setField(stale, "id", room.getId());
+        ReflectionTestUtils.setField(stale, "version", 0L);
+
+        try {
+            repository.saveAndFlush(stale);
+            fail("A write based on version 0 must be rejected after version 1 was committed");
+        } catch (OptimisticLockingFailureException e) {
+            assertEquals(Long.valueOf(1L), room.getVersion());
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package app.pinjamruang.room.service;
+
+import app.pinjamruang.room.model.Room;
+import app.pinjamruang.room.repository.RoomRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RoomCapacityIndexTests {
+    @InjectMocks
+    RoomCapacityIndex index;
+
+    @Mock
+    RoomRepository repository;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+    }
+
+    private Room createRoom(Long id, int capacity) {
+        Room room = new Room("Room " + id, capacity, LocalTime.parse("09:00"), LocalTime.parse("18:00"));
+        ReflectionTestUtils.setField(room, "id", id);
+
+        return room;
+    }
+
+    @Test
+    public void withCapacityAtLeast_returnsSmallestFirst() {
+        Room small = createRoom(1L, 2);
+        Room medium = createRoom(2L, 6);
+        Room sameMedium = createRoom(3L, 6);
+        Room large = createRoom(4L, 12);
+        when(repository.findAll()).thenReturn(Arrays.asList(large, sameMedium, small, medium));
+
+        index.load();
+
+        assertArrayEquals(new Room[]{medium, sameMedium, large}, index.withCapacityAtLeast(6));
+        assertArrayEquals(new Room[]{small, medium, sameMedium, large}, index.withCapacityAtLeast(1));
+        assertArrayEquals(new Room[0], index.withCapacityAtLeast(13));
+    }
+
+    @Test
+    public void put_updatedCapacity_reordersRoom() {
+        Room first = createRoom(1L, 2);
+        Room second = createRoom(2L, 6);
+        index.put(first);
+        index.put(second);
+
+        first.setCapacity(10);
+        index.put(first);
+
+        assertArrayEquals(new Room[]{second, first}, index.withCapacityAtLeast(1));
+    }
+
+    @Test
+    public void remove_room_noLongerReturned() {
+        Room room = createRoom(1L, 2);
+        index.put(room);
+
+        index.remove(1L);
+
+        assertArrayEquals(new Room[0], index.withCapacityAtLeast(1));
+    }
+}
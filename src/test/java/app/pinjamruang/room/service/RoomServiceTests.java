@@ -1,6 +1,13 @@
 package app.pinjamruang.room.service;
 
+import app.pinjamruang.BookingFixture;
+import app.pinjamruang.persistence.KeysetPage;
+import app.pinjamruang.persistence.StaleWriteException;
+import app.pinjamruang.reservation.model.Reservation;
+import app.pinjamruang.reservation.model.RoomDayUtilization;
 import app.pinjamruang.room.dto.CreateRoomDto;
+import app.pinjamruang.room.dto.RoomUtilizationDto;
+import app.pinjamruang.room.exception.InvalidDateRangeException;
 import app.pinjamruang.room.model.Room;
 import app.pinjamruang.room.repository.RoomRepository;
 import org.junit.Before;
@@ -8,20 +15,51 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static app.pinjamruang.TestUtils.DTO_DATETIME_FORMATTER;
+import static app.pinjamruang.TestUtils.createDummyReservation;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class RoomServiceTests {
     @InjectMocks
     RoomService service;
 
+    private final BookingFixture booking = new BookingFixture();
+
     @Mock
     private RoomRepository repository;
 
+    @Spy
+    private RoomCapacityIndex roomCapacityIndex = new RoomCapacityIndex();
+
+    private Room createRoom(Long id, String name, int capacity) {
+        Room room = new Room(name, capacity, LocalTime.parse("09:00"), LocalTime.parse("18:00"));
+        ReflectionTestUtils.setField(room, "id", id);
+
+        return room;
+    }
+
+    private LocalDateTime parse(String dateTime) {
+        return LocalDateTime.parse(dateTime, DTO_DATETIME_FORMATTER);
+    }
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        booking.wire(service);
     }
 
     @Test
@@ -31,23 +69,174 @@ public class RoomServiceTests {
         verify(repository, times(1)).findAll();
     }
 
+    @Test
+    public void getRooms_moreRowsThanLimit_returnsNextCursor() {
+        Room first = new Room();
+        Room second = new Room();
+        ReflectionTestUtils.setField(first, "id", 1L);
+        ReflectionTestUtils.setField(second, "id", 2L);
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(first, second));
+
+        KeysetPage<Room> page = service.getRooms(null, 1).getValue();
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(Long.valueOf(1L), page.getNextCursor());
+    }
+
     @Test
     public void getRoomById_success() {
         Room room = new Room();
-        when(repository.getOne(1L)).thenReturn(room);
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+
+        service.getRoomById(1L);
+
+        verify(repository).findById(1L);
+    }
+
+    @Test
+    public void getRoomById_cachedRoom_noRepositoryAccess() {
+        Room room = new Room();
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+
+        assertSame(room, service.getRoomById(1L));
+        assertSame(room, service.getRoomById(1L));
+
+        verify(repository, times(1)).findById(1L);
+        assertEquals(1L, service.getRoomCacheStats().getHits());
+        assertEquals(1L, service.getRoomCacheStats().getMisses());
+    }
+
+    @Test
+    public void updateRoom_cachedRoom_invalidatesCache() {
+        Room room = new Room();
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+        when(repository.save(any(Room.class))).thenReturn(room);
+
+        service.getRoomById(1L);
+        service.updateRoom(1L, new CreateRoomDto("Room 1", 10, "09:00", "10:00"));
+        service.getRoomById(1L);
+
+        verify(repository, times(3)).findById(1L);
+    }
+
+    @Test
+    public void updateRoom_concurrentWrite_retries() {
+        Room room = new Room();
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+        when(repository.save(any(Room.class)))
+                .thenThrow(new OptimisticLockingFailureException("stale"))
+                .thenReturn(room);
+
+        service.updateRoom(1L, new CreateRoomDto("Room 1", 10, "09:00", "10:00"));
+
+        verify(repository, times(2)).save(any(Room.class));
+    }
+
+    @Test
+    public void updateRoom_openingHoursChanged_invalidatesRoomCalendar() {
+        Room room = new Room();
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+        when(repository.save(any(Room.class))).thenReturn(room);
+
+        service.updateRoom(1L, new CreateRoomDto("Room 1", 10, "08:00", "20:00"));
+
+        verify(booking.roomCalendar).invalidateRoom(1L);
+    }
+
+    @Test(expected = StaleWriteException.class)
+    public void updateRoom_staleClientVersion_throwsStaleWriteException() {
+        Room room = new Room();
+        ReflectionTestUtils.setField(room, "version", 3L);
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+
+        CreateRoomDto dto = new CreateRoomDto("Room 1", 10, "09:00", "10:00");
+        dto.setVersion(2L);
+
+        service.updateRoom(1L, dto);
+    }
+
+    @Test
+    public void deleteRoom_cachedRoom_invalidatesCache() {
+        Room room = new Room();
+        ReflectionTestUtils.setField(room, "version", 0L);
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+        when(repository.deleteByIdAndVersion(1L, 0L)).thenReturn(1);
 
         service.getRoomById(1L);
+        service.deleteRoom(1L);
+        when(repository.findById(1L)).thenReturn(Optional.empty());
 
-        verify(repository).getOne(1L);
+        try {
+            service.getRoomById(1L);
+            fail("Deleted room must not be served from the cache");
+        } catch (ResourceNotFoundException e) {
+            verify(repository, times(3)).findById(1L);
+        }
     }
 
     @Test(expected = ResourceNotFoundException.class)
     public void getRoomById_roomNotFound_throwsResourceNotFoundException() {
-        when(repository.getOne(1L)).thenThrow(new ResourceNotFoundException());
+        when(repository.findById(1L)).thenReturn(Optional.empty());
 
         service.getRoomById(1L);
     }
 
+    @Test
+    public void getAvailableRooms_filtersByCapacityHoursAndReservations() {
+        Room small = createRoom(1L, "Small", 4);
+        Room medium = createRoom(2L, "Medium", 8);
+        Room large = createRoom(3L, "Large", 20);
+        Room reserved = createRoom(4L, "Reserved", 10);
+        roomCapacityIndex.put(large);
+        roomCapacityIndex.put(small);
+        roomCapacityIndex.put(reserved);
+        roomCapacityIndex.put(medium);
+
+        Reservation reservation = createDummyReservation(reserved);
+        ReflectionTestUtils.setField(reservation, "id", 1L);
+        booking.reservationIndex.put(reservation);
+
+        List<Room> result = service.getAvailableRooms(parse("2019-06-12 11:00"), parse("2019-06-12 12:00"), 5);
+
+        assertEquals(Arrays.asList(medium, large), result);
+        verifyZeroInteractions(repository);
+    }
+
+    @Test
+    public void getAvailableRooms_outsideOperationalTime_empty() {
+        roomCapacityIndex.put(createRoom(1L, "Room 1", 10));
+
+        assertTrue(service.getAvailableRooms(parse("2019-06-12 08:00"), parse("2019-06-12 10:00"), 1).isEmpty());
+        assertTrue(service.getAvailableRooms(parse("2019-06-12 17:00"), parse("2019-06-13 10:00"), 1).isEmpty());
+    }
+
+    @Test
+    public void getUtilization_everyRoomAndDay_ratesFromAggregates() {
+        LocalDate date = LocalDate.of(2019, 6, 12);
+        roomCapacityIndex.put(createRoom(2L, "Large", 20));
+        roomCapacityIndex.put(createRoom(1L, "Small", 10));
+        when(booking.roomUtilization.get(1L, date)).thenReturn(new RoomDayUtilization(1L, date, 2, 270L, 1620L));
+
+        List<RoomUtilizationDto> utilization = service.getUtilization(date, date.plusDays(1));
+
+        assertEquals(4, utilization.size());
+        assertEquals(Long.valueOf(1L), utilization.get(0).getRoomId());
+        assertEquals(date, utilization.get(0).getDate());
+        assertEquals(2, utilization.get(0).getReservations());
+        assertEquals(540L, utilization.get(0).getOpenMinutes());
+        assertEquals(0.5, utilization.get(0).getOccupancyRate(), 1e-9);
+        assertEquals(0.6, utilization.get(0).getAttendeeCapacityRatio(), 1e-9);
+        assertEquals(date.plusDays(1), utilization.get(1).getDate());
+        assertEquals(0L, utilization.get(1).getBookedMinutes());
+        assertEquals(Long.valueOf(2L), utilization.get(3).getRoomId());
+        verifyZeroInteractions(repository);
+    }
+
+    @Test(expected = InvalidDateRangeException.class)
+    public void getUtilization_rangeTooLong_throwsInvalidDateRangeException() {
+        service.getUtilization(LocalDate.of(2019, 1, 1), LocalDate.of(2020, 1, 2));
+    }
+
     @Test
     public void createRoom_success() {
         Room room = new Room();
@@ -59,13 +248,14 @@ public class RoomServiceTests {
         service.createRoom(dto);
 
         verify(repository).save(any(Room.class));
+        verify(roomCapacityIndex).put(room);
     }
 
     @Test
     public void updateRoom_success() {
         Room room = new Room();
 
-        when(repository.getOne(1L)).thenReturn(room);
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
         when(repository.save(any(Room.class))).thenReturn(room);
 
         CreateRoomDto dto = new CreateRoomDto("Room 1", 10, "09:00", "10:00");
@@ -77,7 +267,7 @@ public class RoomServiceTests {
 
     @Test(expected = ResourceNotFoundException.class)
     public void updateRoom_roomNotFound_throwsResourceNotFoundException() {
-        when(repository.getOne(1L)).thenThrow(new ResourceNotFoundException());
+        when(repository.findById(1L)).thenReturn(Optional.empty());
 
         CreateRoomDto dto = new CreateRoomDto("Room 1", 10, "09:00", "10:00");
 
@@ -86,7 +276,7 @@ public class RoomServiceTests {
 
     @Test(expected = ResourceNotFoundException.class)
     public void deleteRoom_roomNotFound_throwsResourceNotFoundException() {
-        when(repository.getOne(1L)).thenThrow(new ResourceNotFoundException());
+        when(repository.findById(1L)).thenReturn(Optional.empty());
 
         service.deleteRoom(1L);
     }
@@ -94,9 +284,44 @@ public class RoomServiceTests {
     @Test
     public void deleteRoom_success() {
         Room room = new Room();
-        when(repository.getOne(1L)).thenReturn(room);
+        ReflectionTestUtils.setField(room, "version", 0L);
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+        when(repository.deleteByIdAndVersion(1L, 0L)).thenReturn(1);
         service.deleteRoom(1L);
 
-        verify(repository).deleteById(1L);
+        verify(repository).deleteByIdAndVersion(1L, 0L);
+    }
+
+    @Test
+    public void deleteRoom_racesUpdate_retriedOnFreshRow() {
+        Room read = new Room();
+        ReflectionTestUtils.setField(read, "version", 0L);
+        Room updated = new Room();
+        ReflectionTestUtils.setField(updated, "version", 1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(read), Optional.of(updated));
+        // The update commits between the delete's read and its write.
+        when(repository.deleteByIdAndVersion(1L, 0L)).thenReturn(0);
+        when(repository.deleteByIdAndVersion(1L, 1L)).thenReturn(1);
+
+        service.deleteRoom(1L);
+
+        verify(repository).deleteByIdAndVersion(1L, 1L);
+        verify(roomCapacityIndex).remove(1L);
+    }
+
+    @Test
+    public void deleteRoom_alwaysLosesToUpdates_throwsStaleWriteException() {
+        Room room = new Room();
+        ReflectionTestUtils.setField(room, "version", 0L);
+        when(repository.findById(1L)).thenReturn(Optional.of(room));
+        when(repository.deleteByIdAndVersion(1L, 0L)).thenReturn(0);
+
+        try {
+            service.deleteRoom(1L);
+            fail("A delete that never matches the current version must not succeed");
+        } catch (StaleWriteException e) {
+            verify(repository, times(3)).deleteByIdAndVersion(1L, 0L);
+            verify(roomCapacityIndex, never()).remove(1L);
+        }
     }
 }